@@ -0,0 +1,46 @@
+// Runs the JMH benchmarks of the filesystem module on the JVM, against a local temp directory.
+//
+//     ./gradlew :benchmark:jmh
+//
+// The filesystem sources are compiled in directly, minus the plugin and handlers that need
+// the Fuse core and Android runtime. src/main/java provides stand-ins for the few Android
+// and Fuse classes the rest depends on.
+plugins {
+    id("java")
+    id("me.champeau.jmh")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../filesystem/src/main/java")
+            exclude("**/handlers/**")
+            exclude("**/FuseFilesystemPlugin.java")
+        }
+    }
+}
+
+dependencies {
+    implementation("androidx.annotation:annotation:1.8.0")
+    implementation("org.json:json:20231013")
+}
+
+jmh {
+    benchmarkMode.set(listOf("thrpt", "sample"))
+    timeUnit.set("ms")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+
+    // e.g. ./gradlew :benchmark:jmh -Pjmh.includes=Read
+    findProperty("jmh.includes")?.let {
+        includes.set(listOf(it.toString()))
+    }
+}
@@ -0,0 +1,74 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.benchmark;
+
+import android.net.Uri;
+
+import com.breautek.fuse.filesystem.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Temp directories and files shared by the benchmarks.
+ */
+class BenchmarkFiles {
+    private static final int FILL_BUFFER_SIZE = 1048576; // 1mb
+
+    private BenchmarkFiles() {}
+
+    static File createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteTempDir(File dir) {
+        if (dir != null) {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Random content, seeded so every run transfers the same bytes.
+     */
+    static byte[] createPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    static File createFile(File dir, String name, long size) throws IOException {
+        File file = new File(dir, name);
+        byte[] buffer = createPayload(FILL_BUFFER_SIZE);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int length = (int) Math.min(buffer.length, remaining);
+                out.write(buffer, 0, length);
+                remaining -= length;
+            }
+        }
+        return file;
+    }
+
+    static Uri toUri(File file) {
+        return Uri.fromFile(file);
+    }
+}
@@ -0,0 +1,105 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.benchmark;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.filesystem.FSAPI;
+import com.breautek.fuse.filesystem.FileUtils;
+import com.breautek.fuse.filesystem.FuseDeleteResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Deletes a directory tree, rebuilt before every invocation, through FSAPI.delete
+ * and FileUtils.deleteRecursively.
+ */
+@State(Scope.Thread)
+public class FSAPIDeleteBenchmark {
+    @Param({"4", "16"})
+    public int fanout;
+
+    @Param({"2", "3"})
+    public int depth;
+
+    @Param({"8"})
+    public int filesPerDirectory;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private File $dir;
+    private File $tree;
+    private FSAPI $api;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        $dir = BenchmarkFiles.createTempDir("fuse-delete");
+        $api = new FSAPI();
+    }
+
+    @Setup(Level.Invocation)
+    public void createTree() throws IOException {
+        $tree = new File($dir, "tree");
+        $createLevel($tree, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.deleteTempDir($dir);
+    }
+
+    @Benchmark
+    public FuseDeleteResult delete() throws FuseError {
+        Uri uri = BenchmarkFiles.toUri($tree);
+        return $api.delete(uri, true);
+    }
+
+    @Benchmark
+    public boolean deleteRecursively() {
+        return FileUtils.deleteRecursively($tree);
+    }
+
+    private void $createLevel(File dir, int remaining) throws IOException {
+        if (!dir.mkdir()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        for (int i = 0; i < filesPerDirectory; i++) {
+            BenchmarkFiles.createFile(dir, "file" + i, fileSize);
+        }
+
+        if (remaining == 0) {
+            return;
+        }
+
+        for (int i = 0; i < fanout; i++) {
+            $createLevel(new File(dir, "dir" + i), remaining - 1);
+        }
+    }
+}
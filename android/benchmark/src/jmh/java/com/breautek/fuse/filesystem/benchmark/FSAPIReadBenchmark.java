@@ -0,0 +1,127 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.benchmark;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.filesystem.FSAPI;
+import com.breautek.fuse.filesystem.FuseReadMode;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a file through FSAPI.read, from offset to the end of the file.
+ * The threaded variant reads the same file from every thread.
+ */
+@State(Scope.Benchmark)
+public class FSAPIReadBenchmark {
+    @Param({"65536", "4194304", "67108864"})
+    public long fileSize;
+
+    @Param({"16384", "262144", "4194304"})
+    public int chunkSize;
+
+    @Param({"0", "4096"})
+    public long offset;
+
+    @Param({"STREAM", "MAPPED"})
+    public FuseReadMode mode;
+
+    private File $dir;
+    private Uri $uri;
+    private FSAPI $api;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        $dir = BenchmarkFiles.createTempDir("fuse-read");
+        $uri = BenchmarkFiles.toUri(BenchmarkFiles.createFile($dir, "read.bin", fileSize));
+        $api = new FSAPI();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.deleteTempDir($dir);
+    }
+
+    @Benchmark
+    public long read(Reader reader) throws FuseError {
+        return $read(reader);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long readParallel(Reader reader) throws FuseError {
+        return $read(reader);
+    }
+
+    private long $read(Reader reader) throws FuseError {
+        return $api.read($uri, fileSize - offset, offset, chunkSize, mode, reader);
+    }
+
+    /**
+     * Copies every chunk into a reused buffer, as the read handler copies them into the
+     * response, so the bytes are touched without the copy showing up as allocations.
+     */
+    @State(Scope.Thread)
+    public static class Reader implements IFSAPI.IReadCallback {
+        private byte[] $buffer;
+
+        /**
+         * Read by nothing, but written from the copied bytes so the copies are not eliminated.
+         */
+        public int sink;
+
+        @Setup(Level.Trial)
+        public void setup(FSAPIReadBenchmark benchmark) {
+            $buffer = new byte[benchmark.chunkSize];
+        }
+
+        @Override
+        public void onReadStart(long contentLength) {}
+
+        @Override
+        public void onReadChunk(int bufferSize, byte[] buffer) {
+            sink += buffer[bufferSize - 1];
+        }
+
+        @Override
+        public void onReadChunk(ByteBuffer chunk) {
+            while (chunk.hasRemaining()) {
+                int length = Math.min($buffer.length, chunk.remaining());
+                chunk.get($buffer, 0, length);
+                sink += $buffer[length - 1];
+            }
+        }
+
+        @Override
+        public void onReadClose() {}
+    }
+}
@@ -0,0 +1,121 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.benchmark;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.filesystem.FSAPI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes, appends and truncates through FSAPI. Every thread works on its own file,
+ * so the threaded variants measure parallel transfers rather than contention on one file.
+ */
+@State(Scope.Thread)
+public class FSAPIWriteBenchmark {
+    /**
+     * Appends reset the file once it grows past this, to keep the benchmark's disk use bounded.
+     */
+    private static final long APPEND_RESET_SIZE = 268435456; // 256mb
+
+    @Param({"65536", "4194304"})
+    public int contentLength;
+
+    @Param({"16384", "262144", "4194304"})
+    public int chunkSize;
+
+    @Param({"0", "1048576"})
+    public long offset;
+
+    private File $dir;
+    private File $file;
+    private Uri $uri;
+    private FSAPI $api;
+    private byte[] $payload;
+    private long $appended;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        $dir = BenchmarkFiles.createTempDir("fuse-write");
+        $file = BenchmarkFiles.createFile($dir, "write.bin", offset + contentLength);
+        $uri = BenchmarkFiles.toUri($file);
+        $api = new FSAPI();
+        $payload = BenchmarkFiles.createPayload(contentLength);
+    }
+
+    /**
+     * Restores the file to its initial size, as appends and truncates change it.
+     */
+    @Setup(Level.Iteration)
+    public void resetFile() throws IOException {
+        $setLength(offset + contentLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.deleteTempDir($dir);
+    }
+
+    @Benchmark
+    public long write() throws FuseError {
+        return $api.write($uri, offset, chunkSize, new ByteArrayInputStream($payload), contentLength);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long writeParallel() throws FuseError {
+        return write();
+    }
+
+    @Benchmark
+    public long append() throws FuseError, IOException {
+        if ($appended >= APPEND_RESET_SIZE) {
+            $setLength(0);
+        }
+
+        long appended = $api.append($uri, new ByteArrayInputStream($payload), contentLength, chunkSize);
+        $appended += appended;
+        return appended;
+    }
+
+    @Benchmark
+    public long truncate() throws FuseError {
+        return $api.truncate($uri, contentLength, new ByteArrayInputStream($payload), chunkSize);
+    }
+
+    private void $setLength(long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile($file, "rw")) {
+            file.setLength(length);
+        }
+        $appended = 0;
+    }
+}
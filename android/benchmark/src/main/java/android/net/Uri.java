@@ -0,0 +1,54 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package android.net;
+
+import java.io.File;
+import java.net.URI;
+
+/**
+ * A stand-in for android.net.Uri, backed by java.net.URI.
+ * Only covers what FSAPI and FuseFSAPIFactory use.
+ */
+public class Uri {
+    private final URI $uri;
+
+    private Uri(URI uri) {
+        $uri = uri;
+    }
+
+    public static Uri parse(String uri) {
+        return new Uri(URI.create(uri));
+    }
+
+    public static Uri fromFile(File file) {
+        return new Uri(file.toURI());
+    }
+
+    public String getPath() {
+        return $uri.getPath();
+    }
+
+    public String getScheme() {
+        return $uri.getScheme();
+    }
+
+    @Override
+    public String toString() {
+        return $uri.toString();
+    }
+}
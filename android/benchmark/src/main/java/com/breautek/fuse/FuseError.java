@@ -0,0 +1,44 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse;
+
+/**
+ * A stand-in for the FuseError of the Fuse core, which ships as an Android library.
+ */
+public class FuseError extends Exception {
+    private final String $domain;
+    private final int $code;
+
+    public FuseError(String domain, int code, String message) {
+        this(domain, code, message, null);
+    }
+
+    public FuseError(String domain, int code, String message, Throwable cause) {
+        super(message, cause);
+        $domain = domain;
+        $code = code;
+    }
+
+    public String getDomain() {
+        return $domain;
+    }
+
+    public int getCode() {
+        return $code;
+    }
+}
@@ -2,6 +2,7 @@
 plugins {
     id("com.android.application") version "8.5.1" apply false
     id("com.android.library") version "8.5.1" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 tasks.wrapper {
@@ -25,6 +25,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.ext.junit.rules.ActivityScenarioRule;
 import com.breautek.fuse.testtools.FuseTestAPIClient;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.AfterClass;
@@ -32,11 +33,15 @@ import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
 
 @RunWith(AndroidJUnit4.class)
 public class FuseFilesystemPluginTest {
@@ -56,6 +61,8 @@ public class FuseFilesystemPluginTest {
             setupTruncateFile();
             setupAppendFile();
             setupWriteFile();
+            setupWritevFile();
+            setupListTest();
             setupRemoveTest();
         }
         catch (Exception e) {
@@ -107,6 +114,24 @@ public class FuseFilesystemPluginTest {
         appendIO.close();
     }
 
+    private static void setupWritevFile() throws IOException {
+        File writevFile = new File("/data/data/com.breautek.fuse.filesystem.test/files/writevFileTest");
+        FileOutputStream io = new FileOutputStream(writevFile, false);
+        io.write("0123456789".getBytes());
+        io.close();
+    }
+
+    private static void setupListTest() throws IOException {
+        File listDir = new File("/data/data/com.breautek.fuse.filesystem.test/files/listTest");
+        if (!listDir.mkdir() && !listDir.exists()) {
+            throw new RuntimeException("Could not setup list test directory");
+        }
+
+        for (String name : new String[] {"a.txt", "b.txt", "c.bin"}) {
+            boolean _unused = new File(listDir, name).createNewFile();
+        }
+    }
+
     private static void setupAppendFile() throws IOException {
         File appendFile = new File("/data/data/com.breautek.fuse.filesystem.test/files/appendFileTest");
 
@@ -268,6 +293,93 @@ public class FuseFilesystemPluginTest {
         });
     }
 
+    @Test
+    public void canStatFile() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseTestAPIClient client;
+            try {
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("text/plain")
+                        .setEndpoint("/file/stat")
+                        .setContent("file:///data/data/com.breautek.fuse.filesystem.test/files/sizeTestFile")
+                        .build();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONObject stat = new JSONObject(response.readAsString());
+                assertEquals(FuseFileType.FILE.ordinal(), stat.getInt("type"));
+                assertEquals(512, stat.getLong("size"));
+                assertTrue(stat.getLong("mtime") > 0);
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canListDirectoryInPages() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            try {
+                JSONArray names = new JSONArray();
+                Object cursor = JSONObject.NULL;
+                do {
+                    JSONObject content = new JSONObject();
+                    content.put("path", "file:///data/data/com.breautek.fuse.filesystem.test/files/listTest");
+                    content.put("filter", "*.txt");
+                    content.put("limit", 1);
+                    content.put("stats", true);
+                    content.put("cursor", cursor);
+                    FuseTestAPIClient client = new FuseTestAPIClient.Builder()
+                            .setFuseContext(activity.getFuseContext())
+                            .setAPIPort(port)
+                            .setAPISecret(secret)
+                            .setPluginID("FuseFilesystem")
+                            .setType("application/json")
+                            .setEndpoint("/file/list")
+                            .setContent(content.toString())
+                            .build();
+
+                    FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+                    assertEquals(200, response.getStatus());
+
+                    JSONObject page = new JSONObject(response.readAsString());
+                    JSONArray entries = page.getJSONArray("entries");
+                    assertTrue(entries.length() <= 1);
+                    for (int i = 0; i < entries.length(); i++) {
+                        JSONObject entry = entries.getJSONObject(i);
+                        assertEquals(FuseFileType.FILE.ordinal(), entry.getInt("type"));
+                        names.put(entry.getString("name"));
+                    }
+                    cursor = page.get("cursor");
+                } while (cursor != JSONObject.NULL);
+
+                assertEquals(2, names.length());
+                assertTrue(names.toString().contains("a.txt"));
+                assertTrue(names.toString().contains("b.txt"));
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
     @Test
     public void canMkdirWithoutRecursion() {
         activityRule.getScenario().onActivity(activity -> {
@@ -371,6 +483,41 @@ public class FuseFilesystemPluginTest {
         });
     }
 
+    @Test
+    public void shouldRespondToReadsPastTheEnd() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject content = new JSONObject();
+                content.put("path", "file:///data/data/com.breautek.fuse.filesystem.test/files/readTest");
+                content.put("length", -1);
+                content.put("offset", "Hello Test File!".length());
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/read")
+                        .setContent(content.toString())
+                        .build();
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            String result = response.readAsString();
+
+            assertEquals("", result);
+        });
+    }
+
     @Test
     public void canReadFilePartially() {
         activityRule.getScenario().onActivity(activity -> {
@@ -439,6 +586,78 @@ public class FuseFilesystemPluginTest {
         });
     }
 
+    @Test
+    public void canReadFileWithOffsetToEnd() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject content = new JSONObject();
+                content.put("path", "file:///data/data/com.breautek.fuse.filesystem.test/files/readTest");
+                content.put("length", -1);
+                content.put("offset", 6);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/read")
+                        .setContent(content.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            String result = response.readAsString();
+
+            assertEquals("Test File!", result);
+        });
+    }
+
+    @Test
+    public void canReadMultipleRanges() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseTestAPIClient client;
+            try {
+                JSONArray ranges = new JSONArray();
+                ranges.put(new JSONObject().put("offset", 6).put("length", 4));
+                ranges.put(new JSONObject().put("offset", 0).put("length", 5));
+                JSONObject content = new JSONObject();
+                content.put("path", "file:///data/data/com.breautek.fuse.filesystem.test/files/readTest");
+                content.put("ranges", ranges);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/readv")
+                        .setContent(content.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            ByteBuffer expected = ByteBuffer.allocate(41);
+            expected.putLong(6).putLong(4).put("Test".getBytes());
+            expected.putLong(0).putLong(5).put("Hello".getBytes());
+
+            assertEquals(new String(expected.array()), response.readAsString());
+        });
+    }
+
     @Test
     public void canTruncateFile() {
         activityRule.getScenario().onActivity(activity -> {
@@ -528,6 +747,53 @@ public class FuseFilesystemPluginTest {
         });
     }
 
+    @Test
+    public void canTruncateFileAtomically() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/truncateTest2";
+            byte[] newContent = "replaced content".getBytes();
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject jparams = new JSONObject();
+                jparams.put("path", testFile);
+                jparams.put("atomic", true);
+                jparams.put("durability", "operation");
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/truncate")
+                        .setContent(createParamsBuffer(jparams.toString(), newContent))
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            File file = new File(Uri.parse(testFile).getPath());
+            try {
+                JSONObject result = new JSONObject(response.readAsString());
+                assertEquals(newContent.length, result.getLong("bytesWritten"));
+                assertEquals("operation", result.getString("durability"));
+                assertEquals("replaced content", new String(Files.readAllBytes(file.toPath())));
+            } catch (JSONException | IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            String[] temps = file.getParentFile().list((File dir, String name) -> name.endsWith(FileUtils.REPLACE_TEMP_SUFFIX));
+            assertNotNull(temps);
+            assertEquals(0, temps.length);
+        });
+    }
+
     @Test
     public void canAppendDataToFile() {
         activityRule.getScenario().onActivity(activity -> {
@@ -587,84 +853,78 @@ public class FuseFilesystemPluginTest {
     }
 
     @Test
-    public void canWriteDataToFile() {
+    public void canCoalesceAppends() {
         activityRule.getScenario().onActivity(activity -> {
             int port = activity.getFuseContext().getAPIPort();
             String secret = activity.getFuseContext().getAPISecret();
 
-            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writeFileTest";
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/coalesceAppendTest";
+            File file = new File(Uri.parse(testFile).getPath());
+            boolean _unused = file.delete();
+
+            for (String chunk : new String[] {"one;", "two;", "three;"}) {
+                FuseTestAPIClient client;
+                try {
+                    JSONObject params = new JSONObject();
+                    params.put("path", testFile);
+                    params.put("coalesce", true);
+                    params.put("ack", "buffered");
+                    client = new FuseTestAPIClient.Builder()
+                            .setFuseContext(activity.getFuseContext())
+                            .setAPIPort(port)
+                            .setAPISecret(secret)
+                            .setPluginID("FuseFilesystem")
+                            .setType("application/octet-stream")
+                            .setEndpoint("/file/append")
+                            .setContent(createParamsBuffer(params.toString(), chunk.getBytes()))
+                            .build();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
 
-            JSONObject jparams = new JSONObject();
-            try {
-                jparams.put("path", testFile);
-                jparams.put("offset", 0);
-            }
-            catch (JSONException e) {
-                throw new RuntimeException(e);
+                FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+                assertEquals(200, response.getStatus());
+                assertEquals(chunk.length(), Integer.parseInt(response.readAsString()));
             }
 
-            byte [] newContent = "Rewrite".getBytes();
-
-            FuseTestAPIClient client;
+            FuseTestAPIClient flushClient;
             try {
-                byte[] content = createParamsBuffer(jparams.toString(), newContent);
-                client = new FuseTestAPIClient.Builder()
+                flushClient = new FuseTestAPIClient.Builder()
                         .setFuseContext(activity.getFuseContext())
                         .setAPIPort(port)
                         .setAPISecret(secret)
                         .setPluginID("FuseFilesystem")
-                        .setType("application/octet-stream")
-                        .setEndpoint("/file/write")
-                        .setContent(content)
+                        .setType("text/plain")
+                        .setEndpoint("/file/flush")
+                        .setContent(testFile)
                         .build();
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
 
-            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
-            assertEquals(200, response.getStatus());
-
-            int reportedBytesWritten = Integer.parseInt(response.readAsString());
-
-            assertEquals(newContent.length, reportedBytesWritten);
-
-            File file = new File(Uri.parse(testFile).getPath());
+            FuseTestAPIClient.FuseAPITestResponse flushResponse = flushClient.execute();
+            assertEquals(200, flushResponse.getStatus());
 
-            String newContentStr = null;
-            FileReader reader = null;
             try {
-                reader = new FileReader(file);
-                char[] readerBuffer = new char[(int) file.length()];
-                reader.read(readerBuffer);
-                newContentStr = new String(readerBuffer);
-                reader.close();
-            } catch (Exception e) {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                }
+                assertEquals("one;two;three;", new String(Files.readAllBytes(file.toPath())));
+            } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-
-            assertEquals("Rewrite State!", newContentStr);
         });
     }
 
     @Test
-    public void canWriteDataToFileWithOffset() {
+    public void canWriteDataToFile() {
         activityRule.getScenario().onActivity(activity -> {
             int port = activity.getFuseContext().getAPIPort();
             String secret = activity.getFuseContext().getAPISecret();
 
-            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writeFileTestWithOffset";
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writeFileTest";
 
             JSONObject jparams = new JSONObject();
             try {
                 jparams.put("path", testFile);
-                jparams.put("offset", 2);
+                jparams.put("offset", 0);
             }
             catch (JSONException e) {
                 throw new RuntimeException(e);
@@ -716,60 +976,760 @@ public class FuseFilesystemPluginTest {
                 throw new RuntimeException(e);
             }
 
-            assertEquals("InRewritetate!", newContentStr);
+            assertEquals("Rewrite State!", newContentStr);
         });
     }
 
     @Test
-    public void canDeleteFile() {
+    public void canAllocateAndWriteWithinSize() {
         activityRule.getScenario().onActivity(activity -> {
             int port = activity.getFuseContext().getAPIPort();
             String secret = activity.getFuseContext().getAPISecret();
 
-            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/removeFileTest";
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/allocateTest";
+            File file = new File(Uri.parse(testFile).getPath());
+            boolean _unused = file.delete();
 
-            FuseTestAPIClient client;
+            FuseTestAPIClient allocateClient;
             try {
                 JSONObject params = new JSONObject();
                 params.put("path", testFile);
-                params.put("recursive", false);
-
-                client = new FuseTestAPIClient.Builder()
+                params.put("length", 1024 * 1024);
+                allocateClient = new FuseTestAPIClient.Builder()
                         .setFuseContext(activity.getFuseContext())
                         .setAPIPort(port)
                         .setAPISecret(secret)
                         .setPluginID("FuseFilesystem")
-                        .setType("application/octet-stream")
-                        .setEndpoint("/file/remove")
+                        .setType("application/json")
+                        .setEndpoint("/file/allocate")
                         .setContent(params.toString())
                         .build();
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
 
-            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
-
-            assertEquals(200, response.getStatus());
-
-            String result = response.readAsString();
-
-            assertEquals("true", result);
+            FuseTestAPIClient.FuseAPITestResponse allocateResponse = allocateClient.execute();
+            assertEquals(200, allocateResponse.getStatus());
+            assertEquals(1024 * 1024, file.length());
+
+            byte[] piece = "last piece".getBytes();
+            long[] offsets = new long[] {1024 * 1024 - piece.length, 1024 * 1024 - 1};
+            boolean[] shouldSucceed = new boolean[] {true, false};
+            for (int i = 0; i < offsets.length; i++) {
+                FuseTestAPIClient writeClient;
+                try {
+                    JSONObject params = new JSONObject();
+                    params.put("path", testFile);
+                    params.put("offset", offsets[i]);
+                    params.put("keepSize", true);
+                    writeClient = new FuseTestAPIClient.Builder()
+                            .setFuseContext(activity.getFuseContext())
+                            .setAPIPort(port)
+                            .setAPISecret(secret)
+                            .setPluginID("FuseFilesystem")
+                            .setType("application/octet-stream")
+                            .setEndpoint("/file/write")
+                            .setContent(createParamsBuffer(params.toString(), piece))
+                            .build();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
 
-            File file = new File(Uri.parse(testFile).getPath());
+                assertEquals(shouldSucceed[i], writeClient.execute().getStatus() == 200);
+            }
 
-            assertFalse(file.exists());
+            assertEquals(1024 * 1024, file.length());
         });
     }
 
     @Test
-    public void deleteAPIShouldReturnFalse() {
+    public void canHashFile() {
         activityRule.getScenario().onActivity(activity -> {
             int port = activity.getFuseContext().getAPIPort();
             String secret = activity.getFuseContext().getAPISecret();
 
-            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/doesNotExists";
-
-            FuseTestAPIClient client;
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/hashTest";
+            try {
+                Files.write(new File(Uri.parse(testFile).getPath()).toPath(), "hello world".getBytes());
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject params = new JSONObject();
+                params.put("path", testFile);
+                params.put("algorithm", "sha256");
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/hash")
+                        .setContent(params.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONObject result = new JSONObject(response.readAsString());
+                assertEquals("sha256", result.getString("algorithm"));
+                assertEquals("b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9", result.getString("digest"));
+                assertFalse(result.getBoolean("tree"));
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canTruncateWithEncodedContent() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/encodedTruncateTest";
+            byte[] content = "Encoded content, Encoded content, Encoded content".getBytes();
+
+            FuseTestAPIClient client;
+            try {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(encoded)) {
+                    gzip.write(content);
+                }
+
+                JSONObject params = new JSONObject();
+                params.put("path", testFile);
+                params.put("encoding", "gzip");
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/truncate")
+                        .setContent(createParamsBuffer(params.toString(), encoded.toByteArray()))
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+            assertEquals(Integer.toString(content.length), response.readAsString());
+
+            try {
+                assertArrayEquals(content, Files.readAllBytes(new File(Uri.parse(testFile).getPath()).toPath()));
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canWriteWithBinaryParams() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/binaryParamsTest";
+            File file = new File(Uri.parse(testFile).getPath());
+            try {
+                Files.write(file.toPath(), "0123456789".getBytes());
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            byte[] header = new FuseFileAPIHeader(testFile, 4, 0, null, FuseContentEncoding.IDENTITY).toBytes();
+            byte[] content = "abc".getBytes();
+            ByteBuffer packet = ByteBuffer.allocate(4 + header.length + content.length);
+            packet.putInt(header.length).put(header).put(content);
+
+            FuseTestAPIClient client;
+            try {
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/write")
+                        .setContent(packet.array())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+            assertEquals("3", response.readAsString());
+
+            try {
+                assertEquals("0123abc789", new String(Files.readAllBytes(file.toPath())));
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canRunBatch() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String base = "file:///data/data/com.breautek.fuse.filesystem.test/files/";
+
+            FuseTestAPIClient client;
+            try {
+                JSONArray operations = new JSONArray();
+                operations.put(new JSONObject().put("op", "exists").put("path", base + "sizeTestFile"));
+                operations.put(new JSONObject().put("op", "size").put("path", base + "sizeTestFile"));
+                operations.put(new JSONObject().put("op", "type").put("path", base + "sizeTestFile"));
+                operations.put(new JSONObject().put("op", "size").put("path", base + "batchMissing"));
+                operations.put(new JSONObject().put("op", "mkdir").put("path", base + "batchDir/nested").put("recursive", true));
+                operations.put(new JSONObject().put("op", "chmod").put("path", base + "sizeTestFile"));
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/batch")
+                        .setContent(new JSONObject().put("operations", operations).toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONArray results = new JSONArray(response.readAsString());
+                assertEquals(6, results.length());
+                assertTrue(results.getBoolean(0));
+                assertEquals(512, results.getLong(1));
+                assertEquals(FuseFileType.FILE.ordinal(), results.getInt(2));
+                assertTrue(results.getJSONObject(3).has("error"));
+                assertTrue(results.getBoolean(4));
+                assertTrue(results.getJSONObject(5).has("error"));
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canReadMetrics() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseTestAPIClient sizeClient;
+            FuseTestAPIClient client;
+            try {
+                sizeClient = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("text/plain")
+                        .setEndpoint("/file/size")
+                        .setContent("file:///data/data/com.breautek.fuse.filesystem.test/files/sizeTestFile")
+                        .build();
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/metrics")
+                        .setContent(new JSONObject().put("reset", true).toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            assertEquals(200, sizeClient.execute().getStatus());
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONObject metrics = new JSONObject(response.readAsString());
+                JSONObject size = metrics.getJSONObject("endpoints").getJSONObject("/file/size");
+                assertTrue(size.getLong("ops") >= 1);
+                // Each response is "512"
+                assertEquals(size.getLong("ops") * 3, size.getLong("bytesOut"));
+                assertTrue(size.getLong("bytesIn") > 0);
+                assertTrue(size.getJSONArray("latency").length() >= 2);
+                assertFalse(metrics.getJSONObject("endpoints").has("/metrics"));
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canTraceOperations() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            FuseFSAPIFactory factory = activity.getFilesystemPlugin().getFSAPIFactory();
+            FuseChromeTraceRecorder recorder = new FuseChromeTraceRecorder(64);
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject content = new JSONObject();
+                content.put("path", "file:///data/data/com.breautek.fuse.filesystem.test/files/readTest");
+                content.put("length", -1);
+                content.put("offset", 0);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/json")
+                        .setEndpoint("/file/read")
+                        .setContent(content.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            factory.setTraceListener(recorder);
+            try {
+                assertEquals(200, client.execute().getStatus());
+            }
+            finally {
+                factory.setTraceListener(null);
+            }
+
+            try {
+                StringWriter writer = new StringWriter();
+                recorder.writeTo(writer);
+                JSONArray events = new JSONObject(writer.toString()).getJSONArray("traceEvents");
+
+                boolean sawEnd = false;
+                for (int i = 0; i < events.length(); i++) {
+                    JSONObject event = events.getJSONObject(i);
+                    if (event.getString("name").equals("read") && event.getString("ph").equals("E")) {
+                        JSONObject args = event.getJSONObject("args");
+                        assertEquals("/data/data/com.breautek.fuse.filesystem.test/files/readTest", args.getString("path"));
+                        assertEquals(16, args.getLong("bytes"));
+                        assertFalse(args.getBoolean("failed"));
+                        sawEnd = true;
+                    }
+                }
+                assertTrue(sawEnd);
+            }
+            catch (IOException | JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canWriteBodyReadAfterExecuteReturns() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/largeWriteTest";
+
+            // Much larger than any socket buffer, so most of the body is still in flight
+            // when the handler returns and the transfer task reads it.
+            byte[] newContent = new byte[8 * 1024 * 1024];
+            for (int i = 0; i < newContent.length; i++) {
+                newContent[i] = (byte) (i % 251);
+            }
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject jparams = new JSONObject();
+                jparams.put("path", testFile);
+                jparams.put("offset", 0);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/write")
+                        .setContent(createParamsBuffer(jparams.toString(), newContent))
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+            assertEquals(newContent.length, Integer.parseInt(response.readAsString()));
+
+            try {
+                assertArrayEquals(newContent, Files.readAllBytes(new File(Uri.parse(testFile).getPath()).toPath()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canWriteDurably() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/durableWriteTest";
+            byte[] newContent = "Durable".getBytes();
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject jparams = new JSONObject();
+                jparams.put("path", testFile);
+                jparams.put("offset", 0);
+                jparams.put("durability", "group");
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/write")
+                        .setContent(createParamsBuffer(jparams.toString(), newContent))
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONObject result = new JSONObject(response.readAsString());
+                assertEquals(newContent.length, result.getLong("bytesWritten"));
+                assertEquals("group", result.getString("durability"));
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canWriteDataToFileWithOffset() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writeFileTestWithOffset";
+
+            JSONObject jparams = new JSONObject();
+            try {
+                jparams.put("path", testFile);
+                jparams.put("offset", 2);
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+
+            byte [] newContent = "Rewrite".getBytes();
+
+            FuseTestAPIClient client;
+            try {
+                byte[] content = createParamsBuffer(jparams.toString(), newContent);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/write")
+                        .setContent(content)
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            int reportedBytesWritten = Integer.parseInt(response.readAsString());
+
+            assertEquals(newContent.length, reportedBytesWritten);
+
+            File file = new File(Uri.parse(testFile).getPath());
+
+            String newContentStr = null;
+            FileReader reader = null;
+            try {
+                reader = new FileReader(file);
+                char[] readerBuffer = new char[(int) file.length()];
+                reader.read(readerBuffer);
+                newContentStr = new String(readerBuffer);
+                reader.close();
+            } catch (Exception e) {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                throw new RuntimeException(e);
+            }
+
+            assertEquals("InRewritetate!", newContentStr);
+        });
+    }
+
+    @Test
+    public void canWriteSegmentsToFile() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writevFileTest";
+
+            JSONObject jparams = new JSONObject();
+            try {
+                JSONArray segments = new JSONArray();
+                segments.put(new JSONObject().put("offset", 0).put("length", 2));
+                segments.put(new JSONObject().put("offset", 2).put("length", 1));
+                segments.put(new JSONObject().put("offset", 7).put("length", 3));
+                jparams.put("path", testFile);
+                jparams.put("segments", segments);
+            }
+            catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+
+            byte [] newContent = "abcxyz".getBytes();
+
+            FuseTestAPIClient client;
+            try {
+                byte[] content = createParamsBuffer(jparams.toString(), newContent);
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/writev")
+                        .setContent(content)
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+            assertEquals(200, response.getStatus());
+
+            assertEquals("[2,1,3]", response.readAsString());
+
+            File file = new File(Uri.parse(testFile).getPath());
+
+            String newContentStr = null;
+            FileReader reader = null;
+            try {
+                reader = new FileReader(file);
+                char[] readerBuffer = new char[(int) file.length()];
+                reader.read(readerBuffer);
+                newContentStr = new String(readerBuffer);
+                reader.close();
+            } catch (Exception e) {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+                throw new RuntimeException(e);
+            }
+
+            assertEquals("abc3456xyz", newContentStr);
+        });
+    }
+
+    @Test
+    public void shouldRejectSegmentsThatDoNotAddUpToContent() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/writevFileTest";
+            File file = new File(Uri.parse(testFile).getPath());
+            long originalLength = file.length();
+
+            // More bytes than segments, then fewer.
+            for (int segmentLength : new int[] { 2, 4 }) {
+                JSONObject jparams = new JSONObject();
+                try {
+                    JSONArray segments = new JSONArray();
+                    segments.put(new JSONObject().put("offset", 0).put("length", 1));
+                    segments.put(new JSONObject().put("offset", 7).put("length", segmentLength));
+                    jparams.put("path", testFile);
+                    jparams.put("segments", segments);
+                }
+                catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+
+                FuseTestAPIClient client;
+                try {
+                    byte[] content = createParamsBuffer(jparams.toString(), "abcd".getBytes());
+                    client = new FuseTestAPIClient.Builder()
+                            .setFuseContext(activity.getFuseContext())
+                            .setAPIPort(port)
+                            .setAPISecret(secret)
+                            .setPluginID("FuseFilesystem")
+                            .setType("application/octet-stream")
+                            .setEndpoint("/file/writev")
+                            .setContent(content)
+                            .build();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+
+                FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+                assertNotEquals(200, response.getStatus());
+                assertEquals(originalLength, file.length());
+            }
+        });
+    }
+
+    @Test
+    public void canCopyAndMoveFile() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            File source = new File("/data/data/com.breautek.fuse.filesystem.test/files/copySource");
+            File copy = new File("/data/data/com.breautek.fuse.filesystem.test/files/copyDestination");
+            File moved = new File("/data/data/com.breautek.fuse.filesystem.test/files/moveDestination");
+            try {
+                Files.write(source.toPath(), "copy me".getBytes());
+                Files.deleteIfExists(copy.toPath());
+                Files.deleteIfExists(moved.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            String[][] transfers = new String[][] {
+                {"/file/copy", source.getPath(), copy.getPath()},
+                {"/file/move", copy.getPath(), moved.getPath()}
+            };
+
+            for (String[] transfer : transfers) {
+                FuseTestAPIClient client;
+                try {
+                    JSONObject params = new JSONObject();
+                    params.put("source", "file://" + transfer[1]);
+                    params.put("destination", "file://" + transfer[2]);
+                    client = new FuseTestAPIClient.Builder()
+                            .setFuseContext(activity.getFuseContext())
+                            .setAPIPort(port)
+                            .setAPISecret(secret)
+                            .setPluginID("FuseFilesystem")
+                            .setType("application/json")
+                            .setEndpoint(transfer[0])
+                            .setContent(params.toString())
+                            .build();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+
+                FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+                assertEquals(200, response.getStatus());
+
+                try {
+                    JSONObject result = new JSONObject(response.readAsString());
+                    assertFalse(result.getBoolean("skipped"));
+                    if (transfer[0].equals("/file/copy")) {
+                        assertEquals(7, result.getLong("bytesCopied"));
+                    }
+                    else {
+                        assertTrue(result.getBoolean("renamed"));
+                    }
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            assertTrue(source.exists());
+            assertFalse(copy.exists());
+            try {
+                assertEquals("copy me", new String(Files.readAllBytes(moved.toPath())));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void canDeleteFile() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/removeFileTest";
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject params = new JSONObject();
+                params.put("path", testFile);
+                params.put("recursive", false);
+
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/remove")
+                        .setContent(params.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+
+            assertEquals(200, response.getStatus());
+
+            String result = response.readAsString();
+
+            assertEquals("true", result);
+
+            File file = new File(Uri.parse(testFile).getPath());
+
+            assertFalse(file.exists());
+        });
+    }
+
+    @Test
+    public void deleteAPIShouldReturnFalse() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            String testFile = "file:///data/data/com.breautek.fuse.filesystem.test/files/doesNotExists";
+
+            FuseTestAPIClient client;
             try {
                 JSONObject params = new JSONObject();
                 params.put("path", testFile);
@@ -798,6 +1758,60 @@ public class FuseFilesystemPluginTest {
         });
     }
 
+    @Test
+    public void canReportWhatWasDeleted() {
+        activityRule.getScenario().onActivity(activity -> {
+            int port = activity.getFuseContext().getAPIPort();
+            String secret = activity.getFuseContext().getAPISecret();
+
+            File dir = new File("/data/data/com.breautek.fuse.filesystem.test/files/reportDeleteTest");
+            try {
+                assertTrue(new File(dir, "sub").mkdirs());
+                Files.write(new File(dir, "a").toPath(), "a".getBytes());
+                Files.write(new File(dir, "sub/b").toPath(), "b".getBytes());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient client;
+            try {
+                JSONObject params = new JSONObject();
+                params.put("path", "file://" + dir.getAbsolutePath());
+                params.put("recursive", true);
+                params.put("report", true);
+
+                client = new FuseTestAPIClient.Builder()
+                        .setFuseContext(activity.getFuseContext())
+                        .setAPIPort(port)
+                        .setAPISecret(secret)
+                        .setPluginID("FuseFilesystem")
+                        .setType("application/octet-stream")
+                        .setEndpoint("/file/remove")
+                        .setContent(params.toString())
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            FuseTestAPIClient.FuseAPITestResponse response = client.execute();
+
+            assertEquals(200, response.getStatus());
+
+            try {
+                JSONObject report = new JSONObject(response.readAsString());
+                assertTrue(report.getBoolean("didDelete"));
+                assertEquals(2, report.getLong("files"));
+                assertEquals(2, report.getLong("directories"));
+                assertEquals(0, report.getLong("failureCount"));
+                assertEquals(0, report.getJSONArray("failures").length());
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+
+            assertFalse(dir.exists());
+        });
+    }
+
     @Test
     public void canRecursivelyDelete() {
         activityRule.getScenario().onActivity(activity -> {
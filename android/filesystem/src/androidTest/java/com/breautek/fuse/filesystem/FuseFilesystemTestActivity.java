@@ -23,10 +23,17 @@ import com.breautek.fuse.FuseContext;
 import com.breautek.fuse.testtools.FuseTestActivity;
 
 public class FuseFilesystemTestActivity extends FuseTestActivity {
+    private FuseFilesystemPlugin $plugin;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         FuseContext fcontext = getFuseContext();
-        fcontext.registerPlugin(new FuseFilesystemPlugin(fcontext));
+        $plugin = new FuseFilesystemPlugin(fcontext);
+        fcontext.registerPlugin($plugin);
+    }
+
+    public FuseFilesystemPlugin getFilesystemPlugin() {
+        return $plugin;
     }
 }
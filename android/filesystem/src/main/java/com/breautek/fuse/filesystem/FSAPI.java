@@ -1,318 +1,1322 @@
 package com.breautek.fuse.filesystem;
 
 import android.net.Uri;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import androidx.annotation.Nullable;
 
 import com.breautek.fuse.FuseError;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.PatternSyntaxException;
 
 public class FSAPI implements IFSAPI {
     public static final String ERROR_TAG = "FuseFilesystem";
 
+    /**
+     * The chunk size of buffered appends too large to buffer, which are streamed like append.
+     */
+    private static final int STREAMED_APPEND_CHUNK_SIZE = 1048576; // 1mb
+
+    private static final String UNIX_STAT_ATTRIBUTES = "unix:isRegularFile,isDirectory,size,lastModifiedTime,ctime,mode";
+
+    private final FuseBufferPool $bufferPool;
+    private final FuseFileChannelCache $channelCache;
+    private final FuseMetadataCache $metadataCache;
+    private final FuseListCursors $listCursors;
+    private final FuseLockStripes $locks;
+    private final FuseAppendCoalescer $appendCoalescer;
+    private final FuseGroupCommitter $groupCommitter;
+    private FuseTreeDeleter $treeDeleter;
+    private FuseTreeHasher $treeHasher;
+    private FuseMappedReadPolicy $mappedReadPolicy;
+
+    public FSAPI() {
+        this(new FuseBufferPool());
+    }
+
+    public FSAPI(FuseBufferPool bufferPool) {
+        $bufferPool = bufferPool;
+        $channelCache = new FuseFileChannelCache();
+        $metadataCache = new FuseMetadataCache();
+        $listCursors = new FuseListCursors();
+        $treeDeleter = FuseTreeDeleter.getDefault();
+        $treeHasher = FuseTreeHasher.getDefault();
+        $locks = new FuseLockStripes();
+        $appendCoalescer = new FuseAppendCoalescer(this::$appendBatch, (File file, InputStream io, long contentLength) -> $append(file, io, contentLength, STREAMED_APPEND_CHUNK_SIZE));
+        $groupCommitter = new FuseGroupCommitter(this::$syncFile);
+        $mappedReadPolicy = new FuseMappedReadPolicy();
+    }
+
+    public FuseBufferPool getBufferPool() {
+        return $bufferPool;
+    }
+
+    /**
+     * Gets the cache of open file channels reused across calls.
+     */
+    public FuseFileChannelCache getChannelCache() {
+        return $channelCache;
+    }
+
+    /**
+     * Gets the directory listings kept open to resume list.
+     */
+    public FuseListCursors getListCursors() {
+        return $listCursors;
+    }
+
+    /**
+     * Gets the cache answering exists, getSize and getType.
+     */
+    public FuseMetadataCache getMetadataCache() {
+        return $metadataCache;
+    }
+
+    /**
+     * Gets the buffer behind appendBuffered, to tune its thresholds.
+     */
+    public FuseAppendCoalescer getAppendCoalescer() {
+        return $appendCoalescer;
+    }
+
+    /**
+     * Gets the committer batching GROUP_COMMIT syncs, to tune its interval and batch size.
+     */
+    public FuseGroupCommitter getGroupCommitter() {
+        return $groupCommitter;
+    }
+
+    /**
+     * Sets the engine used for deletes, e.g. one with a different parallelism than the shared default.
+     */
+    public void setTreeDeleter(FuseTreeDeleter deleter) {
+        $treeDeleter = deleter;
+    }
+
+    public FuseTreeDeleter getTreeDeleter() {
+        return $treeDeleter;
+    }
+
+    /**
+     * Sets the engine used by hashTree, e.g. one that leaves some cores free.
+     */
+    public void setTreeHasher(FuseTreeHasher hasher) {
+        $treeHasher = hasher;
+    }
+
+    public FuseTreeHasher getTreeHasher() {
+        return $treeHasher;
+    }
+
+    public void setMappedReadPolicy(FuseMappedReadPolicy policy) {
+        $mappedReadPolicy = policy;
+    }
+
+    public FuseMappedReadPolicy getMappedReadPolicy() {
+        return $mappedReadPolicy;
+    }
+
     private String $parseUri(Uri uri) {
         return uri.getPath();
     }
 
     public long append(Uri uri, InputStream io, long contentLength, int chunkSize) throws FuseError {
-        String path = $parseUri(uri);
-        File file = new File(path);
+        return $append(new File($parseUri(uri)), io, contentLength, chunkSize);
+    }
 
-        if (contentLength == 0) {
-            return 0;
-        }
+    private long $append(File file, InputStream io, long contentLength, int chunkSize) throws FuseError {
+        String path = file.getPath();
 
-        long bytesWritten = 0;
-        try (FileOutputStream ostream = new FileOutputStream(file, true)) {
-            if (chunkSize > contentLength) {
-                chunkSize = (int) contentLength;
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        try {
+            if (contentLength == 0) {
+                return 0;
             }
 
-            byte[] buffer = new byte[chunkSize];
-            long totalBytesRead = 0;
-            int bytesRead = 0;
-            while (true) {
-                long bytesToRead = contentLength - totalBytesRead;
+            long bytesWritten = 0;
+            try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+                // The exclusive lock keeps other appends from claiming the same end of file.
+                FileChannel channel = handle.getChannel();
+                bytesWritten = $pipe(io, channel, channel.size(), contentLength, chunkSize);
+            }
+            catch (FileNotFoundException ex) {
+                throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + path + "\"", ex);
+            }
+            catch (IOException ex) {
+                throw new FuseError(ERROR_TAG, 0, "IO Exception while appending data", ex);
+            }
+            finally {
+                $metadataCache.invalidate(file);
+            }
 
-                if (bytesToRead < chunkSize) {
-                    buffer = new byte[bytesRead];
-                }
+            return bytesWritten;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public CompletableFuture<Long> appendBuffered(Uri uri, InputStream io, long contentLength) throws FuseError {
+        File file = new File($parseUri(uri));
+        return $appendCoalescer.append(file, io, contentLength);
+    }
 
-                bytesRead = io.read(buffer);
+    public void flush(Uri uri) throws FuseError {
+        File file = new File($parseUri(uri));
+        $appendCoalescer.flush(file);
+    }
 
-                if (bytesRead == -1) {
-                    break;
-                }
+    public CompletableFuture<FuseDurability> sync(Uri uri, FuseDurability durability) throws FuseError {
+        File file = new File($parseUri(uri));
+        if (durability == FuseDurability.NONE) {
+            return CompletableFuture.completedFuture(FuseDurability.NONE);
+        }
 
-                totalBytesRead += bytesRead;
-                ostream.write(buffer);
-                bytesWritten += buffer.length;
+        $flushPendingAppends(file);
 
-                if (totalBytesRead == contentLength) {
-                    break;
-                }
+        if (durability == FuseDurability.GROUP_COMMIT) {
+            return $groupCommitter.commit(file).thenApply((Void unused) -> FuseDurability.GROUP_COMMIT);
+        }
+
+        try {
+            $syncFile(file);
+        }
+        catch (FileNotFoundException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + file.getPath() + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while syncing file", ex);
+        }
+
+        return CompletableFuture.completedFuture(FuseDurability.OPERATION);
+    }
+
+    private void $syncFile(File file) throws IOException {
+        // Only the content and the size need to reach storage, not the timestamps.
+        try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, false)) {
+            handle.getChannel().force(false);
+        }
+    }
+
+    private void $appendBatch(File file, byte[] data, int length) throws FuseError {
+        Lock lock = $locks.lockExclusive(file);
+        try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+            FileChannel channel = handle.getChannel();
+            long position = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
             }
         }
         catch (FileNotFoundException ex) {
-            throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + path + "\"", ex);
+            throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + file.getPath() + "\"", ex);
         }
         catch (IOException ex) {
             throw new FuseError(ERROR_TAG, 0, "IO Exception while appending data", ex);
         }
+        finally {
+            $metadataCache.invalidate(file);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered appends of the file before another operation observes or changes it,
+     * so operations stay in the order they were issued.
+     */
+    private void $flushPendingAppends(File file) {
+        if (!$appendCoalescer.hasPending(file)) {
+            return;
+        }
 
-        return bytesWritten;
+        try {
+            $appendCoalescer.flush(file);
+        }
+        catch (FuseError ex) {
+            // Already delivered to the acknowledgements of the failed appends.
+        }
     }
 
-    public boolean delete(Uri uri, boolean recursive) throws FuseError {
+    /**
+     * Like $flushPendingAppends, for the file and every file below it.
+     * Called before operations that remove or move a whole tree.
+     */
+    private void $flushPendingTreeAppends(File root) {
+        try {
+            $appendCoalescer.flushTree(root);
+        }
+        catch (FuseError ex) {
+            // Already delivered to the acknowledgements of the failed appends.
+        }
+    }
+
+    public FuseDeleteResult delete(Uri uri, boolean recursive) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        if (!file.exists()) {
-            return false;
-        }
+        $flushPendingTreeAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        try {
+            FuseDeleteResult result;
+            if (recursive) {
+                $channelCache.invalidateTree(file);
+                result = $treeDeleter.delete(file, true);
+                $metadataCache.invalidateTree(file);
+            }
+            else {
+                $channelCache.invalidate(file);
+                result = $treeDeleter.delete(file, false);
+                $metadataCache.invalidate(file);
+            }
 
-        boolean didDelete = false;
-        if (recursive) {
-            didDelete = FileUtils.deleteRecursively(file);
+            return result;
         }
-        else {
-            didDelete = file.delete();
+        finally {
+            lock.unlock();
         }
-
-        return didDelete;
     }
 
     public FuseFileType getType(Uri uri) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        if (!file.exists()) {
-            throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
-        }
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockShared(file);
+        try {
+            FuseMetadataCache.Entry entry = $metadataCache.get(file);
+            if (!entry.exists()) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
+            }
 
-        FuseFileType type = null;
-        if (file.isFile()) {
-            type = FuseFileType.FILE;
+            return entry.getType();
         }
-        else if (file.isDirectory()) {
-            type = FuseFileType.DIRECTORY;
+        finally {
+            lock.unlock();
         }
-
-        return type;
     }
 
     public boolean exists(Uri uri) throws FuseError {
         File file = new File($parseUri(uri));
-        return file.exists();
+
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockShared(file);
+        try {
+            return $metadataCache.get(file).exists();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     public long getSize(Uri uri) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        if (!file.exists()) {
-            throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
-        }
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockShared(file);
+        try {
+            FuseMetadataCache.Entry entry = $metadataCache.get(file);
+            if (!entry.exists()) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
+            }
 
-        return file.length();
+            return entry.getSize();
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     public boolean mkdir(Uri uri, boolean recursive) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        boolean didCreate;
+        Lock lock = $locks.lockExclusive(file);
         try {
-            if (recursive) {
-                didCreate = file.mkdirs();
-            } else {
-                didCreate = file.mkdir();
+            boolean didCreate;
+            try {
+                if (recursive) {
+                    didCreate = file.mkdirs();
+                } else {
+                    didCreate = file.mkdir();
+                }
+            }
+            catch (SecurityException error) {
+                throw new FuseError("FuseFileystem", 0, "Permission denied.", error);
+            }
+            finally {
+                $metadataCache.invalidate(file);
+                if (recursive) {
+                    // mkdirs may have created any of the parents as well.
+                    File parent = file.getAbsoluteFile().getParentFile();
+                    while (parent != null) {
+                        $metadataCache.invalidate(parent);
+                        parent = parent.getParentFile();
+                    }
+                }
             }
+
+            return didCreate;
         }
-        catch (SecurityException error) {
-            throw new FuseError("FuseFileystem", 0, "Permission denied.", error);
+        finally {
+            lock.unlock();
         }
+    }
+
+    public FuseFileStat stat(Uri uri) throws FuseError {
+        String path = $parseUri(uri);
+        Path target = new File(path).toPath();
 
-        return didCreate;
+        $flushPendingAppends(target.toFile());
+        Lock lock = $locks.lockShared(target.toFile());
+        try {
+            try {
+                return $stat(target);
+            }
+            catch (NoSuchFileException ex) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", ex);
+            }
+            catch (IOException ex) {
+                throw new FuseError("FuseFilesystem", 0, "IO Error", ex);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
-    public long read(Uri uri, long desiredLength, long offset, int chunkSize, IReadCallback callback) throws FuseError {
+    public @Nullable String list(Uri uri, String filter, @Nullable String cursor, long offset, int limit, boolean withStats, IListCallback callback) throws FuseError {
         String path = $parseUri(uri);
-        File file = new File(path);
+        Path dir = new File(path).toPath();
 
-        if (!file.exists()) {
-            throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
+        FuseListCursors.Listing listing = null;
+        if (cursor != null) {
+            listing = $listCursors.take(cursor);
+            if (listing == null) {
+                throw new FuseError("FuseFilesystem", 0, "The cursor \"" + cursor + "\" has expired, restart the listing");
+            }
+
+            if (!listing.getPath().equals(path)) {
+                $listCursors.park(cursor, listing);
+                throw new FuseError("FuseFilesystem", 0, "The cursor \"" + cursor + "\" does not belong to \"" + path + "\"");
+            }
+
+            if (filter != null && !filter.equals(listing.getFilter())) {
+                $listCursors.park(cursor, listing);
+                throw new FuseError("FuseFilesystem", 0, "The cursor \"" + cursor + "\" was made with a different filter");
+            }
         }
 
-        long fileSize = file.length();
+        Lock lock = $locks.lockShared(dir.toFile());
+        boolean keep = false;
+        try {
+            if (listing == null) {
+                listing = new FuseListCursors.Listing(path, filter, filter == null ? Files.newDirectoryStream(dir) : Files.newDirectoryStream(dir, filter));
+            }
+            Iterator<Path> it = listing.getIterator();
+
+            long skipped = 0;
+            while (cursor == null && skipped < offset && it.hasNext()) {
+                it.next();
+                skipped++;
+            }
+
+            int count = 0;
+            while ((limit < 0 || count < limit) && it.hasNext()) {
+                Path entry = it.next();
 
-        long contentLength = 0;
-        if (desiredLength == -1) {
-            contentLength = fileSize;
+                FuseFileStat stat = null;
+                if (withStats) {
+                    try {
+                        stat = $stat(entry);
+                    }
+                    catch (IOException ex) {
+                        // Removed since it was enumerated, or not ours to stat. Still list the name.
+                    }
+                }
+
+                callback.onEntry(entry.getFileName().toString(), stat);
+                count++;
+            }
+
+            if (!it.hasNext()) {
+                return null;
+            }
+
+            keep = true;
+            if (cursor == null) {
+                return $listCursors.park(listing);
+            }
+            $listCursors.park(cursor, listing);
+            return cursor;
+        }
+        catch (NoSuchFileException ex) {
+            throw new FuseError("FuseFilesystem", 0, "No such directory found at \"" + path + "\"", ex);
+        }
+        catch (NotDirectoryException ex) {
+            throw new FuseError("FuseFilesystem", 0, "\"" + path + "\" is not a directory", ex);
+        }
+        catch (PatternSyntaxException ex) {
+            throw new FuseError("FuseFilesystem", 0, "Invalid filter \"" + filter + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError("FuseFilesystem", 0, "IO Error", ex);
+        }
+        catch (DirectoryIteratorException ex) {
+            throw new FuseError("FuseFilesystem", 0, "IO Error", ex.getCause());
         }
-        else {
-            contentLength = Math.min(desiredLength, fileSize);
+        finally {
+            if (!keep && listing != null) {
+                listing.close();
+            }
+            lock.unlock();
         }
+    }
 
-        if (contentLength + offset > fileSize) {
-            contentLength -= (contentLength + offset) - fileSize;
+    private FuseFileStat $stat(Path target) throws IOException {
+        try {
+            return $statUnix(target);
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException ex) {
+            return $statPosix(target);
         }
+    }
 
-        if (contentLength == 0) {
-            return 0;
+    /**
+     * The unix view is the only one exposing the real ctime and the full mode,
+     * and reading it by name still costs a single stat.
+     */
+    private FuseFileStat $statUnix(Path target) throws IOException {
+        Map<String, Object> attributes = Files.readAttributes(target, UNIX_STAT_ATTRIBUTES);
+
+        return new FuseFileStat(
+            $getType((Boolean) attributes.get("isRegularFile"), (Boolean) attributes.get("isDirectory")),
+            (Long) attributes.get("size"),
+            ((FileTime) attributes.get("lastModifiedTime")).toMillis(),
+            ((FileTime) attributes.get("ctime")).toMillis(),
+            (Integer) attributes.get("mode") & 07777
+        );
+    }
+
+    private FuseFileStat $statPosix(Path target) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(target, PosixFileAttributes.class);
+
+        int mode = 0;
+        for (PosixFilePermission permission : attributes.permissions()) {
+            // Declared from OWNER_READ down to OTHERS_EXECUTE, matching the bits 0400 to 0001.
+            mode |= 1 << (8 - permission.ordinal());
         }
 
-        if (chunkSize > contentLength) {
-            chunkSize = (int) contentLength;
+        long modifiedTime = attributes.lastModifiedTime().toMillis();
+        return new FuseFileStat(
+            $getType(attributes.isRegularFile(), attributes.isDirectory()),
+            attributes.size(),
+            modifiedTime,
+            modifiedTime,
+            mode
+        );
+    }
+
+    private FuseFileType $getType(boolean isFile, boolean isDirectory) {
+        if (isFile) {
+            return FuseFileType.FILE;
+        }
+        else if (isDirectory) {
+            return FuseFileType.DIRECTORY;
         }
 
-        callback.onReadStart(contentLength);
+        return null;
+    }
 
-        long totalBytesRead = 0;
-        int bytesRead = 0;
-        byte[] buffer = new byte[chunkSize];
+    public long read(Uri uri, long desiredLength, long offset, int chunkSize, IReadCallback callback) throws FuseError {
+        return read(uri, desiredLength, offset, chunkSize, FuseReadMode.AUTO, callback);
+    }
 
-        FileInputStream io = null;
+    /**
+     * The file is opened and its size taken under the file's shared lock, which is released
+     * before streaming, so a slow client does not hold up writers of every file in the stripe.
+     * Chunks are then read with positional reads outside the lock, except mapped windows,
+     * which are read under the lock one window at a time because a mapping truncated
+     * underneath faults. Writes through the async API stay ordered after the read by the
+     * path's queue, a file truncated by other means ends the response early.
+     */
+    public long read(Uri uri, long desiredLength, long offset, int chunkSize, FuseReadMode mode, IReadCallback callback) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path);
+
+        $flushPendingAppends(file);
+        FuseFileChannelCache.Handle handle;
+        long fileSize;
+        Lock lock = $locks.lockShared(file);
         try {
-            io = new FileInputStream(file);
-        } catch (FileNotFoundException e) {
+            if (!file.exists()) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
+            }
+
+            handle = $channelCache.acquire(file, false);
+            fileSize = $sizeOf(handle);
+        }
+        catch (FileNotFoundException e) {
             throw new FuseError("FuseFilesystem", 0, "File not found", e);
         }
+        catch (IOException e) {
+            throw new FuseError("FuseFilesystem", 0, "Read error", e);
+        }
+        finally {
+            lock.unlock();
+        }
 
-        try {
-            if (offset > 0) {
-                io.skip(offset);
-            }
-            while (totalBytesRead < contentLength && (bytesRead = io.read(buffer)) != -1) {
-                if (bytesRead < chunkSize) {
-                    byte[] b = new byte[bytesRead];
-                    System.arraycopy(buffer, 0, b, 0, bytesRead);
-                    callback.onReadChunk(bytesRead, b);
-                }
-                else {
-                    callback.onReadChunk(chunkSize, buffer);
-                }
+        long totalBytesRead;
+        try (FuseFileChannelCache.Handle opened = handle) {
+            FileChannel channel = opened.getChannel();
+
+            long contentLength = 0;
+            if (desiredLength == -1) {
+                contentLength = fileSize;
+            }
+            else {
+                contentLength = Math.min(desiredLength, fileSize);
+            }
+
+            if (contentLength + offset > fileSize) {
+                contentLength -= (contentLength + offset) - fileSize;
+            }
 
-                totalBytesRead += bytesRead;
+            if (contentLength <= 0) {
+                // Still opened and closed, so a streamed response ends instead of hanging.
+                callback.onReadStart(0);
+                callback.onReadClose();
+                return 0;
+            }
+
+            if (chunkSize > contentLength) {
+                chunkSize = (int) contentLength;
             }
 
-            io.close();
+            callback.onReadStart(contentLength);
+            if ($mappedReadPolicy.shouldMap(mode, contentLength)) {
+                totalBytesRead = $readMapped(file, channel, offset, contentLength, chunkSize, callback);
+            }
+            else {
+                totalBytesRead = $readChannel(channel, offset, contentLength, chunkSize, callback);
+            }
         }
         catch (IOException e) {
             throw new FuseError("FuseFilesystem", 0, "Read error", e);
         }
 
+        callback.onReadClose();
+
         return totalBytesRead;
     }
 
-    public long write(Uri uri, long offset, int chunkSize, InputStream input, long contentLength) throws FuseError {
+    public byte[] hash(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int chunkSize) throws FuseError {
+        MessageDigest digest = algorithm.createDigest();
+        read(uri, length, offset, chunkSize, FuseReadMode.AUTO, new IReadCallback() {
+            @Override
+            public void onReadStart(long contentLength) {}
+
+            @Override
+            public void onReadChunk(int bufferSize, byte[] buffer) {
+                digest.update(buffer, 0, bufferSize);
+            }
+
+            @Override
+            public void onReadChunk(ByteBuffer chunk) {
+                digest.update(chunk);
+            }
+
+            @Override
+            public void onReadClose() {}
+        });
+
+        return digest.digest();
+    }
+
+    /**
+     * Like read, only the size is taken under the file's shared lock, the blocks are hashed outside it.
+     */
+    public byte[] hashTree(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int blockSize) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path);
+
+        $flushPendingAppends(file);
+        FuseFileChannelCache.Handle handle;
+        long fileSize;
+        Lock lock = $locks.lockShared(file);
+        try {
+            handle = $channelCache.acquire(file, false);
+            fileSize = $sizeOf(handle);
+        }
+        catch (FileNotFoundException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + path + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while hashing file", ex);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        try (FuseFileChannelCache.Handle opened = handle) {
+            long start = Math.min(offset, fileSize);
+            long contentLength = length == -1 ? fileSize - start : Math.min(length, fileSize - start);
+
+            return $treeHasher.hash(opened.getChannel(), algorithm, start, contentLength, blockSize, $bufferPool);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while hashing file", ex);
+        }
+    }
+
+    /**
+     * Like read, the ranges are clamped to the size taken under the file's shared lock and streamed outside it.
+     */
+    public long readv(Uri uri, List<FuseFileRange> ranges, boolean coalesce, int chunkSize, IReadvCallback callback) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        long bytesWritten = 0;
+        for (FuseFileRange range : ranges) {
+            if (range.getOffset() < 0 || range.getLength() < -1) {
+                throw new FuseError("FuseFilesystem", 0, "Invalid range at offset " + range.getOffset() + " with length " + range.getLength());
+            }
+        }
 
+        $flushPendingAppends(file);
+        FuseFileChannelCache.Handle handle;
+        long fileSize;
+        Lock lock = $locks.lockShared(file);
         try {
-            RandomAccessFile io = new RandomAccessFile(file, "rw");
-            if (offset > 0) {
-                io.seek(offset);
+            if (!file.exists()) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"");
+            }
+
+            handle = $channelCache.acquire(file, false);
+            fileSize = $sizeOf(handle);
+        }
+        catch (FileNotFoundException e) {
+            throw new FuseError("FuseFilesystem", 0, "File not found", e);
+        }
+        catch (IOException e) {
+            throw new FuseError("FuseFilesystem", 0, "Read error", e);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        long totalBytesRead = 0;
+        try (FuseFileChannelCache.Handle opened = handle) {
+            FileChannel channel = opened.getChannel();
+
+            List<FuseFileRange> clamped = new ArrayList<>(ranges.size());
+            for (FuseFileRange range : ranges) {
+                long offset = Math.min(range.getOffset(), fileSize);
+                long length = range.getLength() == -1 ? fileSize - offset : Math.min(range.getLength(), fileSize - offset);
+                clamped.add(new FuseFileRange(offset, length));
+            }
+
+            if (coalesce) {
+                clamped = FuseFileRange.coalesce(clamped);
+            }
+
+            long contentLength = 0;
+            int largestRange = 0;
+            for (FuseFileRange range : clamped) {
+                contentLength += range.getLength();
+                largestRange = (int) Math.max(largestRange, Math.min(range.getLength(), Integer.MAX_VALUE));
             }
 
-            if (contentLength > 0) {
-                if (chunkSize > contentLength) {
-                    chunkSize = (int) contentLength;
+            if (chunkSize > largestRange) {
+                chunkSize = Math.max(largestRange, 1);
+            }
+
+            callback.onReadvRanges(clamped);
+            callback.onReadStart(contentLength);
+            for (FuseFileRange range : clamped) {
+                callback.onReadvRangeStart(range);
+                if (range.getLength() > 0) {
+                    totalBytesRead += $readChannel(channel, range.getOffset(), range.getLength(), chunkSize, callback);
                 }
+            }
+        }
+        catch (IOException e) {
+            throw new FuseError("FuseFilesystem", 0, "Read error", e);
+        }
 
-                byte[] buffer = new byte[chunkSize];
-                long totalBytesRead = 0;
-                int bytesRead = 0;
-                while (true) {
-                    long bytesToRead = contentLength - totalBytesRead;
-                    if (bytesToRead >= chunkSize) {
-                        bytesRead = input.read(buffer);
-                    } else {
-                        buffer = new byte[bytesRead];
-                        bytesRead = input.read(buffer);
-                    }
+        callback.onReadClose();
+
+        return totalBytesRead;
+    }
 
+    /**
+     * Gets the size of the handle's file, returning the handle to the cache if that fails.
+     */
+    private static long $sizeOf(FuseFileChannelCache.Handle handle) throws IOException {
+        try {
+            return handle.getChannel().size();
+        }
+        catch (IOException ex) {
+            handle.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads contentLength bytes starting at offset using positional reads,
+     * so the channel position is never touched and deep offsets cost the same
+     * as offset 0. Short reads are retried until the chunk is full or EOF is hit.
+     * The callback receives a slice of a pooled buffer, which is reused for
+     * every chunk.
+     */
+    private long $readChannel(FileChannel channel, long offset, long contentLength, int chunkSize, IReadCallback callback) throws IOException {
+        byte[] array = $bufferPool.acquire(chunkSize);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array, 0, chunkSize).slice();
+            long totalBytesRead = 0;
+            boolean eof = false;
+            while (!eof && totalBytesRead < contentLength) {
+                buffer.clear();
+                long bytesToRead = contentLength - totalBytesRead;
+                if (bytesToRead < buffer.capacity()) {
+                    buffer.limit((int) bytesToRead);
+                }
+
+                while (buffer.hasRemaining()) {
+                    int bytesRead = channel.read(buffer, offset + totalBytesRead + buffer.position());
                     if (bytesRead == -1) {
+                        eof = true;
                         break;
                     }
+                }
 
-                    totalBytesRead += bytesRead;
-                    io.write(buffer);
-                    bytesWritten += buffer.length;
+                buffer.flip();
+                int chunkLength = buffer.remaining();
+                if (chunkLength == 0) {
+                    break;
+                }
 
-                    if (totalBytesRead == contentLength) {
-                        break;
-                    }
+                callback.onReadChunk(buffer);
+                totalBytesRead += chunkLength;
+            }
+
+            return totalBytesRead;
+        }
+        finally {
+            $bufferPool.release(array);
+        }
+    }
+
+    /**
+     * Serves the range from read-only mapped windows that slide through the file,
+     * emitting chunk sized slices of each window straight to the callback.
+     * If the filesystem refuses to map, the remainder of the range is served
+     * by $readChannel instead. Each window is mapped and delivered under the
+     * file's shared lock, so the file cannot be truncated under the mapping.
+     */
+    private long $readMapped(File file, FileChannel channel, long offset, long contentLength, int chunkSize, IReadCallback callback) throws IOException {
+        long windowSize = $mappedReadPolicy.getEffectiveWindowSize(chunkSize);
+        long totalBytesRead = 0;
+        while (totalBytesRead < contentLength) {
+            long windowLength = Math.min(windowSize, contentLength - totalBytesRead);
+
+            Lock lock = $locks.lockShared(file);
+            MappedByteBuffer window;
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset + totalBytesRead, windowLength);
+            }
+            catch (IOException | UnsupportedOperationException ex) {
+                lock.unlock();
+                return totalBytesRead + $readChannel(channel, offset + totalBytesRead, contentLength - totalBytesRead, chunkSize, callback);
+            }
+
+            try {
+                int windowPosition = 0;
+                while (windowPosition < windowLength) {
+                    int chunkLength = (int) Math.min(chunkSize, windowLength - windowPosition);
+                    window.limit(windowPosition + chunkLength);
+                    window.position(windowPosition);
+                    callback.onReadChunk(window);
+                    windowPosition += chunkLength;
                 }
             }
+            finally {
+                if ($mappedReadPolicy.isEagerUnmap()) {
+                    FileUtils.unmap(window);
+                }
+                lock.unlock();
+            }
 
-            io.close();
+            totalBytesRead += windowLength;
         }
-        catch (FileNotFoundException e) {
-            throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", e);
+
+        return totalBytesRead;
+    }
+
+    public long write(Uri uri, long offset, int chunkSize, InputStream input, long contentLength) throws FuseError {
+        return write(uri, offset, chunkSize, input, contentLength, false);
+    }
+
+    public long write(Uri uri, long offset, int chunkSize, InputStream input, long contentLength, boolean keepSize) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path);
+
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        try {
+            long bytesWritten = 0;
+
+            try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+                if (keepSize && contentLength < 0) {
+                    throw new FuseError(ERROR_TAG, 0, "keepSize needs the content length upfront");
+                }
+
+                if (keepSize && offset + contentLength > handle.getChannel().size()) {
+                    throw new FuseError(ERROR_TAG, 0, "Writing " + contentLength + " bytes at " + offset + " would grow \"" + path + "\" past its size of " + handle.getChannel().size());
+                }
+
+                if (contentLength != 0) {
+                    bytesWritten = $pipe(input, handle.getChannel(), offset, contentLength, chunkSize);
+                }
+            }
+            catch (FileNotFoundException e) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", e);
+            }
+            catch (IOException e) {
+                throw new FuseError("FuseFilesystem", 0, "IO Error", e);
+            }
+            finally {
+                $metadataCache.invalidate(file);
+            }
+
+            return bytesWritten;
         }
-        catch (IOException e) {
-            throw new FuseError("FuseFilesystem", 0, "IO Error", e);
+        finally {
+            lock.unlock();
         }
+    }
+
+    public boolean allocate(Uri uri, long length) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path);
 
-        return bytesWritten;
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+            try {
+                Os.posix_fallocate(handle.getFD(), 0, length);
+                return true;
+            }
+            catch (ErrnoException ex) {
+                if (ex.errno != OsConstants.EOPNOTSUPP && ex.errno != OsConstants.ENOSYS) {
+                    throw new FuseError(ERROR_TAG, 0, "Could not allocate " + length + " bytes for \"" + path + "\"", ex);
+                }
+            }
+
+            // The filesystem cannot reserve blocks. Sizing the file still spares
+            // out of order writes from growing it one piece at a time.
+            if (length > handle.getChannel().size()) {
+                handle.setLength(length);
+            }
+
+            return false;
+        }
+        catch (FileNotFoundException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + path + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while allocating file", ex);
+        }
+        finally {
+            $metadataCache.invalidate(file);
+            lock.unlock();
+        }
     }
 
-    public long truncate(Uri uri, long contentLength, InputStream input, int chunkSize) throws FuseError {
+    public long[] writev(Uri uri, List<FuseFileRange> segments, InputStream input, long contentLength, int chunkSize) throws FuseError {
         String path = $parseUri(uri);
         File file = new File(path);
 
-        long bytesWritten = 0;
+        FuseFileRange.checkSegments(segments, contentLength);
 
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
         try {
-            RandomAccessFile io = new RandomAccessFile(file, "rw");
-            io.setLength(0);
-            if (contentLength > 0) {
-                if (chunkSize > contentLength) {
-                    chunkSize = (int) contentLength;
-                }
-                byte[] buffer = new byte[chunkSize];
-                long totalBytesRead = 0;
-                int bytesRead = 0;
-                while (true) {
-                    long bytesToRead = contentLength - totalBytesRead;
-                    if (bytesToRead >= chunkSize) {
-                        bytesRead = input.read(buffer);
-                    } else {
-                        buffer = new byte[bytesRead];
-                        bytesRead = input.read(buffer);
+            long[] bytesWritten = new long[segments.size()];
+
+            try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+                FileChannel channel = handle.getChannel();
+
+                // Segments that continue where the previous one ended are written as one run,
+                // so many small adjacent segments cost a single copy loop.
+                int runStart = 0;
+                while (runStart < segments.size()) {
+                    int runEnd = runStart + 1;
+                    long runLength = segments.get(runStart).getLength();
+                    while (runEnd < segments.size() && segments.get(runEnd).getOffset() == segments.get(runEnd - 1).getEnd()) {
+                        runLength += segments.get(runEnd).getLength();
+                        runEnd++;
                     }
 
-                    if (bytesRead == -1) {
-                        break;
+                    long runBytesWritten = 0;
+                    if (runLength > 0) {
+                        runBytesWritten = $pipe(input, channel, segments.get(runStart).getOffset(), runLength, chunkSize);
                     }
 
-                    totalBytesRead += bytesRead;
-                    io.write(buffer);
-                    bytesWritten += buffer.length;
+                    for (int i = runStart; i < runEnd; i++) {
+                        bytesWritten[i] = Math.min(segments.get(i).getLength(), runBytesWritten);
+                        runBytesWritten -= bytesWritten[i];
+                    }
+
+                    runStart = runEnd;
+                }
+            }
+            catch (FileNotFoundException e) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", e);
+            }
+            catch (IOException e) {
+                throw new FuseError("FuseFilesystem", 0, "IO Error", e);
+            }
+            finally {
+                $metadataCache.invalidate(file);
+            }
+
+            return bytesWritten;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
 
-                    if (totalBytesRead == contentLength) {
+    public long truncate(Uri uri, long contentLength, InputStream input, int chunkSize) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path);
+
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        try {
+            long bytesWritten = 0;
+
+            try (FuseFileChannelCache.Handle handle = $channelCache.acquire(file, true)) {
+                FileChannel channel = handle.getChannel();
+                channel.truncate(0);
+                if (contentLength != 0) {
+                    bytesWritten = $pipe(input, channel, 0, contentLength, chunkSize);
+                }
+            }
+            catch (FileNotFoundException ex) {
+                throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", ex);
+            }
+            catch (IOException ex) {
+                throw new FuseError("FuseFilesystem", 0, "IO Error", ex);
+            }
+            finally {
+                $metadataCache.invalidate(file);
+            }
+
+            return bytesWritten;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long replace(Uri uri, long contentLength, InputStream input, int chunkSize, boolean sync) throws FuseError {
+        String path = $parseUri(uri);
+        File file = new File(path).getAbsoluteFile();
+
+        $flushPendingAppends(file);
+        Lock lock = $locks.lockExclusive(file);
+        File created = null;
+        File temp = null;
+        try {
+            created = FileUtils.createReplaceTemp(file);
+            temp = created;
+
+            long bytesWritten = 0;
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                if (contentLength != 0) {
+                    bytesWritten = $pipe(input, channel, 0, contentLength, chunkSize);
+                }
+
+                if (sync) {
+                    channel.force(false);
+                }
+            }
+
+            $copyPermissions(file.toPath(), temp.toPath());
+
+            // rename(2) swaps the directory entry in one step. Open handles keep the old content.
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+
+            if (sync) {
+                $syncDirectory(file.getParentFile());
+            }
+
+            return bytesWritten;
+        }
+        catch (NoSuchFileException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such directory found at \"" + file.getParent() + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while replacing file", ex);
+        }
+        finally {
+            if (temp != null) {
+                // Should this fail as well, the plugin removes the temp file on its next start.
+                boolean _unused = temp.delete();
+            }
+            if (created != null) {
+                FileUtils.releaseReplaceTemp(created);
+            }
+
+            $channelCache.invalidate(file);
+            $metadataCache.invalidate(file);
+            lock.unlock();
+        }
+    }
+
+    public FuseCopyResult copy(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError {
+        File sourceFile = new File($parseUri(source)).getAbsoluteFile();
+        File destinationFile = new File($parseUri(destination)).getAbsoluteFile();
+
+        $flushPendingAppends(sourceFile);
+        $flushPendingAppends(destinationFile);
+        Lock lock = $locks.lockPair(sourceFile, false, destinationFile);
+        try {
+            if (!sourceFile.isFile()) {
+                throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + sourceFile.getPath() + "\"");
+            }
+
+            $checkDistinct(sourceFile, destinationFile);
+            if ($shouldSkip(destinationFile, overwrite)) {
+                return new FuseCopyResult(0, false, true);
+            }
+
+            return new FuseCopyResult($copyContent(sourceFile, destinationFile), false, false);
+        }
+        catch (NoSuchFileException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such directory found at \"" + destinationFile.getParent() + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while copying file", ex);
+        }
+        finally {
+            $channelCache.invalidate(destinationFile);
+            $metadataCache.invalidate(destinationFile);
+            lock.unlock();
+        }
+    }
+
+    public FuseCopyResult move(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError {
+        File sourceFile = new File($parseUri(source)).getAbsoluteFile();
+        File destinationFile = new File($parseUri(destination)).getAbsoluteFile();
+
+        $flushPendingTreeAppends(sourceFile);
+        $flushPendingTreeAppends(destinationFile);
+        Lock lock = $locks.lockPair(sourceFile, true, destinationFile);
+        try {
+            if (!Files.exists(sourceFile.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                throw new FuseError(ERROR_TAG, 0, "No such file found at \"" + sourceFile.getPath() + "\"");
+            }
+
+            $checkDistinct(sourceFile, destinationFile);
+            if ($shouldSkip(destinationFile, overwrite)) {
+                return new FuseCopyResult(0, false, true);
+            }
+
+            try {
+                Files.move(sourceFile.toPath(), destinationFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return new FuseCopyResult(0, true, false);
+            }
+            catch (AtomicMoveNotSupportedException ex) {
+                // The files are on different filesystems, the content has to be copied over.
+                if (sourceFile.isDirectory()) {
+                    throw new FuseError(ERROR_TAG, 0, "Cannot move a directory across filesystems", ex);
+                }
+
+                long bytesCopied = $copyContent(sourceFile, destinationFile);
+                Files.delete(sourceFile.toPath());
+                return new FuseCopyResult(bytesCopied, false, false);
+            }
+        }
+        catch (NoSuchFileException ex) {
+            throw new FuseError(ERROR_TAG, 0, "No such directory found at \"" + destinationFile.getParent() + "\"", ex);
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "IO Exception while moving file", ex);
+        }
+        finally {
+            $channelCache.invalidateTree(sourceFile);
+            $channelCache.invalidateTree(destinationFile);
+            $metadataCache.invalidateTree(sourceFile);
+            $metadataCache.invalidateTree(destinationFile);
+            lock.unlock();
+        }
+    }
+
+    private void $checkDistinct(File source, File destination) throws FuseError {
+        try {
+            if (source.getCanonicalPath().equals(destination.getCanonicalPath())) {
+                throw new FuseError(ERROR_TAG, 0, "Source and destination are the same file \"" + source.getPath() + "\"");
+            }
+        }
+        catch (IOException ex) {
+            throw new FuseError(ERROR_TAG, 0, "Could not resolve \"" + destination.getPath() + "\"", ex);
+        }
+    }
+
+    /**
+     * @return true if the destination exists and the policy is to skip it
+     */
+    private boolean $shouldSkip(File destination, FuseOverwritePolicy overwrite) throws FuseError {
+        if (!Files.exists(destination.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+
+        switch (overwrite) {
+            case SKIP:
+                return true;
+            case REPLACE:
+                return false;
+            default:
+                throw new FuseError(ERROR_TAG, 0, "File already exists at \"" + destination.getPath() + "\"");
+        }
+    }
+
+    /**
+     * Copies source into a temp file next to destination with FileChannel.transferTo, which
+     * lets the kernel copy without passing the content through the heap, then renames it over
+     * destination so a partial copy is never visible.
+     *
+     * @return The number of bytes copied
+     */
+    private long $copyContent(File source, File destination) throws IOException {
+        File created = FileUtils.createReplaceTemp(destination);
+        File temp = created;
+        try {
+            long bytesCopied = 0;
+            try (FuseFileChannelCache.Handle handle = $channelCache.acquire(source, false);
+                 FileChannel output = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                FileChannel input = handle.getChannel();
+                long size = input.size();
+                while (bytesCopied < size) {
+                    long transferred = input.transferTo(bytesCopied, size - bytesCopied, output);
+                    if (transferred <= 0) {
+                        // The source was truncated while copying.
                         break;
                     }
+                    bytesCopied += transferred;
                 }
             }
 
-            io.close();
+            $copyPermissions(source.toPath(), temp.toPath());
+            Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            return bytesCopied;
         }
-        catch (FileNotFoundException ex) {
-            throw new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\"", ex);
+        finally {
+            if (temp != null) {
+                boolean _unused = temp.delete();
+            }
+            FileUtils.releaseReplaceTemp(created);
+        }
+    }
+
+    /**
+     * Gives target the permissions of source. Temp files are created private to the app.
+     */
+    private void $copyPermissions(Path source, Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        }
+        catch (NoSuchFileException ex) {
+            // There is nothing to take permissions from, target keeps its own.
+        }
+        catch (UnsupportedOperationException ex) {
+            // Not a POSIX filesystem, permissions are not per file.
+        }
+    }
+
+    /**
+     * Makes a rename in the directory durable. Filesystems that cannot sync a directory are tolerated.
+     */
+    private void $syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
         }
         catch (IOException ex) {
-            throw new FuseError("FuseFilesystem", 0, "IO Error", ex);
+            // The content is durable, only the rename may not be.
+        }
+    }
+
+    /**
+     * Copies up to contentLength bytes from input into the channel through a pooled buffer,
+     * stopping early if input ends. A contentLength of -1 copies until input ends.
+     * Writes are positional starting at position.
+     */
+    private long $pipe(InputStream input, FileChannel channel, long position, long contentLength, int chunkSize) throws IOException {
+        if (contentLength < 0) {
+            contentLength = Long.MAX_VALUE;
+        }
+
+        if (chunkSize > contentLength) {
+            chunkSize = (int) contentLength;
         }
 
-        return bytesWritten;
+        byte[] buffer = $bufferPool.acquire(chunkSize);
+        try {
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            long bytesWritten = 0;
+            while (bytesWritten < contentLength) {
+                int bytesToRead = (int) Math.min(chunkSize, contentLength - bytesWritten);
+                int bytesRead = input.read(buffer, 0, bytesToRead);
+                if (bytesRead == -1) {
+                    break;
+                }
+
+                view.limit(bytesRead);
+                view.position(0);
+                while (view.hasRemaining()) {
+                    channel.write(view, position + bytesWritten + view.position());
+                }
+
+                bytesWritten += bytesRead;
+            }
+
+            return bytesWritten;
+        }
+        finally {
+            $bufferPool.release(buffer);
+        }
     }
 }
@@ -18,22 +18,126 @@ limitations under the License.
 package com.breautek.fuse.filesystem;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public class FileUtils {
+    /**
+     * Suffix of the temp files content is staged in before it atomically replaces a file.
+     */
+    public static final String REPLACE_TEMP_SUFFIX = ".fuse-replace";
+
+    private static final Method $freeDirectBuffer = $resolveFreeDirectBuffer();
+
     private FileUtils() {}
 
-    public static boolean deleteRecursively(File file) {
-        if (file.isFile()) {
-            return file.delete();
+    /**
+     * Releases a mapped buffer without waiting for it to be garbage collected.
+     * The buffer, and any slice of it, must not be accessed afterwards.
+     *
+     * Returns false if the runtime offers no way to unmap eagerly, in which case
+     * the mapping is released once the buffer is collected.
+     */
+    public static boolean unmap(ByteBuffer buffer) {
+        if ($freeDirectBuffer == null || !buffer.isDirect()) {
+            return false;
+        }
+
+        try {
+            $freeDirectBuffer.invoke(null, buffer);
+        }
+        catch (Exception ex) {
+            return false;
         }
 
-        File[] allContents = file.listFiles();
-        if (allContents != null) {
-            for (File f : allContents) {
-                deleteRecursively(f);
-            }
+        return true;
+    }
+
+    private static Method $resolveFreeDirectBuffer() {
+        try {
+            return Class.forName("java.nio.NioUtils").getMethod("freeDirectBuffer", ByteBuffer.class);
+        }
+        catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the file, or the directory and everything below it, on the shared FuseTreeDeleter.
+     * Channels cached for anything removed are closed.
+     *
+     * @return true if the file itself was removed. Use FuseTreeDeleter directly for counts and failures.
+     */
+    public static boolean deleteRecursively(File file) {
+        boolean deleted = FuseTreeDeleter.getDefault().delete(file).didDelete();
+        FuseFileChannelCache.invalidateTreeInAll(file);
+        return deleted;
+    }
+
+    /**
+     * Creates an empty, hidden temp file next to target, to stage content that replaces target.
+     * Being in the same directory keeps it on the same filesystem, so it can be renamed over target.
+     *
+     * The temp is recorded in the shared FuseReplaceJournal, pass it to releaseReplaceTemp
+     * once it has been renamed or deleted.
+     */
+    public static File createReplaceTemp(File target) throws IOException {
+        return FuseReplaceJournal.getDefault().createTemp(target);
+    }
+
+    public static void releaseReplaceTemp(File temp) {
+        FuseReplaceJournal.getDefault().release(temp);
+    }
+
+    public static boolean isReplaceTemp(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(REPLACE_TEMP_SUFFIX);
+    }
+
+    /**
+     * Deletes the replace temp files left below root by replaces that never completed,
+     * e.g. because the process died mid-write. Symbolic links are not followed and
+     * unreadable directories are skipped. This walks the whole tree, the plugin relies
+     * on FuseReplaceJournal instead.
+     *
+     * @param olderThan Only temp files last modified before this time, in milliseconds
+     *                  since the epoch, are deleted, so replaces started since are left alone
+     * @return The number of temp files deleted
+     */
+    public static int deleteReplaceTemps(File root, long olderThan) {
+        int[] deleted = new int[1];
+        try {
+            Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isReplaceTemp(file) && attrs.lastModifiedTime().toMillis() < olderThan) {
+                        try {
+                            Files.deleteIfExists(file);
+                            deleted[0]++;
+                        }
+                        catch (IOException ex) {
+                            // Leave it for the next cleanup.
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException ex) {
+            // Only thrown if root itself cannot be walked, in which case there is nothing to clean.
         }
 
-        return file.delete();
+        return deleted[0];
     }
 }
@@ -0,0 +1,136 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * Picks a chunk size per transfer from the content length, the operation
+ * and the throughput observed on recent transfers of the same operation.
+ *
+ * Once an operation has throughput samples, its chunk size is the amount of data
+ * that moves within the target chunk latency at that throughput, so slow storage
+ * or a congested bridge gets smaller, more responsive chunks. Transfers that fit
+ * within one chunk use a single chunk. Chunk sizes are always a power of two
+ * multiple of the filesystem block size and never exceed the maximum chunk size.
+ */
+public class FuseAdaptiveChunkSizePolicy implements IChunkSizePolicy {
+    public static final int DEFAULT_BLOCK_SIZE = 4096; // 4kb
+    public static final long DEFAULT_TARGET_CHUNK_LATENCY = 50; // ms
+    public static final int APPEND_CHUNK_SIZE = 65536; // 64kb
+
+    /**
+     * Transfers smaller than this are dominated by per call overhead
+     * and say little about throughput, so they are not sampled.
+     */
+    public static final long MIN_SAMPLE_SIZE = 65536; // 64kb
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int $blockSize;
+    private final int $maxChunkSize;
+    private final double[] $throughput;
+    private volatile long $targetChunkLatency;
+
+    public FuseAdaptiveChunkSizePolicy(int maxChunkSize) {
+        this(DEFAULT_BLOCK_SIZE, maxChunkSize);
+    }
+
+    /**
+     * @param blockSize The filesystem block size, must be a power of two
+     * @param maxChunkSize The largest chunk size that may be chosen
+     */
+    public FuseAdaptiveChunkSizePolicy(int blockSize, int maxChunkSize) {
+        $blockSize = blockSize;
+        $maxChunkSize = Math.max($alignDown(maxChunkSize), blockSize);
+        $throughput = new double[FuseFileOperation.values().length];
+        $targetChunkLatency = DEFAULT_TARGET_CHUNK_LATENCY;
+    }
+
+    public int getBlockSize() {
+        return $blockSize;
+    }
+
+    public int getMaxChunkSize() {
+        return $maxChunkSize;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a single chunk should take to transfer
+     * once throughput is known.
+     */
+    public void setTargetChunkLatency(long millis) {
+        $targetChunkLatency = millis;
+    }
+
+    public long getTargetChunkLatency() {
+        return $targetChunkLatency;
+    }
+
+    /**
+     * Gets the smoothed throughput of the operation in bytes per second,
+     * or 0 if it has not been sampled yet.
+     */
+    public double getThroughput(FuseFileOperation operation) {
+        synchronized ($throughput) {
+            return $throughput[operation.ordinal()];
+        }
+    }
+
+    @Override
+    public int getChunkSize(FuseFileOperation operation, long contentLength) {
+        double throughput = getThroughput(operation);
+
+        long chunkSize;
+        if (throughput > 0) {
+            chunkSize = (long) (throughput * $targetChunkLatency / 1000);
+        }
+        else if (operation == FuseFileOperation.APPEND) {
+            chunkSize = APPEND_CHUNK_SIZE;
+        }
+        else {
+            chunkSize = $maxChunkSize;
+        }
+
+        if (contentLength >= 0 && contentLength < chunkSize) {
+            // Round up, so the whole transfer still fits in one chunk.
+            chunkSize = contentLength <= $blockSize ? $blockSize : Long.highestOneBit(contentLength - 1) << 1;
+        }
+
+        if (chunkSize >= $maxChunkSize) {
+            return $maxChunkSize;
+        }
+
+        return Math.max($alignDown((int) chunkSize), $blockSize);
+    }
+
+    @Override
+    public void onTransferComplete(FuseFileOperation operation, int chunkSize, long bytes, long durationNanos) {
+        if (bytes < MIN_SAMPLE_SIZE || durationNanos <= 0) {
+            return;
+        }
+
+        double sample = bytes * 1e9 / durationNanos;
+        synchronized ($throughput) {
+            double current = $throughput[operation.ordinal()];
+            $throughput[operation.ordinal()] = current == 0 ? sample : current + SMOOTHING * (sample - current);
+        }
+    }
+
+    private int $alignDown(int size) {
+        return Integer.highestOneBit(size);
+    }
+}
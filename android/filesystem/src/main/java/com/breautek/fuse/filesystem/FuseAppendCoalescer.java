@@ -0,0 +1,402 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import com.breautek.fuse.FuseError;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers small appends per file and writes them as one batch, once the batch reaches
+ * the flush threshold, once the oldest buffered append is older than the flush delay,
+ * or when flushed explicitly. Batches of a file are written in the order they were buffered.
+ *
+ * Every buffered append gets a future that completes once its bytes are in the file,
+ * which is the acknowledgement callers wait on when they need the data written.
+ */
+public class FuseAppendCoalescer {
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64 * 1024; // 64kb
+    public static final long DEFAULT_FLUSH_DELAY = 50; // ms
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 4 * 1024 * 1024; // 4mb
+
+    /**
+     * Writes a batch to the end of a file.
+     */
+    public interface IBatchWriter {
+        void write(File file, byte[] data, int length) throws FuseError;
+    }
+
+    /**
+     * Streams an append too large to buffer to the end of a file.
+     */
+    public interface IStreamWriter {
+        /**
+         * @param contentLength The number of bytes to read from io, or -1 to read until it ends
+         * @return The number of bytes appended
+         */
+        long write(File file, InputStream io, long contentLength) throws FuseError;
+    }
+
+    private static class Batch {
+        private byte[] $data = new byte[1024];
+        private int $size;
+        private final List<CompletableFuture<Long>> $acks = new ArrayList<>();
+        private final List<Integer> $lengths = new ArrayList<>();
+    }
+
+    private class FileState {
+        private final String $key;
+        private final File $file;
+        private final Object $writeLock = new Object();
+        private Batch $current;
+
+        FileState(String key, File file) {
+            $key = key;
+            $file = file;
+        }
+    }
+
+    private final IBatchWriter $writer;
+    private final @Nullable IStreamWriter $streamWriter;
+    private final HashMap<String, FileState> $states;
+    private final ScheduledExecutorService $scheduler;
+    private volatile int $flushThreshold;
+    private volatile long $flushDelay;
+    private volatile long $maxBufferedBytes;
+    private long $bufferedBytes;
+
+    /**
+     * Large appends are written through the batch writer, one flush threshold sized piece at a time.
+     */
+    public FuseAppendCoalescer(IBatchWriter writer) {
+        this(writer, null);
+    }
+
+    /**
+     * @param streamWriter Writes appends of at least the flush threshold, or null to write them
+     *                     through the batch writer, one flush threshold sized piece at a time
+     */
+    public FuseAppendCoalescer(IBatchWriter writer, @Nullable IStreamWriter streamWriter) {
+        $writer = writer;
+        $streamWriter = streamWriter;
+        $states = new HashMap<>();
+        $flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+        $flushDelay = DEFAULT_FLUSH_DELAY;
+        $maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+        $scheduler = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "FuseFilesystem-AppendFlush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the batch size, in bytes, that triggers a write. Appends at least this large bypass the buffer.
+     */
+    public void setFlushThreshold(int flushThreshold) {
+        $flushThreshold = flushThreshold;
+    }
+
+    public int getFlushThreshold() {
+        return $flushThreshold;
+    }
+
+    /**
+     * Sets how long, in milliseconds, an append may wait in the buffer.
+     */
+    public void setFlushDelay(long flushDelay) {
+        $flushDelay = flushDelay;
+    }
+
+    public long getFlushDelay() {
+        return $flushDelay;
+    }
+
+    /**
+     * Sets how many bytes may be buffered across all files. Past it, appends flush their file before returning.
+     */
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        $maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public long getMaxBufferedBytes() {
+        return $maxBufferedBytes;
+    }
+
+    public long getBufferedBytes() {
+        synchronized ($states) {
+            return $bufferedBytes;
+        }
+    }
+
+    /**
+     * Buffers contentLength bytes read from io. Appends of at least the flush threshold,
+     * or of unknown length, are streamed to the file instead, once what is already
+     * buffered is written.
+     *
+     * @return A future completing with the number of bytes appended once they are written,
+     *         or exceptionally with the FuseError of the failed write
+     */
+    public CompletableFuture<Long> append(File file, InputStream io, long contentLength) throws FuseError {
+        if (contentLength < 0 || contentLength >= $flushThreshold) {
+            flush(file);
+            long bytesWritten = $streamWriter == null ? $writeInPieces(file, io, contentLength) : $streamWriter.write(file, io, contentLength);
+            return CompletableFuture.completedFuture(bytesWritten);
+        }
+
+        byte[] data = $readFully(io, contentLength);
+        String key = $getKey(file);
+        CompletableFuture<Long> ack = new CompletableFuture<>();
+        boolean isFirst = false;
+        boolean isFull;
+        boolean isOverBudget;
+
+        synchronized ($states) {
+            FileState state = $states.get(key);
+            if (state == null) {
+                state = new FileState(key, file);
+                $states.put(key, state);
+            }
+
+            Batch batch = state.$current;
+            if (batch == null) {
+                batch = new Batch();
+                state.$current = batch;
+                isFirst = true;
+            }
+
+            if (batch.$size + data.length > batch.$data.length) {
+                batch.$data = Arrays.copyOf(batch.$data, Math.max(batch.$data.length * 2, batch.$size + data.length));
+            }
+            System.arraycopy(data, 0, batch.$data, batch.$size, data.length);
+            batch.$size += data.length;
+            batch.$acks.add(ack);
+            batch.$lengths.add(data.length);
+            $bufferedBytes += data.length;
+
+            isFull = batch.$size >= $flushThreshold;
+            isOverBudget = $bufferedBytes > $maxBufferedBytes;
+        }
+
+        if (isFull || isOverBudget) {
+            flush(file);
+        }
+        else if (isFirst) {
+            $scheduler.schedule(() -> {
+                try {
+                    flush(file);
+                }
+                catch (FuseError ex) {
+                    // Already delivered to the acks of the batch.
+                }
+            }, $flushDelay, TimeUnit.MILLISECONDS);
+        }
+
+        return ack;
+    }
+
+    /**
+     * @return true if the file has appends that are not written yet
+     */
+    public boolean hasPending(File file) {
+        String key = $getKey(file);
+        synchronized ($states) {
+            return $states.containsKey(key);
+        }
+    }
+
+    /**
+     * Writes the buffered appends of the file and blocks until they are written,
+     * including a batch another thread is writing at the time.
+     */
+    public void flush(File file) throws FuseError {
+        FileState state;
+        synchronized ($states) {
+            state = $states.get($getKey(file));
+        }
+
+        if (state == null) {
+            return;
+        }
+
+        synchronized (state.$writeLock) {
+            Batch batch;
+            synchronized ($states) {
+                batch = state.$current;
+                state.$current = null;
+            }
+
+            try {
+                if (batch != null) {
+                    $write(state, batch);
+                }
+            }
+            finally {
+                synchronized ($states) {
+                    // Removed only once written, so a new state for the same file cannot overtake this one.
+                    if (state.$current == null && $states.get(state.$key) == state) {
+                        $states.remove(state.$key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered appends of the file, or of every file below it if it is a directory,
+     * before the tree is deleted or moved.
+     *
+     * @throws FuseError The first failure, after attempting every file
+     */
+    public void flushTree(File root) throws FuseError {
+        String key = $getKey(root);
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        List<FileState> states = new ArrayList<>();
+        synchronized ($states) {
+            for (FileState state : $states.values()) {
+                if (state.$key.equals(key) || state.$key.startsWith(prefix)) {
+                    states.add(state);
+                }
+            }
+        }
+
+        $flushStates(states);
+    }
+
+    /**
+     * Writes the buffered appends of every file.
+     *
+     * @throws FuseError The first failure, after attempting every file
+     */
+    public void flushAll() throws FuseError {
+        List<FileState> states;
+        synchronized ($states) {
+            states = new ArrayList<>($states.values());
+        }
+
+        $flushStates(states);
+    }
+
+    private void $flushStates(List<FileState> states) throws FuseError {
+        FuseError failure = null;
+        for (FileState state : states) {
+            try {
+                flush(state.$file);
+            }
+            catch (FuseError ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void $write(FileState state, Batch batch) throws FuseError {
+        try {
+            $writer.write(state.$file, batch.$data, batch.$size);
+        }
+        catch (FuseError ex) {
+            for (CompletableFuture<Long> ack : batch.$acks) {
+                ack.completeExceptionally(ex);
+            }
+            throw ex;
+        }
+        finally {
+            synchronized ($states) {
+                $bufferedBytes -= batch.$size;
+            }
+        }
+
+        for (int i = 0; i < batch.$acks.size(); i++) {
+            batch.$acks.get(i).complete((long) batch.$lengths.get(i));
+        }
+    }
+
+    private long $writeInPieces(File file, InputStream io, long contentLength) throws FuseError {
+        long remaining = contentLength < 0 ? Long.MAX_VALUE : contentLength;
+        byte[] piece = new byte[(int) Math.min(Math.max($flushThreshold, 1), remaining)];
+        long bytesWritten = 0;
+        try {
+            while (remaining > 0) {
+                int length = 0;
+                int toRead = (int) Math.min(piece.length, remaining);
+                while (length < toRead) {
+                    int bytesRead = io.read(piece, length, toRead - length);
+                    if (bytesRead == -1) {
+                        break;
+                    }
+                    length += bytesRead;
+                }
+
+                if (length > 0) {
+                    $writer.write(file, piece, length);
+                    bytesWritten += length;
+                    remaining -= length;
+                }
+
+                if (length < toRead) {
+                    break;
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new FuseError("FuseFilesystem", 0, "IO Exception while appending data", ex);
+        }
+
+        return bytesWritten;
+    }
+
+    private byte[] $readFully(InputStream io, long contentLength) throws FuseError {
+        byte[] data = new byte[(int) contentLength];
+        int offset = 0;
+        try {
+            while (offset < data.length) {
+                int bytesRead = io.read(data, offset, data.length - offset);
+                if (bytesRead == -1) {
+                    break;
+                }
+                offset += bytesRead;
+            }
+        }
+        catch (IOException ex) {
+            throw new FuseError("FuseFilesystem", 0, "IO Exception while appending data", ex);
+        }
+
+        return offset == data.length ? data : Arrays.copyOf(data, offset);
+    }
+
+    private String $getKey(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -0,0 +1,182 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import android.net.Uri;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs an IFSAPI on a FuseOrderedExecutor, ordering operations by normalized absolute path.
+ * Paths are not canonicalized, so the same file reached through a link gets its own order.
+ */
+public class FuseAsyncFSAPI implements IAsyncFSAPI {
+    private final IFSAPI $fsapi;
+    private final FuseOrderedExecutor $executor;
+
+    public FuseAsyncFSAPI(IFSAPI fsapi, FuseOrderedExecutor executor) {
+        $fsapi = fsapi;
+        $executor = executor;
+    }
+
+    public IFSAPI getFSAPI() {
+        return $fsapi;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(Uri uri, Callable<T> task) {
+        return $executor.submit($getKey(uri), task);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submitTransfer(Uri uri, Callable<T> task) {
+        return $executor.submitTransfer($getKey(uri), task);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submitShared(Uri uri, Callable<T> task) {
+        return $executor.submitShared($getKey(uri), task);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submitSharedTransfer(Uri uri, Callable<T> task) {
+        return $executor.submitSharedTransfer($getKey(uri), task);
+    }
+
+    @Override
+    public CompletableFuture<Long> append(Uri uri, InputStream io, long contentLength, int chunkSize) {
+        return submitTransfer(uri, () -> $fsapi.append(uri, io, contentLength, chunkSize));
+    }
+
+    @Override
+    public CompletableFuture<Long> appendBuffered(Uri uri, InputStream io, long contentLength) {
+        return submitTransfer(uri, () -> $fsapi.appendBuffered(uri, io, contentLength)).thenCompose((CompletableFuture<Long> written) -> written);
+    }
+
+    @Override
+    public CompletableFuture<Void> flush(Uri uri) {
+        return submit(uri, () -> {
+            $fsapi.flush(uri);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<FuseDurability> sync(Uri uri, FuseDurability durability) {
+        return submit(uri, () -> $fsapi.sync(uri, durability)).thenCompose((CompletableFuture<FuseDurability> achieved) -> achieved);
+    }
+
+    @Override
+    public CompletableFuture<FuseDeleteResult> delete(Uri uri, boolean recursive) {
+        return submit(uri, () -> $fsapi.delete(uri, recursive));
+    }
+
+    @Override
+    public CompletableFuture<FuseFileType> getType(Uri uri) {
+        return submitShared(uri, () -> $fsapi.getType(uri));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(Uri uri) {
+        return submitShared(uri, () -> $fsapi.exists(uri));
+    }
+
+    @Override
+    public CompletableFuture<Long> getSize(Uri uri) {
+        return submitShared(uri, () -> $fsapi.getSize(uri));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> mkdir(Uri uri, boolean recursive) {
+        return submit(uri, () -> $fsapi.mkdir(uri, recursive));
+    }
+
+    @Override
+    public CompletableFuture<FuseFileStat> stat(Uri uri) {
+        return submitShared(uri, () -> $fsapi.stat(uri));
+    }
+
+    @Override
+    public CompletableFuture<String> list(Uri uri, String filter, String cursor, long offset, int limit, boolean withStats, IFSAPI.IListCallback callback) {
+        return submitShared(uri, () -> $fsapi.list(uri, filter, cursor, offset, limit, withStats, callback));
+    }
+
+    /**
+     * Ordered with the other operations on the source. The destination is only protected by the FSAPI's locks.
+     */
+    @Override
+    public CompletableFuture<FuseCopyResult> copy(Uri source, Uri destination, FuseOverwritePolicy overwrite) {
+        return submit(source, () -> $fsapi.copy(source, destination, overwrite));
+    }
+
+    /**
+     * Ordered with the other operations on the source. The destination is only protected by the FSAPI's locks.
+     */
+    @Override
+    public CompletableFuture<FuseCopyResult> move(Uri source, Uri destination, FuseOverwritePolicy overwrite) {
+        return submit(source, () -> $fsapi.move(source, destination, overwrite));
+    }
+
+    @Override
+    public CompletableFuture<Long> read(Uri uri, long length, long offset, int chunkSize, FuseReadMode mode, IFSAPI.IReadCallback callback) {
+        return submitSharedTransfer(uri, () -> $fsapi.read(uri, length, offset, chunkSize, mode, callback));
+    }
+
+    @Override
+    public CompletableFuture<Long> readv(Uri uri, List<FuseFileRange> ranges, boolean coalesce, int chunkSize, IFSAPI.IReadvCallback callback) {
+        return submitSharedTransfer(uri, () -> $fsapi.readv(uri, ranges, coalesce, chunkSize, callback));
+    }
+
+    @Override
+    public CompletableFuture<Long> write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength) {
+        return submitTransfer(uri, () -> $fsapi.write(uri, offset, chunkSize, io, contentLength));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> allocate(Uri uri, long length) {
+        return submit(uri, () -> $fsapi.allocate(uri, length));
+    }
+
+    @Override
+    public CompletableFuture<long[]> writev(Uri uri, List<FuseFileRange> segments, InputStream io, long contentLength, int chunkSize) {
+        return submitTransfer(uri, () -> $fsapi.writev(uri, segments, io, contentLength, chunkSize));
+    }
+
+    @Override
+    public CompletableFuture<Long> truncate(Uri uri, long contentLength, InputStream io, int chunkSize) {
+        return submitTransfer(uri, () -> $fsapi.truncate(uri, contentLength, io, chunkSize));
+    }
+
+    @Override
+    public CompletableFuture<Long> replace(Uri uri, long contentLength, InputStream io, int chunkSize, boolean sync) {
+        return submitTransfer(uri, () -> $fsapi.replace(uri, contentLength, io, chunkSize, sync));
+    }
+
+    private String $getKey(Uri uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return "";
+        }
+
+        return new File(path).getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -0,0 +1,157 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs many independent operations with a bounded number in flight, collecting
+ * a result for each. A failed operation is recorded as its result, so it never
+ * fails the batch.
+ *
+ * Operations start in list order as earlier ones complete, keeping a large batch
+ * from flooding the executor queue ahead of other requests.
+ */
+public class FuseBatch<T> {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    public interface IOperation<T> {
+        CompletableFuture<T> start() throws Exception;
+    }
+
+    public static class Result<T> {
+        private final @Nullable T $value;
+        private final @Nullable Throwable $error;
+
+        Result(@Nullable T value, @Nullable Throwable error) {
+            $value = value;
+            $error = error;
+        }
+
+        public @Nullable T getValue() {
+            return $value;
+        }
+
+        /**
+         * The error the operation failed with, unwrapped from any CompletionException.
+         */
+        public @Nullable Throwable getError() {
+            return $error;
+        }
+
+        public boolean isError() {
+            return $error != null;
+        }
+    }
+
+    private final List<IOperation<T>> $operations;
+    private final AtomicReferenceArray<Result<T>> $results;
+    private final AtomicInteger $next;
+    private final AtomicInteger $remaining;
+    private final CompletableFuture<List<Result<T>>> $future;
+
+    private FuseBatch(List<IOperation<T>> operations) {
+        $operations = operations;
+        $results = new AtomicReferenceArray<>(operations.size());
+        $next = new AtomicInteger();
+        $remaining = new AtomicInteger(operations.size());
+        $future = new CompletableFuture<>();
+    }
+
+    /**
+     * @param maxInFlight The maximum number of operations running at once
+     * @return A future completing with one result per operation, in list order
+     */
+    public static <T> CompletableFuture<List<Result<T>>> run(List<IOperation<T>> operations, int maxInFlight) {
+        FuseBatch<T> batch = new FuseBatch<>(operations);
+        if (operations.isEmpty()) {
+            batch.$future.complete(new ArrayList<>());
+            return batch.$future;
+        }
+
+        int lanes = Math.max(1, Math.min(maxInFlight, operations.size()));
+        for (int i = 0; i < lanes; i++) {
+            batch.$advance();
+        }
+
+        return batch.$future;
+    }
+
+    /**
+     * Starts operations until one is still running. Operations that complete
+     * immediately are looped over rather than recursed into.
+     */
+    private void $advance() {
+        while (true) {
+            int index = $next.getAndIncrement();
+            if (index >= $operations.size()) {
+                return;
+            }
+
+            CompletableFuture<T> operation;
+            try {
+                operation = $operations.get(index).start();
+            }
+            catch (Exception ex) {
+                operation = new CompletableFuture<>();
+                operation.completeExceptionally(ex);
+            }
+
+            if (!operation.isDone()) {
+                operation.whenComplete((T value, Throwable error) -> {
+                    $record(index, value, error);
+                    $advance();
+                });
+                return;
+            }
+
+            T value = null;
+            Throwable error = null;
+            try {
+                value = operation.join();
+            }
+            catch (RuntimeException ex) {
+                // A CompletionException wrapping the error, or a CancellationException
+                error = ex;
+            }
+            $record(index, value, error);
+        }
+    }
+
+    private void $record(int index, @Nullable T value, @Nullable Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        $results.set(index, new Result<>(value, error));
+        if ($remaining.decrementAndGet() == 0) {
+            List<Result<T>> results = new ArrayList<>($results.length());
+            for (int i = 0; i < $results.length(); i++) {
+                results.add($results.get(i));
+            }
+            $future.complete(results);
+        }
+    }
+}
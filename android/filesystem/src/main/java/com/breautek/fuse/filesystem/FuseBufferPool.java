@@ -0,0 +1,210 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of transfer buffers shared by every FSAPI transfer loop.
+ *
+ * Buffers are handed out in power of two size classes, from MIN_BUFFER_SIZE
+ * up to MAX_BUFFER_SIZE, so a buffer may be larger than requested. Requests
+ * beyond MAX_BUFFER_SIZE are allocated exactly and are never retained.
+ * Released buffers are kept for reuse until the pool holds maxRetainedBytes.
+ *
+ * Every acquired buffer must be released exactly once, and must not be used
+ * after it has been released.
+ */
+public class FuseBufferPool {
+    public static final int MIN_BUFFER_SIZE = 4096; // 4kb
+    public static final int MAX_BUFFER_SIZE = 16777216; // 16mb
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 33554432; // 32mb
+
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int SIZE_CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SIZE_SHIFT + 1;
+
+    private final ArrayDeque<byte[]>[] $classes;
+    private final AtomicLong $retainedBytes;
+    private final AtomicInteger $outstanding;
+    private final Map<byte[], Throwable> $leases;
+    private volatile long $maxRetainedBytes;
+    private volatile boolean $leakDetection;
+
+    @SuppressWarnings("unchecked")
+    public FuseBufferPool() {
+        $classes = new ArrayDeque[SIZE_CLASS_COUNT];
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            $classes[i] = new ArrayDeque<>();
+        }
+
+        $retainedBytes = new AtomicLong();
+        $outstanding = new AtomicInteger();
+        $leases = new IdentityHashMap<>();
+        $maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+    }
+
+    /**
+     * Sets the upper bound of bytes kept by the pool for reuse.
+     * Buffers released beyond this bound are left to the garbage collector.
+     */
+    public void setMaxRetainedBytes(long maxRetainedBytes) {
+        $maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public long getMaxRetainedBytes() {
+        return $maxRetainedBytes;
+    }
+
+    public long getRetainedBytes() {
+        return $retainedBytes.get();
+    }
+
+    /**
+     * Gets the number of buffers that have been acquired but not yet released.
+     */
+    public int getOutstandingCount() {
+        return $outstanding.get();
+    }
+
+    /**
+     * When enabled, the pool records where every outstanding buffer was
+     * acquired, which can be inspected with getLeaks(), and rejects buffers
+     * that are released twice or did not come from this pool.
+     * This has a cost per acquisition and is intended for debugging.
+     */
+    public void setLeakDetection(boolean leakDetection) {
+        synchronized ($leases) {
+            $leakDetection = leakDetection;
+            $leases.clear();
+        }
+    }
+
+    public boolean isLeakDetection() {
+        return $leakDetection;
+    }
+
+    /**
+     * Gets the acquisition sites of buffers that are still outstanding.
+     * Always empty unless leak detection is enabled.
+     */
+    public List<Throwable> getLeaks() {
+        synchronized ($leases) {
+            return new ArrayList<>($leases.values());
+        }
+    }
+
+    /**
+     * Gets a buffer that is at least minSize bytes long.
+     */
+    public byte[] acquire(int minSize) {
+        byte[] buffer = null;
+        int sizeClass = $getSizeClass(minSize);
+        if (sizeClass != -1) {
+            ArrayDeque<byte[]> stack = $classes[sizeClass];
+            synchronized (stack) {
+                buffer = stack.pollFirst();
+            }
+
+            if (buffer == null) {
+                buffer = new byte[MIN_BUFFER_SIZE << sizeClass];
+            }
+            else {
+                $retainedBytes.addAndGet(-buffer.length);
+            }
+        }
+        else {
+            buffer = new byte[minSize];
+        }
+
+        $outstanding.incrementAndGet();
+
+        if ($leakDetection) {
+            synchronized ($leases) {
+                $leases.put(buffer, new Throwable("Buffer of " + buffer.length + " bytes acquired here"));
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Passing null is a no-op.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        if ($leakDetection) {
+            synchronized ($leases) {
+                if ($leases.remove(buffer) == null) {
+                    throw new IllegalStateException("Buffer was released twice or was not acquired from this pool");
+                }
+            }
+        }
+
+        $outstanding.decrementAndGet();
+
+        int sizeClass = $getSizeClass(buffer.length);
+        if (sizeClass == -1 || buffer.length != MIN_BUFFER_SIZE << sizeClass) {
+            return;
+        }
+
+        if ($retainedBytes.addAndGet(buffer.length) > $maxRetainedBytes) {
+            $retainedBytes.addAndGet(-buffer.length);
+            return;
+        }
+
+        ArrayDeque<byte[]> stack = $classes[sizeClass];
+        synchronized (stack) {
+            stack.offerFirst(buffer);
+        }
+    }
+
+    /**
+     * Drops every retained buffer.
+     */
+    public void trim() {
+        for (ArrayDeque<byte[]> stack : $classes) {
+            synchronized (stack) {
+                for (byte[] buffer : stack) {
+                    $retainedBytes.addAndGet(-buffer.length);
+                }
+                stack.clear();
+            }
+        }
+    }
+
+    private int $getSizeClass(int size) {
+        if (size > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,249 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records trace events into a fixed size ring buffer, keeping the most recent ones, and
+ * writes them out in the Chrome trace event format, as loaded by Perfetto or chrome://tracing.
+ *
+ * Operations are written as begin and end events on the thread that ran them, so
+ * overlapping operations show side by side, and read chunks as complete events within them.
+ *
+ * Recording stores into preallocated arrays and does not allocate, except the first time
+ * a thread records, to remember its name.
+ */
+public class FuseChromeTraceRecorder implements IFuseTraceListener {
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private static final byte PHASE_BEGIN = 'B';
+    private static final byte PHASE_END = 'E';
+    private static final byte PHASE_COMPLETE = 'X';
+
+    private final int $capacity;
+    private final long $epochNanos;
+    private final AtomicLong $next;
+
+    // Each slot holds the number of the event in it plus one, or 0 while it is being written.
+    private final AtomicLongArray $sequences;
+    private final byte[] $phases;
+    private final FuseFileOperation[] $operations;
+    private final String[] $paths;
+    private final long[] $threads;
+    private final long[] $timestamps;
+    private final long[] $durations;
+    private final long[] $offsets;
+    private final long[] $bytes;
+    private final boolean[] $failed;
+
+    private final ThreadLocal<Boolean> $threadSeen;
+    private final Map<Long, String> $threadNames;
+
+    public FuseChromeTraceRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of events kept. Older events are overwritten.
+     */
+    public FuseChromeTraceRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        $capacity = capacity;
+        $epochNanos = System.nanoTime();
+        $next = new AtomicLong();
+        $sequences = new AtomicLongArray(capacity);
+        $phases = new byte[capacity];
+        $operations = new FuseFileOperation[capacity];
+        $paths = new String[capacity];
+        $threads = new long[capacity];
+        $timestamps = new long[capacity];
+        $durations = new long[capacity];
+        $offsets = new long[capacity];
+        $bytes = new long[capacity];
+        $failed = new boolean[capacity];
+        $threadSeen = new ThreadLocal<>();
+        $threadNames = new ConcurrentHashMap<>();
+    }
+
+    public int getCapacity() {
+        return $capacity;
+    }
+
+    /**
+     * The number of events recorded so far, including those since overwritten.
+     */
+    public long getRecordedCount() {
+        return $next.get();
+    }
+
+    @Override
+    public void onOperationStart(FuseFileOperation operation, String path, long offset, long length, long startNanos) {
+        $record(PHASE_BEGIN, operation, path, startNanos, 0, offset, length, false);
+    }
+
+    @Override
+    public void onOperationEnd(FuseFileOperation operation, String path, long offset, long bytes, long startNanos, long durationNanos, boolean failed) {
+        $record(PHASE_END, operation, path, startNanos + durationNanos, 0, offset, bytes, failed);
+    }
+
+    @Override
+    public void onChunk(FuseFileOperation operation, String path, long offset, int bytes, long startNanos, long durationNanos) {
+        $record(PHASE_COMPLETE, operation, path, startNanos, durationNanos, offset, bytes, false);
+    }
+
+    private void $record(byte phase, FuseFileOperation operation, String path, long timestamp, long duration, long offset, long bytes, boolean failed) {
+        Thread thread = Thread.currentThread();
+        if ($threadSeen.get() == null) {
+            $threadSeen.set(Boolean.TRUE);
+            $threadNames.put(thread.getId(), thread.getName());
+        }
+
+        long sequence = $next.getAndIncrement();
+        int slot = (int) (sequence % $capacity);
+
+        // A full fence, unlike a plain volatile store, so none of the writes below
+        // can become visible before the slot is marked as being written.
+        $sequences.getAndSet(slot, 0);
+        $phases[slot] = phase;
+        $operations[slot] = operation;
+        $paths[slot] = path;
+        $threads[slot] = thread.getId();
+        $timestamps[slot] = timestamp;
+        $durations[slot] = duration;
+        $offsets[slot] = offset;
+        $bytes[slot] = bytes;
+        $failed[slot] = failed;
+        $sequences.set(slot, sequence + 1);
+    }
+
+    /**
+     * Writes the recorded events, oldest first, as a Chrome trace JSON object.
+     * Recording can continue meanwhile. Events overwritten or being recorded
+     * while they are written out are left out.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        boolean first = true;
+        for (Map.Entry<Long, String> thread : $threadNames.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(thread.getKey()));
+            writer.write(",\"args\":{\"name\":");
+            writer.write(JSONObject.quote(thread.getValue()));
+            writer.write("}}");
+        }
+
+        long end = $next.get();
+        for (long sequence = Math.max(0, end - $capacity); sequence < end; sequence++) {
+            int slot = (int) (sequence % $capacity);
+            if ($sequences.get(slot) != sequence + 1) {
+                continue;
+            }
+
+            byte phase = $phases[slot];
+            FuseFileOperation operation = $operations[slot];
+            String path = $paths[slot];
+            long thread = $threads[slot];
+            long timestamp = $timestamps[slot];
+            long duration = $durations[slot];
+            long offset = $offsets[slot];
+            long bytes = $bytes[slot];
+            boolean failed = $failed[slot];
+
+            // Validated with a CAS rather than a volatile load, which is a full fence, so
+            // the reads above cannot be reordered past the check.
+            if (!$sequences.compareAndSet(slot, sequence + 1, sequence + 1)) {
+                continue;
+            }
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            String name = operation.name().toLowerCase(Locale.ROOT);
+            writer.write("{\"name\":\"");
+            writer.write(phase == PHASE_COMPLETE ? name + " chunk" : name);
+            writer.write("\",\"cat\":\"FuseFilesystem\",\"ph\":\"");
+            writer.write((char) phase);
+            writer.write("\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(thread));
+            writer.write(",\"ts\":");
+            writer.write($toMicros(timestamp - $epochNanos));
+            if (phase == PHASE_COMPLETE) {
+                writer.write(",\"dur\":");
+                writer.write($toMicros(duration));
+            }
+
+            writer.write(",\"args\":{\"path\":");
+            writer.write(path == null ? "null" : JSONObject.quote(path));
+            writer.write(",\"offset\":");
+            writer.write(Long.toString(offset));
+            if (phase == PHASE_BEGIN) {
+                writer.write(",\"length\":");
+                writer.write(Long.toString(bytes));
+            }
+            else {
+                writer.write(",\"bytes\":");
+                writer.write(Long.toString(bytes));
+            }
+            if (phase == PHASE_END) {
+                writer.write(",\"failed\":");
+                writer.write(failed ? "true" : "false");
+            }
+            writer.write("}}");
+        }
+
+        writer.write("]}");
+    }
+
+    /**
+     * Writes the recorded events to the file, replacing it.
+     */
+    public void writeTo(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writeTo(writer);
+        }
+    }
+
+    private static String $toMicros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+}
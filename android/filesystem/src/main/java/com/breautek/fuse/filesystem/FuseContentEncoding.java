@@ -0,0 +1,188 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The encodings content can be transferred with. Encoding happens on the fly,
+ * so content is never held in full to be compressed or decompressed.
+ */
+public enum FuseContentEncoding {
+    /**
+     * The content as is.
+     */
+    IDENTITY("identity"),
+
+    /**
+     * The zlib format, as produced by CompressionStream("deflate").
+     */
+    DEFLATE("deflate"),
+
+    GZIP("gzip");
+
+    private static final int STREAM_BUFFER_SIZE = 65536; // 64kb
+
+    private final String $name;
+
+    FuseContentEncoding(String name) {
+        $name = name;
+    }
+
+    /**
+     * The name used in request params.
+     */
+    public String getName() {
+        return $name;
+    }
+
+    /**
+     * Wraps out so content written to the returned stream is encoded into out.
+     * Closing the returned stream finishes the encoding and closes out.
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        switch (this) {
+            case DEFLATE: {
+                // Streams only end the deflater they create themselves, which only comes with a 512 byte buffer.
+                Deflater deflater = new Deflater();
+                return new DeflaterOutputStream(out, deflater, STREAM_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        }
+                        finally {
+                            deflater.end();
+                        }
+                    }
+                };
+            }
+            case GZIP:
+                return new GZIPOutputStream(out, STREAM_BUFFER_SIZE);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Wraps in so reading the returned stream decodes the next encodedLength bytes of in.
+     * Nothing past them is read, so in may be a stream shared with other content.
+     */
+    public InputStream decode(InputStream in, long encodedLength) throws IOException {
+        InputStream bounded = new BoundedInputStream(in, encodedLength);
+        switch (this) {
+            case DEFLATE: {
+                Inflater inflater = new Inflater();
+                return new InflaterInputStream(bounded, inflater, STREAM_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        }
+                        finally {
+                            inflater.end();
+                        }
+                    }
+                };
+            }
+            case GZIP:
+                return new GZIPInputStream(bounded, STREAM_BUFFER_SIZE);
+            default:
+                return bounded;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name is not a known encoding
+     */
+    public static FuseContentEncoding fromName(String name) {
+        for (FuseContentEncoding encoding : values()) {
+            if (encoding.$name.equals(name)) {
+                return encoding;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown content encoding \"" + name + "\"");
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        private long $remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            $remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ($remaining <= 0) {
+                return -1;
+            }
+
+            int value = super.read();
+            if (value != -1) {
+                $remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if ($remaining <= 0) {
+                return -1;
+            }
+
+            int bytesRead = super.read(buffer, offset, (int) Math.min(length, $remaining));
+            if (bytesRead != -1) {
+                $remaining -= bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, $remaining));
+            $remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), $remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream belongs to the caller.
+        }
+    }
+}
@@ -0,0 +1,54 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * The outcome of a copy or move.
+ */
+public class FuseCopyResult {
+    private final long $bytesCopied;
+    private final boolean $renamed;
+    private final boolean $skipped;
+
+    FuseCopyResult(long bytesCopied, boolean renamed, boolean skipped) {
+        $bytesCopied = bytesCopied;
+        $renamed = renamed;
+        $skipped = skipped;
+    }
+
+    /**
+     * @return The number of bytes written to the destination, 0 if the file was renamed or skipped
+     */
+    public long getBytesCopied() {
+        return $bytesCopied;
+    }
+
+    /**
+     * @return true if a move was done by renaming, without copying any content
+     */
+    public boolean wasRenamed() {
+        return $renamed;
+    }
+
+    /**
+     * @return true if nothing was done because the destination exists and the policy is SKIP
+     */
+    public boolean wasSkipped() {
+        return $skipped;
+    }
+}
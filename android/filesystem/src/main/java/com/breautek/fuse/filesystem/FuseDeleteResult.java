@@ -0,0 +1,95 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a delete, which may have partially succeeded.
+ */
+public class FuseDeleteResult {
+    /**
+     * A path that could not be deleted.
+     */
+    public static class Failure {
+        private final Path $path;
+        private final IOException $error;
+
+        Failure(Path path, IOException error) {
+            $path = path;
+            $error = error;
+        }
+
+        public Path getPath() {
+            return $path;
+        }
+
+        public IOException getError() {
+            return $error;
+        }
+    }
+
+    private final boolean $didDelete;
+    private final long $fileCount;
+    private final long $directoryCount;
+    private final long $failureCount;
+    private final List<Failure> $failures;
+
+    FuseDeleteResult(boolean didDelete, long fileCount, long directoryCount, long failureCount, List<Failure> failures) {
+        $didDelete = didDelete;
+        $fileCount = fileCount;
+        $directoryCount = directoryCount;
+        $failureCount = failureCount;
+        $failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return true if the target itself was removed
+     */
+    public boolean didDelete() {
+        return $didDelete;
+    }
+
+    /**
+     * @return The number of files, symbolic links and other non directory entries removed
+     */
+    public long getFileCount() {
+        return $fileCount;
+    }
+
+    public long getDirectoryCount() {
+        return $directoryCount;
+    }
+
+    /**
+     * @return The number of paths that could not be deleted, which may exceed getFailures().size()
+     */
+    public long getFailureCount() {
+        return $failureCount;
+    }
+
+    /**
+     * @return The first failures encountered, up to FuseTreeDeleter.MAX_REPORTED_FAILURES
+     */
+    public List<Failure> getFailures() {
+        return $failures;
+    }
+}
@@ -0,0 +1,65 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * How far a write is persisted before it is acknowledged.
+ */
+public enum FuseDurability {
+    /**
+     * Acknowledged once handed to the OS. A crash may lose it.
+     */
+    NONE("none"),
+
+    /**
+     * The file is synced to storage after every operation, before it is acknowledged.
+     */
+    OPERATION("operation"),
+
+    /**
+     * Syncs are batched by a FuseGroupCommitter. Concurrent writers share a sync,
+     * and each is acknowledged once the sync covering its write completes.
+     */
+    GROUP_COMMIT("group");
+
+    private final String $name;
+
+    FuseDurability(String name) {
+        $name = name;
+    }
+
+    /**
+     * The name used in request params and responses.
+     */
+    public String getName() {
+        return $name;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name is not a known durability
+     */
+    public static FuseDurability fromName(String name) {
+        for (FuseDurability durability : values()) {
+            if (durability.$name.equals(name)) {
+                return durability;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown durability \"" + name + "\"");
+    }
+}
@@ -0,0 +1,267 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the chunks of a read before handing them to another callback.
+ *
+ * The encoded length is only known once the whole range is encoded, while callbacks
+ * are told the length upfront, so the encoded content is spooled and delivered once
+ * the read closes. The spool is kept in memory up to SPOOL_MEMORY_LIMIT and moves to
+ * a temp file past that, so the content is never held in full.
+ *
+ * Reads skip the callback entirely for empty ranges, so call finish once the read
+ * returns, and close to release the spool should the read fail. Spool files of a process
+ * that died mid-read are left behind, see deleteLeftoverSpools.
+ */
+public class FuseEncodingReadCallback implements IFSAPI.IReadCallback, Closeable {
+    public static final int SPOOL_MEMORY_LIMIT = 1048576; // 1mb
+    public static final String SPOOL_PREFIX = "fuse-encoded";
+    public static final String SPOOL_SUFFIX = ".tmp";
+
+    private static volatile @Nullable File $spoolDirectory;
+
+    private final FuseContentEncoding $encoding;
+    private final IFSAPI.IReadCallback $delegate;
+    private final int $chunkSize;
+    private final Spool $spool;
+    private OutputStream $encoder;
+    private byte[] $directCopy;
+    private boolean $finished;
+
+    /**
+     * @param chunkSize The size of the chunks the encoded content is delivered in
+     */
+    public FuseEncodingReadCallback(FuseContentEncoding encoding, IFSAPI.IReadCallback delegate, int chunkSize) {
+        $encoding = encoding;
+        $delegate = delegate;
+        $chunkSize = chunkSize;
+        $spool = new Spool();
+    }
+
+    /**
+     * Sets the directory spool files are created in, or null for the default temp directory.
+     */
+    public static void setSpoolDirectory(@Nullable File directory) {
+        $spoolDirectory = directory;
+    }
+
+    public static @Nullable File getSpoolDirectory() {
+        return $spoolDirectory;
+    }
+
+    /**
+     * Deletes the spool files left in directory by reads that never completed.
+     * Only the directory itself is listed, spools are never created below it.
+     *
+     * @param olderThan Only spool files last modified before this time, in milliseconds
+     *                  since the epoch, are deleted, so reads started since are left alone
+     * @return The number of spool files deleted
+     */
+    public static int deleteLeftoverSpools(File directory, long olderThan) {
+        File[] spools = directory.listFiles((File dir, String name) -> name.startsWith(SPOOL_PREFIX) && name.endsWith(SPOOL_SUFFIX));
+        if (spools == null) {
+            return 0;
+        }
+
+        int deleted = 0;
+        for (File spool : spools) {
+            if (spool.isFile() && spool.lastModified() < olderThan && spool.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private OutputStream $getEncoder() throws IOException {
+        if ($encoder == null) {
+            $encoder = $encoding.encode($spool);
+        }
+        return $encoder;
+    }
+
+    @Override
+    public void onReadStart(long contentLength) {
+        try {
+            $getEncoder();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void onReadChunk(int bufferSize, byte[] buffer) {
+        $encode(buffer, 0, bufferSize);
+    }
+
+    @Override
+    public void onReadChunk(ByteBuffer chunk) {
+        int size = chunk.remaining();
+        if (chunk.hasArray()) {
+            $encode(chunk.array(), chunk.arrayOffset() + chunk.position(), size);
+            return;
+        }
+
+        if ($directCopy == null || $directCopy.length < size) {
+            $directCopy = new byte[size];
+        }
+        chunk.get($directCopy, 0, size);
+        $encode($directCopy, 0, size);
+    }
+
+    private void $encode(byte[] buffer, int offset, int length) {
+        try {
+            $getEncoder().write(buffer, offset, length);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void onReadClose() {
+        try {
+            finish();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Finishes the encoding and delivers the encoded content to the delegate, including
+     * its start and close. Does nothing if the content was already delivered.
+     */
+    public void finish() throws IOException {
+        if ($finished) {
+            return;
+        }
+        $finished = true;
+
+        $getEncoder().close();
+        $delegate.onReadStart($spool.getLength());
+        $spool.deliver($delegate, $chunkSize);
+        $delegate.onReadClose();
+        $spool.release();
+    }
+
+    /**
+     * Releases the spool. The delegate is not closed if the content was not delivered.
+     */
+    @Override
+    public void close() {
+        $spool.release();
+    }
+
+    private static class Spool extends OutputStream {
+        private ByteArrayOutputStream $memory;
+        private File $file;
+        private OutputStream $fileStream;
+        private long $length;
+
+        Spool() {
+            $memory = new ByteArrayOutputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if ($fileStream == null && $length + length > SPOOL_MEMORY_LIMIT) {
+                $file = File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, $spoolDirectory);
+                $fileStream = new FileOutputStream($file);
+                $memory.writeTo($fileStream);
+                $memory = null;
+            }
+
+            if ($fileStream != null) {
+                $fileStream.write(buffer, offset, length);
+            }
+            else {
+                $memory.write(buffer, offset, length);
+            }
+            $length += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if ($fileStream != null) {
+                $fileStream.close();
+            }
+        }
+
+        long getLength() {
+            return $length;
+        }
+
+        void deliver(IFSAPI.IReadCallback callback, int chunkSize) throws IOException {
+            if ($length == 0) {
+                return;
+            }
+
+            if ($file == null) {
+                byte[] content = $memory.toByteArray();
+                for (int offset = 0; offset < content.length; offset += chunkSize) {
+                    callback.onReadChunk(ByteBuffer.wrap(content, offset, Math.min(chunkSize, content.length - offset)).slice());
+                }
+                return;
+            }
+
+            byte[] buffer = new byte[(int) Math.min(chunkSize, $length)];
+            try (FileInputStream in = new FileInputStream($file)) {
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    callback.onReadChunk(ByteBuffer.wrap(buffer, 0, bytesRead));
+                }
+            }
+        }
+
+        void release() {
+            $memory = null;
+            if ($fileStream != null) {
+                try {
+                    $fileStream.close();
+                }
+                catch (IOException ex) {
+                    // Only the temp file is left, which is deleted regardless.
+                }
+            }
+
+            if ($file != null) {
+                boolean _unused = $file.delete();
+                $file = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and a latency histogram for one endpoint. Recording only touches LongAdders
+ * and the histogram, so concurrent requests do not contend on a lock.
+ */
+public class FuseEndpointMetrics {
+    /**
+     * A copy of the metrics at one point in time.
+     */
+    public static class Snapshot {
+        public final String endpoint;
+        public final long operations;
+        public final long errors;
+        public final long bytesIn;
+        public final long bytesOut;
+        public final long totalNanos;
+
+        /**
+         * The counts of a FuseLog2Histogram of operation durations, in nanoseconds.
+         */
+        public final long[] latency;
+
+        Snapshot(String endpoint, long operations, long errors, long bytesIn, long bytesOut, long totalNanos, long[] latency) {
+            this.endpoint = endpoint;
+            this.operations = operations;
+            this.errors = errors;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.totalNanos = totalNanos;
+            this.latency = latency;
+        }
+
+        public long getLatencyPercentile(double percentile) {
+            return FuseLog2Histogram.getPercentile(latency, percentile);
+        }
+    }
+
+    private final String $endpoint;
+    private final LongAdder $operations;
+    private final LongAdder $errors;
+    private final LongAdder $bytesIn;
+    private final LongAdder $bytesOut;
+    private final LongAdder $totalNanos;
+    private final FuseLog2Histogram $latency;
+
+    public FuseEndpointMetrics(String endpoint) {
+        $endpoint = endpoint;
+        $operations = new LongAdder();
+        $errors = new LongAdder();
+        $bytesIn = new LongAdder();
+        $bytesOut = new LongAdder();
+        $totalNanos = new LongAdder();
+        $latency = new FuseLog2Histogram();
+    }
+
+    public String getEndpoint() {
+        return $endpoint;
+    }
+
+    /**
+     * Records a completed operation.
+     *
+     * @param durationNanos The time from the operation being submitted to it completing
+     * @param failed If true, the operation is counted as an error as well
+     */
+    public void recordOperation(long durationNanos, boolean failed) {
+        $operations.increment();
+        if (failed) {
+            $errors.increment();
+        }
+        $totalNanos.add(durationNanos);
+        $latency.record(durationNanos);
+    }
+
+    public void addBytesIn(long bytes) {
+        if (bytes > 0) {
+            $bytesIn.add(bytes);
+        }
+    }
+
+    public void addBytesOut(long bytes) {
+        if (bytes > 0) {
+            $bytesOut.add(bytes);
+        }
+    }
+
+    /**
+     * Copies the metrics. The copy is not atomic across counters, so an operation
+     * recorded while copying may be counted by some of them only.
+     *
+     * @param reset If true, the copied values are removed, so the next snapshot
+     *              only covers what is recorded after this one
+     */
+    public Snapshot snapshot(boolean reset) {
+        return new Snapshot(
+            $endpoint,
+            $sum($operations, reset),
+            $sum($errors, reset),
+            $sum($bytesIn, reset),
+            $sum($bytesOut, reset),
+            $sum($totalNanos, reset),
+            $latency.snapshot(reset)
+        );
+    }
+
+    private static long $sum(LongAdder adder, boolean reset) {
+        return reset ? adder.sumThenReset() : adder.sum();
+    }
+}
@@ -2,11 +2,56 @@ package com.breautek.fuse.filesystem;
 
 import android.net.Uri;
 
+import androidx.annotation.Nullable;
+
 public class FuseFSAPIFactory {
+    private final FuseBufferPool $bufferPool;
     private final IFSAPI $fsapi;
+    private final FuseOrderedExecutor $executor;
+    private final IAsyncFSAPI $asyncFsapi;
+    private volatile @Nullable FuseAsyncFSAPI $tracingAsyncFsapi;
 
     public FuseFSAPIFactory() {
-        $fsapi = new FSAPI();
+        $bufferPool = new FuseBufferPool();
+        $fsapi = new FSAPI($bufferPool);
+        $executor = new FuseOrderedExecutor();
+        $asyncFsapi = new FuseAsyncFSAPI($fsapi, $executor);
+    }
+
+    /**
+     * Gets the buffer pool shared by the transfer loops of every FSAPI this factory provides.
+     */
+    public FuseBufferPool getBufferPool() {
+        return $bufferPool;
+    }
+
+    /**
+     * Gets the executor every asynchronous FSAPI of this factory runs on.
+     */
+    public FuseOrderedExecutor getExecutor() {
+        return $executor;
+    }
+
+    /**
+     * Routes the operations of every FSAPI this factory provides through a FuseTracingFSAPI
+     * reporting to the listener, e.g. a FuseChromeTraceRecorder, or stops tracing if null.
+     * The asynchronous FSAPI stays on the same executor, so ordering is unaffected.
+     *
+     * Without a listener, operations do not go through the tracing layer at all.
+     * FSAPIs already handed out keep tracing, or not, for as long as they are used.
+     */
+    public void setTraceListener(@Nullable IFuseTraceListener listener) {
+        if (listener == null) {
+            $tracingAsyncFsapi = null;
+            return;
+        }
+
+        $tracingAsyncFsapi = new FuseAsyncFSAPI(new FuseTracingFSAPI($fsapi, listener), $executor);
+    }
+
+    public @Nullable IFuseTraceListener getTraceListener() {
+        FuseAsyncFSAPI tracing = $tracingAsyncFsapi;
+        return tracing == null ? null : ((FuseTracingFSAPI) tracing.getFSAPI()).getListener();
     }
 
     public IFSAPI get(Uri uri) {
@@ -17,9 +62,22 @@ public class FuseFSAPIFactory {
         }
 
         if ("file".equals(scheme)) {
-            return $fsapi;
+            FuseAsyncFSAPI tracing = $tracingAsyncFsapi;
+            return tracing == null ? $fsapi : tracing.getFSAPI();
         }
 
         return null;
     }
+
+    /**
+     * Gets the asynchronous FSAPI for the uri, or null if its scheme is not supported.
+     */
+    public IAsyncFSAPI getAsync(Uri uri) {
+        if (get(uri) == null) {
+            return null;
+        }
+
+        FuseAsyncFSAPI tracing = $tracingAsyncFsapi;
+        return tracing == null ? $asyncFsapi : tracing;
+    }
 }
@@ -0,0 +1,236 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The params of a write, append or truncate packet, see FuseFileAPIParams.
+ *
+ * Params come in three forms:
+ * - A compact binary header, starting with MAGIC
+ * - A JSON object of {path, offset?, keepSize?, atomic?, coalesce?, ack?, durability?, encoding?}
+ * - The path alone
+ *
+ * The JSON and path forms are kept for older clients. The binary header saves small,
+ * frequent writes from decoding a string and parsing JSON. It is big endian, like the
+ * params length, and laid out as:
+ *
+ *  0  u8   MAGIC
+ *  1  u8   version, currently 1
+ *  2  u16  flags, see FLAG_*
+ *  4  u8   durability, 0 if not given, otherwise 1 + its index in DURABILITY_CODES
+ *  5  u8   encoding, its index in ENCODING_CODES
+ *  6  i64  offset
+ *  14 u16  path length in bytes
+ *  16      path, UTF-8
+ *
+ * Later versions may only add fields after the path, so any version can be read as
+ * version 1. Unknown flags are ignored.
+ */
+public class FuseFileAPIHeader {
+    /**
+     * 0xF5 never occurs in UTF-8, so a binary header cannot be mistaken for JSON or a path.
+     */
+    public static final int MAGIC = 0xF5;
+    public static final int VERSION = 1;
+    public static final int FIXED_SIZE = 16;
+
+    public static final int FLAG_KEEP_SIZE = 1;
+    public static final int FLAG_ATOMIC = 1 << 1;
+    public static final int FLAG_COALESCE = 1 << 2;
+    public static final int FLAG_ACK_BUFFERED = 1 << 3;
+
+    private static final FuseDurability[] DURABILITY_CODES = {
+        FuseDurability.NONE,
+        FuseDurability.OPERATION,
+        FuseDurability.GROUP_COMMIT
+    };
+
+    private static final FuseContentEncoding[] ENCODING_CODES = {
+        FuseContentEncoding.IDENTITY,
+        FuseContentEncoding.DEFLATE,
+        FuseContentEncoding.GZIP
+    };
+
+    private static final String ACK_BUFFERED = "buffered";
+
+    private final String $path;
+    private final long $offset;
+    private final int $flags;
+    private final @Nullable FuseDurability $durability;
+    private final FuseContentEncoding $encoding;
+
+    public FuseFileAPIHeader(String path, long offset, int flags, @Nullable FuseDurability durability, FuseContentEncoding encoding) {
+        $path = path;
+        $offset = offset;
+        $flags = flags;
+        $durability = durability;
+        $encoding = encoding;
+    }
+
+    public String getPath() {
+        return $path;
+    }
+
+    public long getOffset() {
+        return $offset;
+    }
+
+    public boolean hasFlag(int flag) {
+        return ($flags & flag) != 0;
+    }
+
+    /**
+     * The durability asked for, or null if the params do not ask for one.
+     */
+    public @Nullable FuseDurability getDurability() {
+        return $durability;
+    }
+
+    public FuseContentEncoding getEncoding() {
+        return $encoding;
+    }
+
+    /**
+     * Encodes the header in its binary form.
+     */
+    public byte[] toBytes() {
+        byte[] path = $path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_SIZE + path.length);
+        buffer.put((byte) MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) $flags);
+        buffer.put((byte) ($durability == null ? 0 : 1 + $indexOf(DURABILITY_CODES, $durability)));
+        buffer.put((byte) $indexOf(ENCODING_CODES, $encoding));
+        buffer.putLong($offset);
+        buffer.putShort((short) path.length);
+        buffer.put(path);
+        return buffer.array();
+    }
+
+    private static int $indexOf(Object[] codes, Object value) {
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] == value) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("No code for " + value);
+    }
+
+    /**
+     * Parses params in any of their forms.
+     *
+     * @throws IOException if a binary header is malformed
+     * @throws JSONException if JSON params are malformed
+     */
+    public static FuseFileAPIHeader parse(byte[] params) throws IOException, JSONException {
+        if (isBinary(params, params.length)) {
+            return parseBinary(params, params.length);
+        }
+
+        String raw = new String(params, StandardCharsets.UTF_8);
+        if (raw.startsWith("{")) {
+            return $parseJSON(new JSONObject(raw));
+        }
+
+        return new FuseFileAPIHeader(raw, 0, 0, null, FuseContentEncoding.IDENTITY);
+    }
+
+    /**
+     * @return true if the first length bytes of params are in the binary form
+     */
+    public static boolean isBinary(byte[] params, int length) {
+        return length > 0 && (params[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * Parses a binary header from the first length bytes of params. The bytes are read
+     * in place, so the only allocations are the header and its path.
+     *
+     * @throws IOException if the header is malformed
+     */
+    public static FuseFileAPIHeader parseBinary(byte[] params, int length) throws IOException {
+        if (length < FIXED_SIZE) {
+            throw new IOException("Params header is truncated");
+        }
+
+        int version = params[1] & 0xFF;
+        if (version < 1) {
+            throw new IOException("Unsupported params header version " + version);
+        }
+
+        int flags = $readU16(params, 2);
+        int durabilityCode = params[4] & 0xFF;
+        int encodingCode = params[5] & 0xFF;
+        long offset = ((long) $readU16(params, 6) << 48) | ((long) $readU16(params, 8) << 32) | ((long) $readU16(params, 10) << 16) | $readU16(params, 12);
+        int pathLength = $readU16(params, 14);
+        if (pathLength > length - FIXED_SIZE) {
+            throw new IOException("Params header path is truncated");
+        }
+
+        if (durabilityCode > DURABILITY_CODES.length) {
+            throw new IOException("Unknown durability code " + durabilityCode);
+        }
+
+        if (encodingCode >= ENCODING_CODES.length) {
+            throw new IOException("Unknown encoding code " + encodingCode);
+        }
+
+        String path = new String(params, FIXED_SIZE, pathLength, StandardCharsets.UTF_8);
+        FuseDurability durability = durabilityCode == 0 ? null : DURABILITY_CODES[durabilityCode - 1];
+        return new FuseFileAPIHeader(path, offset, flags, durability, ENCODING_CODES[encodingCode]);
+    }
+
+    private static int $readU16(byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
+    private static FuseFileAPIHeader $parseJSON(JSONObject params) throws JSONException {
+        int flags = 0;
+        if (params.optBoolean("keepSize", false)) {
+            flags |= FLAG_KEEP_SIZE;
+        }
+        if (params.optBoolean("atomic", false)) {
+            flags |= FLAG_ATOMIC;
+        }
+        if (params.optBoolean("coalesce", false)) {
+            flags |= FLAG_COALESCE;
+        }
+        if (ACK_BUFFERED.equals(params.optString("ack"))) {
+            flags |= FLAG_ACK_BUFFERED;
+        }
+
+        try {
+            FuseDurability durability = params.has("durability") ? FuseDurability.fromName(params.getString("durability")) : null;
+            FuseContentEncoding encoding = params.has("encoding") ? FuseContentEncoding.fromName(params.getString("encoding")) : FuseContentEncoding.IDENTITY;
+            return new FuseFileAPIHeader(params.getString("path"), params.optLong("offset", 0), flags, durability, encoding);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+    }
+}
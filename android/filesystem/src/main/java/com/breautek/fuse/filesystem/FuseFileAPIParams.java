@@ -17,8 +17,13 @@ limitations under the License.
 
 package com.breautek.fuse.filesystem;
 
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * A class to handle specialized binary input for
@@ -26,25 +31,44 @@ import java.io.InputStream;
  * an API requires parameters, but also
  * accepts other binary input such as files.
  *
- * Generally speaking the first byte will be an unsigned int32
- * using little endian formatting, which describes the number of
+ * Generally speaking the first 4 bytes will be an unsigned int32
+ * using big endian formatting, which describes the number of
  * bytes following used for parameters. This params will be a stringified
  * dataset. There is no specific format for what the dataset will be,
- * that's a handler implementation detail, but it must be UTF8.
+ * that's a handler implementation detail, but it must be UTF8,
+ * unless it is the binary header described by FuseFileAPIHeader.
  * Immediately following the parameters dataset will be the file content.
  */
 public class FuseFileAPIParams {
-    private byte[] $data;
-    private long $contentLength;
+    /**
+     * Params up to this size are read into a buffer kept per thread, larger ones get their own.
+     */
+    public static final int MAX_SCRATCH_SIZE = 8192;
 
     private static final int CONTENT_LENGTH_BYTE_SIZE = 4;
 
+    private static final ThreadLocal<byte[]> $scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[512];
+        }
+    };
+
+    private @Nullable byte[] $data;
+    private @Nullable FuseFileAPIHeader $header;
+    private int $paramsLength;
+    private long $contentLength;
+
     private FuseFileAPIParams() {}
 
     /**
-     * Gets the params data
+     * Gets the params data. A binary header is parsed as it is read, so its bytes are
+     * encoded anew and drop any fields a later version added.
      */
     public byte[] getParams() {
+        if ($data == null) {
+            return $header.toBytes();
+        }
         return $data;
     }
 
@@ -52,32 +76,80 @@ public class FuseFileAPIParams {
      * Gets the content length, excluding the params data
      */
     public long getContentLength() {
-        return $contentLength - $data.length - CONTENT_LENGTH_BYTE_SIZE;
+        return $contentLength - $paramsLength - CONTENT_LENGTH_BYTE_SIZE;
+    }
+
+    /**
+     * Parses the params, see FuseFileAPIHeader for their forms.
+     */
+    public FuseFileAPIHeader getHeader() throws IOException, JSONException {
+        if ($header == null) {
+            $header = FuseFileAPIHeader.parse($data);
+        }
+        return $header;
     }
 
+    /**
+     * Reads the params that precede the content of the packet. The length prefix and a
+     * binary header are read through a buffer reused by the thread, so parsing one only
+     * allocates the header and its path. The other forms are copied out for later parsing.
+     *
+     * @throws IOException if the stream ends early or a binary header is malformed
+     */
     public static FuseFileAPIParams parse(long contentLengthHv, InputStream io) throws IOException {
-        byte[] contentLength = new byte[CONTENT_LENGTH_BYTE_SIZE];
-        int bytesRead = io.read(contentLength);
-        if (bytesRead < CONTENT_LENGTH_BYTE_SIZE) {
+        byte[] scratch = $scratch.get();
+        if (!$readFully(io, scratch, CONTENT_LENGTH_BYTE_SIZE)) {
             throw new IOException("Unable to read Fuse File API Params length byte.");
         }
 
-        int contentLengthInt = ((contentLength[0] & 0xFF) << 24) |
-                ((contentLength[1] & 0xFF) << 16) |
-                ((contentLength[2] & 0xFF) << 8) |
-                (contentLength[3] & 0xFF);
+        int contentLengthInt = ((scratch[0] & 0xFF) << 24) |
+                ((scratch[1] & 0xFF) << 16) |
+                ((scratch[2] & 0xFF) << 8) |
+                (scratch[3] & 0xFF);
 
-        byte[] content = new byte[contentLengthInt];
+        if (contentLengthInt < 0) {
+            throw new IOException("Invalid Fuse File API Params length");
+        }
 
-        bytesRead = io.read(content);
+        byte[] content = scratch;
+        if (contentLengthInt > scratch.length) {
+            content = new byte[contentLengthInt];
+            if (contentLengthInt <= MAX_SCRATCH_SIZE) {
+                $scratch.set(content);
+            }
+        }
 
-        if (bytesRead < contentLengthInt) {
+        if (!$readFully(io, content, contentLengthInt)) {
             throw new IOException("Unable to read Fuse File API Params content");
         }
 
         FuseFileAPIParams params = new FuseFileAPIParams();
-        params.$data = content;
+        params.$paramsLength = contentLengthInt;
         params.$contentLength = contentLengthHv;
+        if (FuseFileAPIHeader.isBinary(content, contentLengthInt)) {
+            params.$header = FuseFileAPIHeader.parseBinary(content, contentLengthInt);
+        }
+        else {
+            params.$data = Arrays.copyOf(content, contentLengthInt);
+        }
         return params;
     }
+
+    /**
+     * Fills the first length bytes of the buffer, as a single read may return less than
+     * asked for when the packet arrives in several segments.
+     *
+     * @return false if the stream ends before the buffer is filled
+     */
+    private static boolean $readFully(InputStream io, byte[] buffer, int length) throws IOException {
+        int totalBytesRead = 0;
+        while (totalBytesRead < length) {
+            int bytesRead = io.read(buffer, totalBytesRead, length - totalBytesRead);
+            if (bytesRead == -1) {
+                return false;
+            }
+            totalBytesRead += bytesRead;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,439 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded, least recently used cache of open file channels, keyed by canonical path.
+ *
+ * Handles are reference counted. A handle that is evicted or invalidated while
+ * in use stays open until its last user releases it. Handles left unused for
+ * longer than the idle timeout are closed by a shared background sweep.
+ *
+ * The cache only knows about changes made through it. Anything that deletes,
+ * replaces or renames a file must invalidate it, otherwise later operations
+ * would keep using the old file. As a safety net, a cached writable handle is
+ * only reused while it still refers to the file at its path.
+ */
+public class FuseFileChannelCache {
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000; // 30 seconds
+    public static final long SWEEP_INTERVAL = 5000; // 5 seconds
+
+    private static final Set<FuseFileChannelCache> $instances = Collections.newSetFromMap(new WeakHashMap<>());
+    private static ScheduledExecutorService $sweeper;
+
+    /**
+     * An open channel leased from the cache. Must be closed exactly once,
+     * which returns it to the cache.
+     */
+    public static class Handle implements Closeable {
+        private final FuseFileChannelCache $cache;
+        private final String $path;
+        private final RandomAccessFile $file;
+        private final boolean $writable;
+        private final @Nullable Object $fileKey;
+        private int $refCount;
+        private long $lastUsed;
+        private boolean $retired;
+
+        private Handle(FuseFileChannelCache cache, String path, RandomAccessFile file, boolean writable, @Nullable Object fileKey) {
+            $cache = cache;
+            $path = path;
+            $file = file;
+            $writable = writable;
+            $fileKey = fileKey;
+        }
+
+        public String getPath() {
+            return $path;
+        }
+
+        public FileChannel getChannel() {
+            return $file.getChannel();
+        }
+
+        public boolean isWritable() {
+            return $writable;
+        }
+
+        public FileDescriptor getFD() throws IOException {
+            return $file.getFD();
+        }
+
+        /**
+         * Sets the length of the file, extending it with a sparse range or truncating it.
+         */
+        public void setLength(long length) throws IOException {
+            $file.setLength(length);
+        }
+
+        @Override
+        public void close() {
+            $cache.release(this);
+        }
+    }
+
+    private final LinkedHashMap<String, Handle> $handles;
+    private volatile int $maxEntries;
+    private volatile long $idleTimeout;
+    private long $hits;
+    private long $misses;
+    private long $evictions;
+
+    public FuseFileChannelCache() {
+        $handles = new LinkedHashMap<>(DEFAULT_MAX_ENTRIES, 0.75f, true);
+        $maxEntries = DEFAULT_MAX_ENTRIES;
+        $idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        $register(this);
+    }
+
+    /**
+     * Closes the cached handles of the file and of everything below it in every live cache,
+     * for code that removes files without going through an FSAPI, e.g. FileUtils.deleteRecursively
+     */
+    public static void invalidateTreeInAll(File file) {
+        List<FuseFileChannelCache> caches;
+        synchronized ($instances) {
+            caches = new ArrayList<>($instances);
+        }
+
+        for (FuseFileChannelCache cache : caches) {
+            cache.invalidateTree(file);
+        }
+    }
+
+    /**
+     * Sets the number of open handles kept. 0 disables caching,
+     * every handle is then closed as soon as it is released.
+     */
+    public void setMaxEntries(int maxEntries) {
+        $maxEntries = maxEntries;
+        synchronized ($handles) {
+            $evictOverflow();
+        }
+    }
+
+    public int getMaxEntries() {
+        return $maxEntries;
+    }
+
+    /**
+     * Sets how long, in milliseconds, an unused handle is kept open.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        $idleTimeout = idleTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return $idleTimeout;
+    }
+
+    public long getHitCount() {
+        synchronized ($handles) {
+            return $hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized ($handles) {
+            return $misses;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized ($handles) {
+            return $evictions;
+        }
+    }
+
+    public int size() {
+        synchronized ($handles) {
+            return $handles.size();
+        }
+    }
+
+    /**
+     * Gets an open channel for the file. Writable handles create the file if it does not exist.
+     * A cached read only handle is replaced when a writable one is requested.
+     *
+     * @throws java.io.FileNotFoundException if the file cannot be opened
+     */
+    public Handle acquire(File file, boolean writable) throws IOException {
+        String path = file.getCanonicalPath();
+
+        synchronized ($handles) {
+            $evictIdle();
+
+            Handle handle = $handles.get(path);
+            if (handle != null && (handle.$writable || !writable)) {
+                if (!handle.$writable || $isCurrent(handle)) {
+                    $hits++;
+                    handle.$refCount++;
+                    return handle;
+                }
+
+                // The file was deleted or replaced behind our back, writing
+                // through this handle would be lost.
+                $handles.remove(path);
+                $retire(handle);
+            }
+
+            $misses++;
+        }
+
+        // Read before opening, so a file replaced in between makes the handle look stale rather than current.
+        Object fileKey = $readFileKey(path);
+        RandomAccessFile raf = new RandomAccessFile(path, writable ? "rw" : "r");
+        if (fileKey == null) {
+            // Created by opening it.
+            fileKey = $readFileKey(path);
+        }
+
+        Handle opened = new Handle(this, path, raf, writable, fileKey);
+        opened.$refCount = 1;
+
+        synchronized ($handles) {
+            Handle existing = $handles.get(path);
+            if (existing != null && (existing.$writable || !writable)) {
+                // Lost a race with another opener, use theirs.
+                existing.$refCount++;
+                opened.$retired = true;
+                $release(opened);
+                return existing;
+            }
+
+            if (existing != null) {
+                $retire(existing);
+            }
+
+            $handles.put(path, opened);
+            $evictOverflow();
+            return opened;
+        }
+    }
+
+    /**
+     * Returns a handle to the cache, same as Handle.close()
+     */
+    public void release(Handle handle) {
+        synchronized ($handles) {
+            $release(handle);
+        }
+    }
+
+    /**
+     * Closes the cached handle of the file, if any.
+     */
+    public void invalidate(File file) {
+        String path = $getCanonicalPath(file);
+        synchronized ($handles) {
+            Handle handle = $handles.remove(path);
+            if (handle != null) {
+                $retire(handle);
+            }
+        }
+    }
+
+    /**
+     * Closes the cached handles of the file and of everything below it,
+     * for when a directory tree is removed.
+     */
+    public void invalidateTree(File file) {
+        String path = $getCanonicalPath(file);
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        synchronized ($handles) {
+            Iterator<Map.Entry<String, Handle>> it = $handles.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Handle> entry = it.next();
+                if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+                    it.remove();
+                    $retire(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every handle that is not in use.
+     */
+    public void trim() {
+        synchronized ($handles) {
+            Iterator<Handle> it = $handles.values().iterator();
+            while (it.hasNext()) {
+                Handle handle = it.next();
+                if (handle.$refCount == 0) {
+                    it.remove();
+                    $retire(handle);
+                }
+            }
+        }
+    }
+
+    private void $release(Handle handle) {
+        handle.$refCount--;
+        handle.$lastUsed = System.currentTimeMillis();
+        if (handle.$refCount == 0 && (handle.$retired || $maxEntries == 0)) {
+            if (!handle.$retired) {
+                $handles.remove(handle.$path);
+                handle.$retired = true;
+            }
+            $close(handle);
+        }
+    }
+
+    private void $retire(Handle handle) {
+        handle.$retired = true;
+        if (handle.$refCount == 0) {
+            $close(handle);
+        }
+    }
+
+    /**
+     * Closes every unused handle that has been idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        synchronized ($handles) {
+            $evictIdle();
+        }
+    }
+
+    private void $evictIdle() {
+        long idleSince = System.currentTimeMillis() - $idleTimeout;
+        List<Handle> idle = null;
+        for (Handle handle : $handles.values()) {
+            if (handle.$refCount == 0 && handle.$lastUsed < idleSince) {
+                if (idle == null) {
+                    idle = new ArrayList<>();
+                }
+                idle.add(handle);
+            }
+        }
+
+        if (idle != null) {
+            for (Handle handle : idle) {
+                $handles.remove(handle.$path);
+                $retire(handle);
+                $evictions++;
+            }
+        }
+    }
+
+    private void $evictOverflow() {
+        Iterator<Handle> it = $handles.values().iterator();
+        while ($handles.size() > $maxEntries && it.hasNext()) {
+            Handle handle = it.next();
+            it.remove();
+            $retire(handle);
+            $evictions++;
+        }
+    }
+
+    private void $close(Handle handle) {
+        try {
+            handle.$file.close();
+        }
+        catch (IOException ex) {
+            // Nothing useful can be done, the handle is no longer reachable.
+        }
+    }
+
+    /**
+     * Checks that the handle still refers to the file at its path, by comparing the file key,
+     * the device and inode on Unix, read when the handle was opened with the current one.
+     * Costs a single stat. If the filesystem has no file keys, the handle is assumed current.
+     */
+    private boolean $isCurrent(Handle handle) {
+        if (handle.$fileKey == null) {
+            return true;
+        }
+
+        try {
+            return handle.$fileKey.equals(Files.readAttributes(Paths.get(handle.$path), BasicFileAttributes.class).fileKey());
+        }
+        catch (IOException | RuntimeException ex) {
+            // Gone, or no longer readable. Reopening tells which.
+            return false;
+        }
+    }
+
+    private static @Nullable Object $readFileKey(String path) {
+        try {
+            return Files.readAttributes(Paths.get(path), BasicFileAttributes.class).fileKey();
+        }
+        catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static void $register(FuseFileChannelCache cache) {
+        synchronized ($instances) {
+            $instances.add(cache);
+            if ($sweeper == null) {
+                $sweeper = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+                    Thread thread = new Thread(runnable, "FuseFilesystem-ChannelSweep");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                $sweeper.scheduleWithFixedDelay(FuseFileChannelCache::$sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void $sweep() {
+        List<FuseFileChannelCache> caches;
+        synchronized ($instances) {
+            caches = new ArrayList<>($instances);
+        }
+
+        for (FuseFileChannelCache cache : caches) {
+            cache.evictIdle();
+        }
+    }
+
+    private String $getCanonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        }
+        catch (IOException ex) {
+            return file.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * The kinds of operations served by the filesystem plugin.
+ */
+public enum FuseFileOperation {
+    READ,
+    WRITE,
+    APPEND,
+    TRUNCATE,
+    DELETE,
+    EXISTS,
+    SIZE,
+    TYPE,
+    MKDIR,
+    FLUSH,
+    SYNC,
+    STAT,
+    LIST,
+    COPY,
+    MOVE,
+    READV,
+    HASH,
+    WRITEV,
+    ALLOCATE,
+    REPLACE
+}
@@ -0,0 +1,103 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import com.breautek.fuse.FuseError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A contiguous span of bytes within a file.
+ */
+public class FuseFileRange {
+    private final long $offset;
+    private final long $length;
+
+    public FuseFileRange(long offset, long length) {
+        $offset = offset;
+        $length = length;
+    }
+
+    public long getOffset() {
+        return $offset;
+    }
+
+    public long getLength() {
+        return $length;
+    }
+
+    /**
+     * Gets the offset immediately after the last byte of this range.
+     */
+    public long getEnd() {
+        return $offset + $length;
+    }
+
+    /**
+     * Checks segments to be written from a body of contentLength bytes.
+     *
+     * @throws FuseError if a segment has a negative offset or length, or if the segment
+     *         lengths do not add up to contentLength
+     */
+    public static void checkSegments(List<FuseFileRange> segments, long contentLength) throws FuseError {
+        long total = 0;
+        for (FuseFileRange segment : segments) {
+            if (segment.getOffset() < 0 || segment.getLength() < 0) {
+                throw new FuseError("FuseFilesystem", 0, "Invalid segment at offset " + segment.getOffset() + " with length " + segment.getLength());
+            }
+            total += segment.getLength();
+        }
+
+        if (total != contentLength) {
+            throw new FuseError("FuseFilesystem", 0, "Segments total " + total + " bytes but the content is " + contentLength + " bytes");
+        }
+    }
+
+    /**
+     * Sorts the ranges by offset and merges any that overlap or sit next to each other.
+     * The given list is not modified.
+     */
+    public static List<FuseFileRange> coalesce(List<FuseFileRange> ranges) {
+        List<FuseFileRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, (a, b) -> Long.compare(a.getOffset(), b.getOffset()));
+
+        List<FuseFileRange> coalesced = new ArrayList<>(sorted.size());
+        FuseFileRange current = null;
+        for (FuseFileRange range : sorted) {
+            if (current != null && range.getOffset() <= current.getEnd()) {
+                if (range.getEnd() > current.getEnd()) {
+                    current = new FuseFileRange(current.getOffset(), range.getEnd() - current.getOffset());
+                }
+                continue;
+            }
+
+            if (current != null) {
+                coalesced.add(current);
+            }
+            current = range;
+        }
+
+        if (current != null) {
+            coalesced.add(current);
+        }
+
+        return coalesced;
+    }
+}
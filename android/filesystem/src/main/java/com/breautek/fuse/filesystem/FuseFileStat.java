@@ -0,0 +1,70 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * The metadata of a filesystem object, as read by a single stat call.
+ */
+public class FuseFileStat {
+    private final FuseFileType $type;
+    private final long $size;
+    private final long $modifiedTime;
+    private final long $changeTime;
+    private final int $mode;
+
+    public FuseFileStat(FuseFileType type, long size, long modifiedTime, long changeTime, int mode) {
+        $type = type;
+        $size = size;
+        $modifiedTime = modifiedTime;
+        $changeTime = changeTime;
+        $mode = mode;
+    }
+
+    /**
+     * @return The file type, or null if the object is neither a file nor a directory
+     */
+    public FuseFileType getType() {
+        return $type;
+    }
+
+    public long getSize() {
+        return $size;
+    }
+
+    /**
+     * @return Last modification time, in milliseconds since the epoch
+     */
+    public long getModifiedTime() {
+        return $modifiedTime;
+    }
+
+    /**
+     * @return Last status change time, in milliseconds since the epoch. Where the platform
+     *         does not expose it, this is the closest time it does, usually the modification time.
+     */
+    public long getChangeTime() {
+        return $changeTime;
+    }
+
+    /**
+     * @return Permission bits, e.g. 0644
+     */
+    public int getMode() {
+        return $mode;
+    }
+}
@@ -17,29 +17,77 @@ limitations under the License.
 
 package com.breautek.fuse.filesystem;
 
+import android.content.Context;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.breautek.fuse.FuseContext;
 import com.breautek.fuse.FusePlugin;
+import com.breautek.fuse.filesystem.handlers.FileAllocateHandler;
 import com.breautek.fuse.filesystem.handlers.FileAppendHandler;
+import com.breautek.fuse.filesystem.handlers.FileBatchHandler;
+import com.breautek.fuse.filesystem.handlers.FileCopyHandler;
 import com.breautek.fuse.filesystem.handlers.FileDeleteHandler;
 import com.breautek.fuse.filesystem.handlers.FileExistsHandler;
+import com.breautek.fuse.filesystem.handlers.FileFlushHandler;
+import com.breautek.fuse.filesystem.handlers.FileHashHandler;
+import com.breautek.fuse.filesystem.handlers.FileListHandler;
 import com.breautek.fuse.filesystem.handlers.FileMkdirHandler;
+import com.breautek.fuse.filesystem.handlers.FileMoveHandler;
 import com.breautek.fuse.filesystem.handlers.FileReadHandler;
+import com.breautek.fuse.filesystem.handlers.FileReadvHandler;
 import com.breautek.fuse.filesystem.handlers.FileSizeHandler;
+import com.breautek.fuse.filesystem.handlers.FileStatHandler;
 import com.breautek.fuse.filesystem.handlers.FileTruncateHandler;
 import com.breautek.fuse.filesystem.handlers.FileTypeHandler;
 import com.breautek.fuse.filesystem.handlers.FileWriteHandler;
+import com.breautek.fuse.filesystem.handlers.FileWritevHandler;
+import com.breautek.fuse.filesystem.handlers.FuseAsyncAPIHandler;
+import com.breautek.fuse.filesystem.handlers.MetricsHandler;
+
+import java.io.File;
+import java.io.IOException;
 
 public class FuseFilesystemPlugin extends FusePlugin {
     public static final int DEFAULT_CHUNK_SIZE = 4194304; // 4mb
+    public static final String REPLACE_JOURNAL_NAME = "fuse-replace.journal";
     private int $chunkSize;
+    private @NonNull IChunkSizePolicy $chunkSizePolicy;
+    private @Nullable IChunkSizeListener $chunkSizeListener;
     private @NonNull FuseFSAPIFactory $fsapiFactory;
+    private @NonNull FuseDurability $durability;
+    private @Nullable FuseMetrics $metrics;
 
     public FuseFilesystemPlugin(FuseContext context) {
         super(context);
         $chunkSize = DEFAULT_CHUNK_SIZE;
+        $chunkSizePolicy = new FuseAdaptiveChunkSizePolicy(DEFAULT_CHUNK_SIZE);
         $fsapiFactory = new FuseFSAPIFactory();
+        $durability = FuseDurability.NONE;
+
+        Context appContext = context.getContext();
+        FuseEncodingReadCallback.setSpoolDirectory(appContext.getCacheDir());
+        $deleteTemps(appContext.getCacheDir(), new File(appContext.getNoBackupFilesDir(), REPLACE_JOURNAL_NAME));
+    }
+
+    /**
+     * Removes the temp files of atomic truncates and encoded reads interrupted by the process dying.
+     * Runs in the background to keep disk reads off the thread creating the plugin.
+     */
+    private void $deleteTemps(File spoolDirectory, File replaceJournal) {
+        long startTime = System.currentTimeMillis();
+        Thread thread = new Thread(() -> {
+            FuseEncodingReadCallback.deleteLeftoverSpools(spoolDirectory, startTime);
+            try {
+                FuseReplaceJournal.getDefault().open(replaceJournal);
+            }
+            catch (IOException ex) {
+                // Replaces are then only tracked in memory, leftovers are cleaned on a later start.
+            }
+        }, "FuseFilesystem-TempCleanup");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     public void setFSAPIFactory(@NonNull FuseFSAPIFactory apiFactory) {
@@ -51,18 +99,96 @@ public class FuseFilesystemPlugin extends FusePlugin {
     }
 
     /**
-     * Sets the chunk size used for read and write operations.
+     * Sets a fixed chunk size used for read and write operations.
+     * This replaces the chunk size policy with a FuseFixedChunkSizePolicy.
      *
      * @param chunkSize
      */
     public void setChunkSize(int chunkSize) {
         $chunkSize = chunkSize;
+        $chunkSizePolicy = new FuseFixedChunkSizePolicy(chunkSize);
     }
 
+    /**
+     * Gets the fixed chunk size last set, or the default maximum chunk size.
+     * Handlers should use getChunkSize(FuseFileOperation, long) instead.
+     */
     public int getChunkSize() {
         return $chunkSize;
     }
 
+    /**
+     * Sets the policy deciding the chunk size of each transfer.
+     * By default a FuseAdaptiveChunkSizePolicy is used.
+     *
+     * @param policy
+     */
+    public void setChunkSizePolicy(@NonNull IChunkSizePolicy policy) {
+        $chunkSizePolicy = policy;
+    }
+
+    public @NonNull IChunkSizePolicy getChunkSizePolicy() {
+        return $chunkSizePolicy;
+    }
+
+    /**
+     * Sets a listener notified of every chunk size chosen by the chunk size policy.
+     *
+     * @param listener
+     */
+    public void setChunkSizeListener(@Nullable IChunkSizeListener listener) {
+        $chunkSizeListener = listener;
+    }
+
+    /**
+     * Gets the chunk size to use for a transfer, as decided by the chunk size policy.
+     *
+     * @param operation The operation about to be performed
+     * @param contentLength The number of bytes to transfer, or -1 if not known upfront
+     */
+    public int getChunkSize(FuseFileOperation operation, long contentLength) {
+        int chunkSize = $chunkSizePolicy.getChunkSize(operation, contentLength);
+
+        IChunkSizeListener listener = $chunkSizeListener;
+        if (listener != null) {
+            listener.onChunkSizeChosen(operation, contentLength, chunkSize);
+        }
+
+        return chunkSize;
+    }
+
+    /**
+     * Reports a finished transfer to the chunk size policy.
+     */
+    public void reportTransfer(FuseFileOperation operation, int chunkSize, long bytes, long durationNanos) {
+        $chunkSizePolicy.onTransferComplete(operation, chunkSize, bytes, durationNanos);
+    }
+
+    /**
+     * Sets the durability of writes, appends and truncates that do not ask for one.
+     * Defaults to NONE.
+     *
+     * @param durability
+     */
+    public void setDurability(@NonNull FuseDurability durability) {
+        $durability = durability;
+    }
+
+    public @NonNull FuseDurability getDurability() {
+        return $durability;
+    }
+
+    /**
+     * Gets the metrics recorded by the handlers, as served by /metrics.
+     */
+    public synchronized @NonNull FuseMetrics getMetrics() {
+        // Created on first use, as _initHandles may run before the constructor assigns fields.
+        if ($metrics == null) {
+            $metrics = new FuseMetrics();
+        }
+        return $metrics;
+    }
+
     @Override
     public String getID() {
         return "FuseFilesystem";
@@ -70,14 +196,33 @@ public class FuseFilesystemPlugin extends FusePlugin {
 
     @Override
     protected void _initHandles() {
-        attachHandler("/file/type", new FileTypeHandler(this));
-        attachHandler("/file/size", new FileSizeHandler(this));
-        attachHandler("/file/mkdir", new FileMkdirHandler(this));
-        attachHandler("/file/read", new FileReadHandler(this));
-        attachHandler("/file/truncate", new FileTruncateHandler(this));
-        attachHandler("/file/append", new FileAppendHandler(this));
-        attachHandler("/file/write", new FileWriteHandler(this));
-        attachHandler("/file/remove", new FileDeleteHandler(this));
-        attachHandler("/file/exists", new FileExistsHandler(this));
+        $attach("/file/type", new FileTypeHandler(this));
+        $attach("/file/size", new FileSizeHandler(this));
+        $attach("/file/stat", new FileStatHandler(this));
+        $attach("/file/list", new FileListHandler(this));
+        $attach("/file/mkdir", new FileMkdirHandler(this));
+        $attach("/file/read", new FileReadHandler(this));
+        $attach("/file/readv", new FileReadvHandler(this));
+        $attach("/file/hash", new FileHashHandler(this));
+        $attach("/file/truncate", new FileTruncateHandler(this));
+        $attach("/file/append", new FileAppendHandler(this));
+        $attach("/file/flush", new FileFlushHandler(this));
+        $attach("/file/write", new FileWriteHandler(this));
+        $attach("/file/writev", new FileWritevHandler(this));
+        $attach("/file/allocate", new FileAllocateHandler(this));
+        $attach("/file/remove", new FileDeleteHandler(this));
+        $attach("/file/copy", new FileCopyHandler(this));
+        $attach("/file/move", new FileMoveHandler(this));
+        $attach("/file/exists", new FileExistsHandler(this));
+        $attach("/file/batch", new FileBatchHandler(this));
+        attachHandler("/metrics", new MetricsHandler(this));
+    }
+
+    /**
+     * Attaches the handler, recording into the metrics of its endpoint.
+     */
+    private void $attach(String path, FuseAsyncAPIHandler handler) {
+        handler.setMetrics(getMetrics().getEndpoint(path));
+        attachHandler(path, handler);
     }
 }
@@ -0,0 +1,193 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import com.breautek.fuse.FuseError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Batches file syncs. Commits requested within the commit interval, or until the
+ * batch reaches its maximum size, are served by a single sync per file, so
+ * concurrent writers to the same file pay for one sync instead of one each.
+ *
+ * A commit must only be requested after the write it should cover has returned.
+ * The sync serving it starts after the request, so it covers the write.
+ */
+public class FuseGroupCommitter {
+    public static final long DEFAULT_COMMIT_INTERVAL = 10; // ms
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    /**
+     * Forces the content of a file to storage.
+     */
+    public interface ISyncer {
+        void sync(File file) throws IOException;
+    }
+
+    private static class Commit {
+        private final File $file;
+        private final List<CompletableFuture<Void>> $waiters = new ArrayList<>();
+
+        Commit(File file) {
+            $file = file;
+        }
+    }
+
+    private final ISyncer $syncer;
+    private final Object $lock;
+    private LinkedHashMap<String, Commit> $pending;
+    private int $pendingCount;
+    private long $batchStart;
+    private Thread $thread;
+    private volatile long $commitInterval;
+    private volatile int $maxBatchSize;
+    private long $syncCount;
+
+    public FuseGroupCommitter(ISyncer syncer) {
+        $syncer = syncer;
+        $lock = new Object();
+        $pending = new LinkedHashMap<>();
+        $commitInterval = DEFAULT_COMMIT_INTERVAL;
+        $maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    }
+
+    /**
+     * Sets how long, in milliseconds, the first commit of a batch waits for others to join it.
+     */
+    public void setCommitInterval(long commitInterval) {
+        $commitInterval = commitInterval;
+    }
+
+    public long getCommitInterval() {
+        return $commitInterval;
+    }
+
+    /**
+     * Sets the number of commits that triggers a sync without waiting out the interval.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        $maxBatchSize = maxBatchSize;
+        synchronized ($lock) {
+            $lock.notifyAll();
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return $maxBatchSize;
+    }
+
+    /**
+     * The number of syncs issued, which is lower than the number of commits when batching pays off.
+     */
+    public long getSyncCount() {
+        synchronized ($lock) {
+            return $syncCount;
+        }
+    }
+
+    /**
+     * Requests a sync of the file.
+     *
+     * @return A future completing once a sync started after this call has completed,
+     *         or exceptionally with a FuseError if the sync failed
+     */
+    public CompletableFuture<Void> commit(File file) {
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+
+        synchronized ($lock) {
+            if ($pendingCount == 0) {
+                $batchStart = System.nanoTime();
+            }
+
+            Commit commit = $pending.get(key);
+            if (commit == null) {
+                commit = new Commit(file);
+                $pending.put(key, commit);
+            }
+            commit.$waiters.add(ack);
+            $pendingCount++;
+
+            if ($thread == null) {
+                $thread = new Thread(this::$run, "FuseFilesystem-GroupCommit");
+                $thread.setDaemon(true);
+                $thread.start();
+            }
+
+            $lock.notifyAll();
+        }
+
+        return ack;
+    }
+
+    private void $run() {
+        while (true) {
+            LinkedHashMap<String, Commit> batch;
+            synchronized ($lock) {
+                try {
+                    while ($pendingCount == 0) {
+                        $lock.wait();
+                    }
+
+                    while ($pendingCount < $maxBatchSize) {
+                        long remaining = $commitInterval - (System.nanoTime() - $batchStart) / 1000000;
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        $lock.wait(remaining);
+                    }
+                }
+                catch (InterruptedException ex) {
+                    // Nothing interrupts this thread, commit whatever is pending.
+                }
+
+                batch = $pending;
+                $pending = new LinkedHashMap<>();
+                $pendingCount = 0;
+                $syncCount += batch.size();
+            }
+
+            for (Commit commit : batch.values()) {
+                $sync(commit);
+            }
+        }
+    }
+
+    private void $sync(Commit commit) {
+        try {
+            $syncer.sync(commit.$file);
+        }
+        catch (IOException | RuntimeException ex) {
+            FuseError error = new FuseError("FuseFilesystem", 0, "Could not sync \"" + commit.$file.getPath() + "\"", ex);
+            for (CompletableFuture<Void> waiter : commit.$waiters) {
+                waiter.completeExceptionally(error);
+            }
+            return;
+        }
+
+        for (CompletableFuture<Void> waiter : commit.$waiters) {
+            waiter.complete(null);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * The checksums and digests files can be hashed with.
+ */
+public enum FuseHashAlgorithm {
+    CRC32("crc32", null),
+    MD5("md5", "MD5"),
+    SHA1("sha1", "SHA-1"),
+    SHA256("sha256", "SHA-256");
+
+    private final String $name;
+    private final String $digestName;
+
+    FuseHashAlgorithm(String name, String digestName) {
+        $name = name;
+        $digestName = digestName;
+    }
+
+    /**
+     * The name used in request params and responses.
+     */
+    public String getName() {
+        return $name;
+    }
+
+    /**
+     * Creates a digest computing this algorithm. CRC32 digests are its 4 bytes, big endian.
+     */
+    public MessageDigest createDigest() {
+        if ($digestName == null) {
+            return new CRC32Digest();
+        }
+
+        try {
+            return MessageDigest.getInstance($digestName);
+        }
+        catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to provide MD5, SHA-1 and SHA-256.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name is not a known algorithm
+     */
+    public static FuseHashAlgorithm fromName(String name) {
+        for (FuseHashAlgorithm algorithm : values()) {
+            if (algorithm.$name.equals(name)) {
+                return algorithm;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown hash algorithm \"" + name + "\"");
+    }
+
+    /**
+     * CRC32 behind the MessageDigest interface, so every algorithm is driven the same way.
+     */
+    private static class CRC32Digest extends MessageDigest {
+        private final CRC32 $crc;
+
+        CRC32Digest() {
+            super("CRC32");
+            $crc = new CRC32();
+        }
+
+        @Override
+        protected int engineGetDigestLength() {
+            return 4;
+        }
+
+        @Override
+        protected void engineUpdate(byte input) {
+            $crc.update(input);
+        }
+
+        @Override
+        protected void engineUpdate(byte[] input, int offset, int len) {
+            $crc.update(input, offset, len);
+        }
+
+        @Override
+        protected void engineUpdate(ByteBuffer input) {
+            $crc.update(input);
+        }
+
+        @Override
+        protected byte[] engineDigest() {
+            long value = $crc.getValue();
+            $crc.reset();
+            return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+
+        @Override
+        protected void engineReset() {
+            $crc.reset();
+        }
+    }
+}
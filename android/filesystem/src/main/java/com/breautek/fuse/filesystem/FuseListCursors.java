@@ -0,0 +1,221 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps directory listings open between pages, so a page resumes exactly where the
+ * previous one stopped instead of enumerating and skipping everything before it.
+ *
+ * Entries added or removed while a listing is open may or may not be seen, but every
+ * other entry is listed exactly once. Each open listing holds a file descriptor, so
+ * the number kept is bounded, least recently used first, and listings left unused for
+ * longer than the idle timeout are closed in the background.
+ */
+public class FuseListCursors {
+    public static final int DEFAULT_MAX_OPEN = 32;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000; // 1 minute
+
+    /**
+     * An open listing. Only used by one page at a time, as it is taken out of the cursors while in use.
+     */
+    public static class Listing {
+        private final String $path;
+        private final @Nullable String $filter;
+        private final DirectoryStream<Path> $stream;
+        private final Iterator<Path> $iterator;
+        private long $lastUsed;
+
+        public Listing(String path, @Nullable String filter, DirectoryStream<Path> stream) {
+            $path = path;
+            $filter = filter;
+            $stream = stream;
+            $iterator = stream.iterator();
+        }
+
+        public String getPath() {
+            return $path;
+        }
+
+        public @Nullable String getFilter() {
+            return $filter;
+        }
+
+        public Iterator<Path> getIterator() {
+            return $iterator;
+        }
+
+        public void close() {
+            try {
+                $stream.close();
+            }
+            catch (IOException ex) {
+                // Nothing useful can be done, the listing is no longer reachable.
+            }
+        }
+    }
+
+    private final LinkedHashMap<String, Listing> $listings;
+    private volatile int $maxOpen;
+    private volatile long $idleTimeout;
+    private ScheduledExecutorService $sweeper;
+
+    public FuseListCursors() {
+        $listings = new LinkedHashMap<>(16, 0.75f, true);
+        $maxOpen = DEFAULT_MAX_OPEN;
+        $idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    }
+
+    /**
+     * Sets the number of listings kept open. Cursors of listings closed to make room expire.
+     */
+    public void setMaxOpen(int maxOpen) {
+        $maxOpen = maxOpen;
+        synchronized ($listings) {
+            $evictOverflow();
+        }
+    }
+
+    public int getMaxOpen() {
+        return $maxOpen;
+    }
+
+    /**
+     * Sets how long, in milliseconds, an unused listing is kept open.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        $idleTimeout = idleTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return $idleTimeout;
+    }
+
+    public int size() {
+        synchronized ($listings) {
+            return $listings.size();
+        }
+    }
+
+    /**
+     * Keeps the listing open for a later page.
+     *
+     * @return The cursor resuming the listing
+     */
+    public String park(Listing listing) {
+        String cursor = UUID.randomUUID().toString();
+        park(cursor, listing);
+        return cursor;
+    }
+
+    /**
+     * Puts back a listing taken with take, under the same cursor.
+     */
+    public void park(String cursor, Listing listing) {
+        synchronized ($listings) {
+            listing.$lastUsed = System.currentTimeMillis();
+            $listings.put(cursor, listing);
+            $evictOverflow();
+            $startSweeper();
+        }
+    }
+
+    /**
+     * Takes the listing of the cursor out, so no other page can use it concurrently.
+     *
+     * @return The listing, or null if the cursor is unknown or has expired
+     */
+    public @Nullable Listing take(String cursor) {
+        synchronized ($listings) {
+            return $listings.remove(cursor);
+        }
+    }
+
+    /**
+     * Closes the listings unused for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - $idleTimeout;
+        List<Listing> idle = new ArrayList<>();
+        synchronized ($listings) {
+            Iterator<Listing> it = $listings.values().iterator();
+            while (it.hasNext()) {
+                Listing listing = it.next();
+                if (listing.$lastUsed < idleSince) {
+                    it.remove();
+                    idle.add(listing);
+                }
+            }
+        }
+
+        for (Listing listing : idle) {
+            listing.close();
+        }
+    }
+
+    /**
+     * Closes every open listing.
+     */
+    public void clear() {
+        List<Listing> open;
+        synchronized ($listings) {
+            open = new ArrayList<>($listings.values());
+            $listings.clear();
+        }
+
+        for (Listing listing : open) {
+            listing.close();
+        }
+    }
+
+    private void $evictOverflow() {
+        Iterator<Listing> it = $listings.values().iterator();
+        while ($listings.size() > $maxOpen && it.hasNext()) {
+            Listing listing = it.next();
+            it.remove();
+            listing.close();
+        }
+    }
+
+    private void $startSweeper() {
+        if ($sweeper != null) {
+            return;
+        }
+
+        $sweeper = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "FuseFilesystem-ListSweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, $idleTimeout / 2);
+        $sweeper.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+}
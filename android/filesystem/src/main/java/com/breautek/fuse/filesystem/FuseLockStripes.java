@@ -0,0 +1,197 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read/write locks shared by all paths, picked by the hash of the canonical path.
+ *
+ * Shared holders never contend with each other. An exclusive holder blocks every other holder
+ * of its stripe, which includes unrelated paths that happen to share it, so the stripe count
+ * trades memory for fewer false conflicts. Operations on one file take a single lock, and
+ * operations on two files take both stripes in index order, so stripes cannot deadlock
+ * against each other.
+ */
+public class FuseLockStripes {
+    public static final int DEFAULT_STRIPE_COUNT = 64;
+
+    private final ReentrantReadWriteLock[] $stripes;
+
+    public FuseLockStripes() {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    /**
+     * @param stripeCount Rounded up to a power of 2
+     */
+    public FuseLockStripes(int stripeCount) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        if (stripeCount <= 1) {
+            count = 1;
+        }
+
+        $stripes = new ReentrantReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            $stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public int getStripeCount() {
+        return $stripes.length;
+    }
+
+    /**
+     * Blocks until the file can be read. The returned lock must be unlocked when done.
+     */
+    public Lock lockShared(File file) {
+        Lock lock = $getStripe(file).readLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Blocks until the file can be modified. The returned lock must be unlocked when done.
+     */
+    public Lock lockExclusive(File file) {
+        Lock lock = $getStripe(file).writeLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Blocks until source can be read and destination modified, for operations spanning two files.
+     * If both share a stripe, it is locked exclusively. The returned lock must be unlocked when done.
+     *
+     * @param exclusiveSource If true, source is locked for modification as well, e.g. for a move
+     */
+    public Lock lockPair(File source, boolean exclusiveSource, File destination) {
+        int sourceIndex = $getStripeIndex(source);
+        int destinationIndex = $getStripeIndex(destination);
+        if (sourceIndex == destinationIndex) {
+            Lock lock = $stripes[sourceIndex].writeLock();
+            lock.lock();
+            return lock;
+        }
+
+        Lock sourceLock = exclusiveSource ? $stripes[sourceIndex].writeLock() : $stripes[sourceIndex].readLock();
+        Lock destinationLock = $stripes[destinationIndex].writeLock();
+        Lock lock = sourceIndex < destinationIndex ? new PairLock(sourceLock, destinationLock) : new PairLock(destinationLock, sourceLock);
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Two locks held as one, always acquired first to second and released in reverse.
+     */
+    private static class PairLock implements Lock {
+        private final Lock $first;
+        private final Lock $second;
+
+        PairLock(Lock first, Lock second) {
+            $first = first;
+            $second = second;
+        }
+
+        @Override
+        public void lock() {
+            $first.lock();
+            $second.lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            $first.lockInterruptibly();
+            try {
+                $second.lockInterruptibly();
+            }
+            catch (InterruptedException ex) {
+                $first.unlock();
+                throw ex;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!$first.tryLock()) {
+                return false;
+            }
+
+            if (!$second.tryLock()) {
+                $first.unlock();
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!$first.tryLock(time, unit)) {
+                return false;
+            }
+
+            boolean locked = false;
+            try {
+                locked = $second.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            finally {
+                if (!locked) {
+                    $first.unlock();
+                }
+            }
+
+            return locked;
+        }
+
+        @Override
+        public void unlock() {
+            $second.unlock();
+            $first.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported on a pair of locks");
+        }
+    }
+
+    private ReentrantReadWriteLock $getStripe(File file) {
+        return $stripes[$getStripeIndex(file)];
+    }
+
+    private int $getStripeIndex(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        }
+        catch (IOException ex) {
+            path = file.getAbsolutePath();
+        }
+
+        int hash = path.hashCode();
+        hash ^= hash >>> 16;
+        return hash & ($stripes.length - 1);
+    }
+}
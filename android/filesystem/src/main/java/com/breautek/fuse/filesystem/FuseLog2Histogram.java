@@ -0,0 +1,97 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram with power of two buckets. Bucket 0 counts values of 0 or less,
+ * and bucket i counts values from 2^(i-1) up to 2^i - 1, so 64 buckets cover every long.
+ *
+ * Recording is a single atomic increment, at the cost of each bucket spanning
+ * a factor of two.
+ */
+public class FuseLog2Histogram {
+    public static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray $buckets;
+
+    public FuseLog2Histogram() {
+        $buckets = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    public static int getBucket(long value) {
+        return value <= 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * The largest value counted by the bucket.
+     */
+    public static long getUpperBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public void record(long value) {
+        $buckets.incrementAndGet(getBucket(value));
+    }
+
+    /**
+     * Copies the bucket counts. Counts recorded while copying may or may not be included.
+     *
+     * @param reset If true, the copied counts are removed from the histogram
+     */
+    public long[] snapshot(boolean reset) {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = reset ? $buckets.getAndSet(i, 0) : $buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimates a percentile of the counts of a snapshot, as the upper bound of the
+     * bucket it falls in.
+     *
+     * @param percentile Between 0 and 100
+     * @return The estimate, or 0 if nothing was counted
+     */
+    public static long getPercentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getUpperBound(i);
+            }
+        }
+
+        return getUpperBound(counts.length - 1);
+    }
+}
@@ -0,0 +1,93 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * Controls when reads are served from memory mapped windows
+ * and how those windows are sized and released.
+ */
+public class FuseMappedReadPolicy {
+    public static final long DEFAULT_THRESHOLD = 67108864; // 64mb
+    public static final long DEFAULT_WINDOW_SIZE = 33554432; // 32mb
+
+    private long $threshold;
+    private long $windowSize;
+    private boolean $eagerUnmap;
+
+    public FuseMappedReadPolicy() {
+        $threshold = DEFAULT_THRESHOLD;
+        $windowSize = DEFAULT_WINDOW_SIZE;
+        $eagerUnmap = true;
+    }
+
+    /**
+     * Sets the read length at which FuseReadMode.AUTO switches to mapped windows.
+     */
+    public void setThreshold(long threshold) {
+        $threshold = threshold;
+    }
+
+    public long getThreshold() {
+        return $threshold;
+    }
+
+    /**
+     * Sets the size of each mapped window. The effective window is rounded down
+     * to a multiple of the chunk size, so chunks never straddle two windows,
+     * and is never smaller than one chunk.
+     */
+    public void setWindowSize(long windowSize) {
+        $windowSize = windowSize;
+    }
+
+    public long getWindowSize() {
+        return $windowSize;
+    }
+
+    /**
+     * When enabled, each window is unmapped as soon as the reader slides past it,
+     * rather than when the garbage collector gets to it. This keeps address space
+     * usage flat on 32 bit devices, but means chunk slices must not be retained
+     * beyond IReadCallback.onReadChunk. If the runtime offers no way to unmap,
+     * windows are left to the garbage collector.
+     */
+    public void setEagerUnmap(boolean eagerUnmap) {
+        $eagerUnmap = eagerUnmap;
+    }
+
+    public boolean isEagerUnmap() {
+        return $eagerUnmap;
+    }
+
+    public long getEffectiveWindowSize(int chunkSize) {
+        long windowSize = Math.min($windowSize, Integer.MAX_VALUE);
+        windowSize -= windowSize % chunkSize;
+        return Math.max(windowSize, chunkSize);
+    }
+
+    public boolean shouldMap(FuseReadMode mode, long contentLength) {
+        switch (mode) {
+            case MAPPED:
+                return true;
+            case STREAM:
+                return false;
+            default:
+                return contentLength >= $threshold;
+        }
+    }
+}
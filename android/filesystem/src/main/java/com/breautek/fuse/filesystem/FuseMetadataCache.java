@@ -0,0 +1,294 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of file metadata, keyed by path with the parent
+ * directory canonicalized. Missing files are cached as well, so repeated existence checks
+ * are memory lookups.
+ *
+ * Entries are only invalidated by changes made through FSAPI. Changes made outside
+ * of the plugin are picked up once the entry outlives the time to live, if one is set.
+ * Canonical parents are themselves cached, so a file reached through a linked directory,
+ * e.g. /data/data/pkg and /data/user/0/pkg, shares its entry without resolving links
+ * on every lookup.
+ */
+public class FuseMetadataCache {
+    public static final int DEFAULT_MAX_ENTRIES = 8192;
+    public static final long DEFAULT_TTL = 0; // Never expires
+    public static final int MAX_CANONICAL_PARENTS = 256;
+
+    /**
+     * A snapshot of a path's metadata.
+     */
+    public static class Entry {
+        private final boolean $exists;
+        private final FuseFileType $type;
+        private final long $size;
+        private final long $cachedAt;
+
+        private Entry(boolean exists, FuseFileType type, long size, long cachedAt) {
+            $exists = exists;
+            $type = type;
+            $size = size;
+            $cachedAt = cachedAt;
+        }
+
+        public boolean exists() {
+            return $exists;
+        }
+
+        /**
+         * @return The file type, or null if the file does not exist or is neither a file nor a directory
+         */
+        public FuseFileType getType() {
+            return $type;
+        }
+
+        public long getSize() {
+            return $size;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> $entries;
+    private final LinkedHashMap<String, String> $canonicalParents;
+    private volatile int $maxEntries;
+    private volatile long $ttl;
+    private long $generation;
+    private long $hits;
+    private long $misses;
+
+    public FuseMetadataCache() {
+        $maxEntries = DEFAULT_MAX_ENTRIES;
+        $ttl = DEFAULT_TTL;
+        $entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FuseMetadataCache.Entry> eldest) {
+                return size() > $maxEntries;
+            }
+        };
+        $canonicalParents = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_CANONICAL_PARENTS;
+            }
+        };
+    }
+
+    /**
+     * Sets the number of entries kept. 0 disables caching.
+     */
+    public void setMaxEntries(int maxEntries) {
+        $maxEntries = maxEntries;
+        synchronized ($entries) {
+            Iterator<String> it = $entries.keySet().iterator();
+            while ($entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public int getMaxEntries() {
+        return $maxEntries;
+    }
+
+    /**
+     * Sets how long, in milliseconds, an entry is trusted. 0 or less keeps entries until invalidated.
+     */
+    public void setTTL(long ttl) {
+        $ttl = ttl;
+    }
+
+    public long getTTL() {
+        return $ttl;
+    }
+
+    public long getHitCount() {
+        synchronized ($entries) {
+            return $hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized ($entries) {
+            return $misses;
+        }
+    }
+
+    public int size() {
+        synchronized ($entries) {
+            return $entries.size();
+        }
+    }
+
+    /**
+     * Gets the metadata of the file, reading it from disk in a single call on a miss.
+     */
+    public Entry get(File file) {
+        String key = $getKey(file);
+        long generation;
+        long ttl = $ttl;
+
+        synchronized ($entries) {
+            Entry entry = $entries.get(key);
+            if (entry != null && (ttl <= 0 || System.currentTimeMillis() - entry.$cachedAt < ttl)) {
+                $hits++;
+                return entry;
+            }
+
+            $misses++;
+            generation = $generation;
+        }
+
+        Entry entry;
+        boolean cacheable = true;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(new File(key).toPath(), BasicFileAttributes.class);
+            FuseFileType type = null;
+            if (attributes.isRegularFile()) {
+                type = FuseFileType.FILE;
+            }
+            else if (attributes.isDirectory()) {
+                type = FuseFileType.DIRECTORY;
+            }
+            entry = new Entry(true, type, attributes.size(), System.currentTimeMillis());
+        }
+        catch (NoSuchFileException ex) {
+            entry = new Entry(false, null, 0, System.currentTimeMillis());
+        }
+        catch (IOException ex) {
+            // Same answer File.exists() gives, but the failure may be transient.
+            entry = new Entry(false, null, 0, System.currentTimeMillis());
+            cacheable = false;
+        }
+
+        synchronized ($entries) {
+            // Anything invalidated while reading may have made this entry stale already.
+            if (cacheable && generation == $generation && $maxEntries > 0) {
+                $entries.put(key, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Forgets the metadata of the file.
+     */
+    public void invalidate(File file) {
+        String key = $getKey(file);
+        synchronized ($entries) {
+            $generation++;
+            $entries.remove(key);
+        }
+    }
+
+    /**
+     * Forgets the metadata of the file and of everything below it.
+     */
+    public void invalidateTree(File file) {
+        String key = $getKey(file);
+        String normalized = file.getAbsoluteFile().toPath().normalize().toString();
+        // Entries below are keyed by the directory's canonical path, which may differ
+        // from the key of the directory itself if it is a link.
+        String root = $getCanonicalParent(normalized);
+        synchronized ($entries) {
+            $generation++;
+            Iterator<String> it = $entries.keySet().iterator();
+            while (it.hasNext()) {
+                String path = it.next();
+                if (path.equals(key) || $isWithin(path, root)) {
+                    it.remove();
+                }
+            }
+        }
+
+        // A directory replaced by a link, or the other way around, resolves differently now.
+        synchronized ($canonicalParents) {
+            Iterator<Map.Entry<String, String>> it = $canonicalParents.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, String> entry = it.next();
+                if ($isWithin(entry.getKey(), normalized) || $isWithin(entry.getValue(), root)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized ($entries) {
+            $generation++;
+            $entries.clear();
+        }
+
+        synchronized ($canonicalParents) {
+            $canonicalParents.clear();
+        }
+    }
+
+    private String $getKey(File file) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Path parent = path.getParent();
+        Path name = path.getFileName();
+        if (parent == null || name == null) {
+            return path.toString();
+        }
+
+        return new File($getCanonicalParent(parent.toString()), name.toString()).getPath();
+    }
+
+    private String $getCanonicalParent(String parent) {
+        synchronized ($canonicalParents) {
+            String canonical = $canonicalParents.get(parent);
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+
+        String canonical;
+        try {
+            canonical = new File(parent).getCanonicalPath();
+        }
+        catch (IOException ex) {
+            return parent;
+        }
+
+        synchronized ($canonicalParents) {
+            $canonicalParents.put(parent, canonical);
+        }
+        return canonical;
+    }
+
+    private static boolean $isWithin(String path, String root) {
+        if (!path.startsWith(root)) {
+            return false;
+        }
+        return path.length() == root.length() || root.endsWith(File.separator) || path.charAt(root.length()) == File.separatorChar;
+    }
+}
@@ -0,0 +1,70 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of per endpoint metrics. Handlers look their metrics up once when
+ * attached, so recording never goes through the registry.
+ */
+public class FuseMetrics {
+    private final ConcurrentHashMap<String, FuseEndpointMetrics> $endpoints;
+    private volatile long $since;
+
+    public FuseMetrics() {
+        $endpoints = new ConcurrentHashMap<>();
+        $since = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the metrics of the endpoint, creating them the first time.
+     */
+    public FuseEndpointMetrics getEndpoint(String endpoint) {
+        return $endpoints.computeIfAbsent(endpoint, FuseEndpointMetrics::new);
+    }
+
+    /**
+     * The time, in milliseconds since the epoch, from which the metrics were recorded.
+     * This is when the registry was created, or last reset by a snapshot.
+     */
+    public long getSince() {
+        return $since;
+    }
+
+    /**
+     * Copies the metrics of every endpoint, sorted by endpoint.
+     *
+     * @param reset If true, the copied values are removed, see FuseEndpointMetrics.snapshot
+     */
+    public List<FuseEndpointMetrics.Snapshot> snapshot(boolean reset) {
+        if (reset) {
+            $since = System.currentTimeMillis();
+        }
+
+        List<FuseEndpointMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (FuseEndpointMetrics metrics : $endpoints.values()) {
+            snapshots.add(metrics.snapshot(reset));
+        }
+        Collections.sort(snapshots, (FuseEndpointMetrics.Snapshot a, FuseEndpointMetrics.Snapshot b) -> a.endpoint.compareTo(b.endpoint));
+        return snapshots;
+    }
+}
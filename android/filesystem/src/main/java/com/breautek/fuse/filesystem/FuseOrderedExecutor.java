@@ -0,0 +1,296 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a shared pool while keeping tasks with the same key in submission order.
+ *
+ * Each key with pending work owns a queue that gives the worker back after every task,
+ * so a busy key cannot starve the others. Queues are dropped as soon as they drain.
+ *
+ * Shared tasks, such as reads, run concurrently with the shared tasks next to them in their
+ * key's queue, and every other task runs alone. A task never starts before the tasks
+ * submitted ahead of it that it cannot run alongside, so a write queued behind readers waits
+ * for them, and readers queued behind the write wait for it.
+ *
+ * Transfers, tasks that may block on a client streaming a request body, run on a separate
+ * elastic pool so they cannot tie up the workers every other operation needs. They are
+ * still ordered with the other tasks of their key.
+ */
+public class FuseOrderedExecutor {
+    public static final int DEFAULT_THREAD_COUNT = 4;
+
+    private final ExecutorService $executor;
+    private final ExecutorService $transferExecutor;
+    private final HashMap<String, KeyQueue> $queues;
+
+    public FuseOrderedExecutor() {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    public FuseOrderedExecutor(int threadCount) {
+        this($createExecutor(threadCount), $createTransferExecutor());
+    }
+
+    /**
+     * Runs transfers on the same executor as every other task.
+     */
+    public FuseOrderedExecutor(ExecutorService executor) {
+        this(executor, executor);
+    }
+
+    public FuseOrderedExecutor(ExecutorService executor, ExecutorService transferExecutor) {
+        $executor = executor;
+        $transferExecutor = transferExecutor;
+        $queues = new HashMap<>();
+    }
+
+    /**
+     * Schedules the task after every task previously submitted with the same key.
+     *
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    public void execute(String key, Runnable task) {
+        $execute(key, task, $executor, false);
+    }
+
+    /**
+     * Same as execute, but runs the task on the transfer pool.
+     */
+    public void executeTransfer(String key, Runnable task) {
+        $execute(key, task, $transferExecutor, false);
+    }
+
+    /**
+     * Same as execute, but returns a future of the task's result. The future completes
+     * exceptionally with exactly what the task threw.
+     */
+    public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+        return $submit(key, task, $executor, false);
+    }
+
+    /**
+     * Same as submit, but runs the task on the transfer pool.
+     */
+    public <T> CompletableFuture<T> submitTransfer(String key, Callable<T> task) {
+        return $submit(key, task, $transferExecutor, false);
+    }
+
+    /**
+     * Same as submit, but lets the task run alongside the other shared tasks of the key.
+     */
+    public <T> CompletableFuture<T> submitShared(String key, Callable<T> task) {
+        return $submit(key, task, $executor, true);
+    }
+
+    /**
+     * Same as submitShared, but runs the task on the transfer pool.
+     */
+    public <T> CompletableFuture<T> submitSharedTransfer(String key, Callable<T> task) {
+        return $submit(key, task, $transferExecutor, true);
+    }
+
+    /**
+     * @return The number of keys with pending or running tasks
+     */
+    public int getActiveKeyCount() {
+        synchronized ($queues) {
+            return $queues.size();
+        }
+    }
+
+    /**
+     * Stops accepting tasks. Tasks already submitted still run.
+     */
+    public void shutdown() {
+        $executor.shutdown();
+        $transferExecutor.shutdown();
+    }
+
+    private void $execute(String key, Runnable runnable, ExecutorService executor, boolean shared) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The executor has been shut down");
+        }
+
+        KeyQueue queue;
+        synchronized ($queues) {
+            queue = $queues.get(key);
+            if (queue == null) {
+                queue = new KeyQueue(key);
+                $queues.put(key, queue);
+            }
+            queue.$waiting.add(new Task(runnable, executor, shared));
+        }
+
+        for (Task rejected : $startWaiting(queue)) {
+            $run(queue, rejected);
+        }
+    }
+
+    private <T> CompletableFuture<T> $submit(String key, Callable<T> task, ExecutorService executor, boolean shared) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            $execute(key, () -> {
+                try {
+                    future.complete(task.call());
+                }
+                catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }, executor, shared);
+        }
+        catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    /**
+     * Dispatches every waiting task the queue can start now, and drops the queue once it is idle.
+     *
+     * @return The started tasks the executor rejected because it was shut down with them still
+     *         queued. The caller runs them on its own thread rather than dropping them.
+     */
+    private List<Task> $startWaiting(KeyQueue queue) {
+        List<Task> started = new ArrayList<>();
+        synchronized ($queues) {
+            Task next;
+            while ((next = queue.$waiting.peek()) != null && queue.$canStart(next)) {
+                queue.$waiting.poll();
+                queue.$running++;
+                queue.$runningExclusive = !next.$shared;
+                started.add(next);
+            }
+
+            if (queue.$running == 0) {
+                $queues.remove(queue.$key);
+            }
+        }
+
+        List<Task> rejected = new ArrayList<>();
+        for (Task task : started) {
+            try {
+                task.$executor.execute(() -> $run(queue, task));
+            }
+            catch (RejectedExecutionException ex) {
+                rejected.add(task);
+            }
+        }
+
+        return rejected;
+    }
+
+    private void $run(KeyQueue queue, Task first) {
+        ArrayDeque<Task> tasks = new ArrayDeque<>();
+        tasks.add(first);
+
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.$runnable.run();
+            }
+            finally {
+                synchronized ($queues) {
+                    queue.$running--;
+                    if (!task.$shared) {
+                        queue.$runningExclusive = false;
+                    }
+                }
+                tasks.addAll($startWaiting(queue));
+            }
+        }
+    }
+
+    private static ExecutorService $createExecutor(int threadCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new IOThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A pool that grows with the number of concurrent transfers. A transfer holds at most
+     * one thread per key, and idle threads are let go after 30 seconds.
+     */
+    private static ExecutorService $createTransferExecutor() {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), new IOThreadFactory("FuseFilesystem-Transfer-"));
+    }
+
+    private static class Task {
+        private final Runnable $runnable;
+        private final ExecutorService $executor;
+        private final boolean $shared;
+
+        Task(Runnable runnable, ExecutorService executor, boolean shared) {
+            $runnable = runnable;
+            $executor = executor;
+            $shared = shared;
+        }
+    }
+
+    private static class KeyQueue {
+        private final String $key;
+        private final ArrayDeque<Task> $waiting;
+        private int $running;
+        private boolean $runningExclusive;
+
+        KeyQueue(String key) {
+            $key = key;
+            $waiting = new ArrayDeque<>();
+        }
+
+        private boolean $canStart(Task task) {
+            return $running == 0 || (task.$shared && !$runningExclusive);
+        }
+    }
+
+    private static class IOThreadFactory implements ThreadFactory {
+        private final String $prefix;
+        private final AtomicInteger $count = new AtomicInteger();
+
+        IOThreadFactory() {
+            this("FuseFilesystem-IO-");
+        }
+
+        IOThreadFactory(String prefix) {
+            $prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, $prefix + $count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
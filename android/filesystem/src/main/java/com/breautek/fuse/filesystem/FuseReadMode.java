@@ -0,0 +1,40 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * Strategies for serving file reads.
+ */
+public enum FuseReadMode {
+    /**
+     * Uses memory mapped windows when the read length reaches the
+     * threshold of the FuseMappedReadPolicy, otherwise streams.
+     */
+    AUTO,
+
+    /**
+     * Always reads through positional channel reads into a reusable buffer.
+     */
+    STREAM,
+
+    /**
+     * Always reads through memory mapped windows, falling back
+     * to STREAM if the filesystem refuses the mapping.
+     */
+    MAPPED
+}
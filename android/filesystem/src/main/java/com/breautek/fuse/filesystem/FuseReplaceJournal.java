@@ -0,0 +1,202 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records the replace temp files in flight, so those left behind by a process that died
+ * mid-replace can be deleted on the next start without walking every directory.
+ *
+ * The journal is a small append only file of "+path" and "-path" lines, truncated whenever
+ * no replace is in flight. It is not synced, so a temp created right before a power loss
+ * may be missed, which FileUtils.deleteReplaceTemps can still find.
+ *
+ * Until a journal is opened, temps are tracked in memory only.
+ */
+public class FuseReplaceJournal {
+    private static class DefaultHolder {
+        static final FuseReplaceJournal INSTANCE = new FuseReplaceJournal();
+    }
+
+    private final Set<String> $inFlight;
+    private @Nullable FileOutputStream $journal;
+
+    public FuseReplaceJournal() {
+        $inFlight = new HashSet<>();
+    }
+
+    /**
+     * Gets the shared journal, created on first use.
+     */
+    public static FuseReplaceJournal getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Starts recording into journal, and deletes the temps an earlier process left in flight.
+     *
+     * @return The number of temp files deleted
+     */
+    public int open(File journal) throws IOException {
+        Set<String> orphans = new HashSet<>();
+        try {
+            for (String line : Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("+")) {
+                    orphans.add(line.substring(1));
+                }
+                else if (line.startsWith("-")) {
+                    orphans.remove(line.substring(1));
+                }
+            }
+        }
+        catch (NoSuchFileException ex) {
+            // First start, nothing was in flight.
+        }
+
+        synchronized (this) {
+            orphans.removeAll($inFlight);
+        }
+
+        // Deleted before the journal is rewritten, so they stay listed should this process die as well.
+        int deleted = 0;
+        for (String path : orphans) {
+            File temp = new File(path);
+            if (FileUtils.isReplaceTemp(temp.toPath()) && temp.delete()) {
+                deleted++;
+            }
+        }
+
+        synchronized (this) {
+            $close();
+            // Appending, as the journal is truncated in place while open.
+            $journal = new FileOutputStream(journal, true);
+            $journal.getChannel().truncate(0);
+            for (String path : $inFlight) {
+                $append('+', path);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Stops recording. Temps still in flight are tracked in memory only.
+     */
+    public synchronized void close() {
+        $close();
+    }
+
+    /**
+     * Records, then creates, an empty replace temp next to target. See FileUtils.createReplaceTemp.
+     */
+    public File createTemp(File target) throws IOException {
+        File absolute = target.getAbsoluteFile();
+        File temp = new File(absolute.getParentFile(), "." + absolute.getName() + "." + UUID.randomUUID() + FileUtils.REPLACE_TEMP_SUFFIX);
+        String path = temp.getPath();
+
+        synchronized (this) {
+            $inFlight.add(path);
+            $append('+', path);
+        }
+
+        try {
+            Files.createFile(temp.toPath());
+        }
+        catch (IOException ex) {
+            release(temp);
+            throw ex;
+        }
+
+        return temp;
+    }
+
+    /**
+     * Records that the temp was renamed over its target or deleted.
+     */
+    public synchronized void release(File temp) {
+        String path = temp.getPath();
+        if ($inFlight.remove(path)) {
+            $append('-', path);
+            $compact();
+        }
+    }
+
+    /**
+     * @return The temps created and not yet released
+     */
+    public synchronized List<File> getInFlight() {
+        List<File> temps = new ArrayList<>();
+        for (String path : $inFlight) {
+            temps.add(new File(path));
+        }
+        return temps;
+    }
+
+    private void $append(char operation, String path) {
+        if ($journal == null) {
+            return;
+        }
+
+        try {
+            $journal.write((operation + path + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException ex) {
+            // Without a journal, a temp left behind is only found by FileUtils.deleteReplaceTemps.
+            $close();
+        }
+    }
+
+    private void $compact() {
+        if ($journal == null || !$inFlight.isEmpty()) {
+            return;
+        }
+
+        try {
+            $journal.getChannel().truncate(0);
+        }
+        catch (IOException ex) {
+            // Only costs space, the lines still balance out.
+        }
+    }
+
+    private void $close() {
+        if ($journal == null) {
+            return;
+        }
+
+        try {
+            $journal.close();
+        }
+        catch (IOException ex) {
+            // Nothing useful can be done, the journal is no longer written to.
+        }
+        $journal = null;
+    }
+}
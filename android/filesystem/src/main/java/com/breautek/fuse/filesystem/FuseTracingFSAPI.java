@@ -0,0 +1,529 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.breautek.fuse.FuseError;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorates an IFSAPI, reporting the start and end of every operation, and the chunks
+ * of every read, to an IFuseTraceListener. See FuseFSAPIFactory.setTraceListener.
+ *
+ * Tracing does not allocate per operation. Reads are traced through a callback wrapper
+ * reused by each thread.
+ */
+public class FuseTracingFSAPI implements IFSAPI {
+    private final IFSAPI $fsapi;
+    private final IFuseTraceListener $listener;
+    private final ThreadLocal<ChunkTracer> $chunkTracers;
+
+    public FuseTracingFSAPI(IFSAPI fsapi, IFuseTraceListener listener) {
+        $fsapi = fsapi;
+        $listener = listener;
+        $chunkTracers = new ThreadLocal<>();
+    }
+
+    public IFSAPI getFSAPI() {
+        return $fsapi;
+    }
+
+    public IFuseTraceListener getListener() {
+        return $listener;
+    }
+
+    @Override
+    public long append(Uri uri, InputStream io, long contentLength, int chunkSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.APPEND, path, -1, contentLength);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.append(uri, io, contentLength, chunkSize);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            $end(FuseFileOperation.APPEND, path, -1, bytes, start, failed);
+        }
+    }
+
+    /**
+     * Traced as an APPEND covering the buffering only, not the write of the buffered bytes.
+     */
+    @Override
+    public CompletableFuture<Long> appendBuffered(Uri uri, InputStream io, long contentLength) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.APPEND, path, -1, contentLength);
+        boolean failed = true;
+        try {
+            CompletableFuture<Long> result = $fsapi.appendBuffered(uri, io, contentLength);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.APPEND, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public void flush(Uri uri) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.FLUSH, path, -1, -1);
+        boolean failed = true;
+        try {
+            $fsapi.flush(uri);
+            failed = false;
+        }
+        finally {
+            $end(FuseFileOperation.FLUSH, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public CompletableFuture<FuseDurability> sync(Uri uri, FuseDurability durability) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.SYNC, path, -1, -1);
+        boolean failed = true;
+        try {
+            CompletableFuture<FuseDurability> result = $fsapi.sync(uri, durability);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.SYNC, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public FuseDeleteResult delete(Uri uri, boolean recursive) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.DELETE, path, -1, -1);
+        boolean failed = true;
+        try {
+            FuseDeleteResult result = $fsapi.delete(uri, recursive);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.DELETE, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public FuseFileType getType(Uri uri) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.TYPE, path, -1, -1);
+        boolean failed = true;
+        try {
+            FuseFileType result = $fsapi.getType(uri);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.TYPE, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public boolean exists(Uri uri) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.EXISTS, path, -1, -1);
+        boolean failed = true;
+        try {
+            boolean result = $fsapi.exists(uri);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.EXISTS, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public long getSize(Uri uri) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.SIZE, path, -1, -1);
+        boolean failed = true;
+        try {
+            long result = $fsapi.getSize(uri);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.SIZE, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public boolean mkdir(Uri uri, boolean recursive) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.MKDIR, path, -1, -1);
+        boolean failed = true;
+        try {
+            boolean result = $fsapi.mkdir(uri, recursive);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.MKDIR, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public FuseFileStat stat(Uri uri) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.STAT, path, -1, -1);
+        boolean failed = true;
+        try {
+            FuseFileStat result = $fsapi.stat(uri);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.STAT, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public @Nullable String list(Uri uri, String filter, @Nullable String cursor, long offset, int limit, boolean withStats, IListCallback callback) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.LIST, path, -1, -1);
+        boolean failed = true;
+        try {
+            String result = $fsapi.list(uri, filter, cursor, offset, limit, withStats, callback);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.LIST, path, -1, -1, start, failed);
+        }
+    }
+
+    @Override
+    public FuseCopyResult copy(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError {
+        String path = source.getPath();
+        long start = $start(FuseFileOperation.COPY, path, -1, -1);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            FuseCopyResult result = $fsapi.copy(source, destination, overwrite);
+            bytes = result.getBytesCopied();
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.COPY, path, -1, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public FuseCopyResult move(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError {
+        String path = source.getPath();
+        long start = $start(FuseFileOperation.MOVE, path, -1, -1);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            FuseCopyResult result = $fsapi.move(source, destination, overwrite);
+            bytes = result.getBytesCopied();
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.MOVE, path, -1, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public long read(Uri uri, long length, long offset, int chunkSize, IReadCallback callback) throws FuseError {
+        return read(uri, length, offset, chunkSize, FuseReadMode.AUTO, callback);
+    }
+
+    @Override
+    public long read(Uri uri, long length, long offset, int chunkSize, FuseReadMode mode, IReadCallback callback) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.READ, path, offset, length);
+        ChunkTracer tracer = $acquireChunkTracer(FuseFileOperation.READ, path, offset, start, callback, null);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.read(uri, length, offset, chunkSize, mode, tracer);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            tracer.release();
+            $end(FuseFileOperation.READ, path, offset, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public long readv(Uri uri, List<FuseFileRange> ranges, boolean coalesce, int chunkSize, IReadvCallback callback) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.READV, path, -1, -1);
+        ChunkTracer tracer = $acquireChunkTracer(FuseFileOperation.READV, path, -1, start, callback, callback);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.readv(uri, ranges, coalesce, chunkSize, tracer);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            tracer.release();
+            $end(FuseFileOperation.READV, path, -1, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public byte[] hash(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int chunkSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.HASH, path, offset, length);
+        boolean failed = true;
+        try {
+            byte[] result = $fsapi.hash(uri, algorithm, offset, length, chunkSize);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.HASH, path, offset, -1, start, failed);
+        }
+    }
+
+    @Override
+    public byte[] hashTree(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int blockSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.HASH, path, offset, length);
+        boolean failed = true;
+        try {
+            byte[] result = $fsapi.hashTree(uri, algorithm, offset, length, blockSize);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.HASH, path, offset, -1, start, failed);
+        }
+    }
+
+    @Override
+    public long write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength) throws FuseError {
+        return write(uri, offset, chunkSize, io, contentLength, false);
+    }
+
+    @Override
+    public long write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength, boolean keepSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.WRITE, path, offset, contentLength);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.write(uri, offset, chunkSize, io, contentLength, keepSize);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            $end(FuseFileOperation.WRITE, path, offset, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public boolean allocate(Uri uri, long length) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.ALLOCATE, path, 0, length);
+        boolean failed = true;
+        try {
+            boolean result = $fsapi.allocate(uri, length);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.ALLOCATE, path, 0, -1, start, failed);
+        }
+    }
+
+    @Override
+    public long[] writev(Uri uri, List<FuseFileRange> segments, InputStream io, long contentLength, int chunkSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.WRITEV, path, -1, -1);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            long[] result = $fsapi.writev(uri, segments, io, contentLength, chunkSize);
+            bytes = $sum(result);
+            failed = false;
+            return result;
+        }
+        finally {
+            $end(FuseFileOperation.WRITEV, path, -1, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public long truncate(Uri uri, long contentLength, InputStream io, int chunkSize) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.TRUNCATE, path, 0, contentLength);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.truncate(uri, contentLength, io, chunkSize);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            $end(FuseFileOperation.TRUNCATE, path, 0, bytes, start, failed);
+        }
+    }
+
+    @Override
+    public long replace(Uri uri, long contentLength, InputStream io, int chunkSize, boolean sync) throws FuseError {
+        String path = uri.getPath();
+        long start = $start(FuseFileOperation.REPLACE, path, 0, contentLength);
+        long bytes = -1;
+        boolean failed = true;
+        try {
+            bytes = $fsapi.replace(uri, contentLength, io, chunkSize, sync);
+            failed = false;
+            return bytes;
+        }
+        finally {
+            $end(FuseFileOperation.REPLACE, path, 0, bytes, start, failed);
+        }
+    }
+
+    private long $start(FuseFileOperation operation, String path, long offset, long length) {
+        long start = System.nanoTime();
+        $listener.onOperationStart(operation, path, offset, length, start);
+        return start;
+    }
+
+    private void $end(FuseFileOperation operation, String path, long offset, long bytes, long start, boolean failed) {
+        $listener.onOperationEnd(operation, path, offset, bytes, start, System.nanoTime() - start, failed);
+    }
+
+    private static long $sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private ChunkTracer $acquireChunkTracer(FuseFileOperation operation, String path, long offset, long start, IReadCallback callback, @Nullable IReadvCallback readvCallback) {
+        ChunkTracer tracer = $chunkTracers.get();
+        if (tracer == null) {
+            tracer = new ChunkTracer($listener);
+            $chunkTracers.set(tracer);
+        }
+        else if (tracer.isInUse()) {
+            // A callback reading through this FSAPI from within a read
+            tracer = new ChunkTracer($listener);
+        }
+
+        tracer.acquire(operation, path, offset, start, callback, readvCallback);
+        return tracer;
+    }
+
+    /**
+     * Times the chunks of a read as they pass through to the caller's callback.
+     * A chunk is timed from when the previous chunk was handed back, so the time
+     * the caller spends consuming a chunk is not counted against the next.
+     */
+    private static class ChunkTracer implements IReadvCallback {
+        private final IFuseTraceListener $listener;
+        private FuseFileOperation $operation;
+        private String $path;
+        private long $offset;
+        private long $lastNanos;
+        private @Nullable IReadCallback $callback;
+        private @Nullable IReadvCallback $readvCallback;
+
+        ChunkTracer(IFuseTraceListener listener) {
+            $listener = listener;
+        }
+
+        boolean isInUse() {
+            return $callback != null;
+        }
+
+        void acquire(FuseFileOperation operation, String path, long offset, long start, IReadCallback callback, @Nullable IReadvCallback readvCallback) {
+            $operation = operation;
+            $path = path;
+            $offset = offset;
+            $lastNanos = start;
+            $callback = callback;
+            $readvCallback = readvCallback;
+        }
+
+        void release() {
+            $path = null;
+            $callback = null;
+            $readvCallback = null;
+        }
+
+        @Override
+        public void onReadvRanges(List<FuseFileRange> ranges) {
+            if ($readvCallback != null) {
+                $readvCallback.onReadvRanges(ranges);
+            }
+        }
+
+        @Override
+        public void onReadvRangeStart(FuseFileRange range) {
+            $offset = range.getOffset();
+            if ($readvCallback != null) {
+                $readvCallback.onReadvRangeStart(range);
+            }
+        }
+
+        @Override
+        public void onReadStart(long contentLength) {
+            $callback.onReadStart(contentLength);
+        }
+
+        @Override
+        public void onReadChunk(int bufferSize, byte[] buffer) {
+            $traceChunk(bufferSize);
+            $callback.onReadChunk(bufferSize, buffer);
+            $lastNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onReadChunk(ByteBuffer chunk) {
+            $traceChunk(chunk.remaining());
+            $callback.onReadChunk(chunk);
+            $lastNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onReadClose() {
+            $callback.onReadClose();
+        }
+
+        private void $traceChunk(int size) {
+            $listener.onChunk($operation, $path, $offset, size, $lastNanos, System.nanoTime() - $lastNanos);
+            $offset += size;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes directory trees on a fork/join pool of bounded parallelism.
+ *
+ * Every directory is its own task and completes once all of its subdirectories have,
+ * so the depth of the tree never reaches the call stack. Symbolic links are removed,
+ * never followed. A directory whose subtree failed to delete is left in place rather
+ * than reported as another failure.
+ */
+public class FuseTreeDeleter {
+    public static final int DEFAULT_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    public static final int MAX_REPORTED_FAILURES = 100;
+
+    private static class DefaultHolder {
+        static final FuseTreeDeleter INSTANCE = new FuseTreeDeleter();
+    }
+
+    private final ForkJoinPool $pool;
+
+    public FuseTreeDeleter() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public FuseTreeDeleter(int parallelism) {
+        $pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Gets the shared deleter, created on first use.
+     */
+    public static FuseTreeDeleter getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public int getParallelism() {
+        return $pool.getParallelism();
+    }
+
+    /**
+     * Deletes the file, or the directory and everything below it.
+     * Blocks until the whole tree has been processed.
+     */
+    public FuseDeleteResult delete(File root) {
+        return delete(root, true);
+    }
+
+    /**
+     * Deletes the file or directory. Unless recursive, a directory must be empty.
+     */
+    public FuseDeleteResult delete(File root, boolean recursive) {
+        Path path = root.toPath();
+        State state = new State();
+
+        boolean isDirectory;
+        try {
+            isDirectory = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+        }
+        catch (NoSuchFileException ex) {
+            return state.toResult(false);
+        }
+        catch (IOException ex) {
+            state.fail(path, ex);
+            return state.toResult(false);
+        }
+
+        boolean didDelete;
+        if (isDirectory && recursive) {
+            DeleteTask task = new DeleteTask(null, path, state);
+            $pool.invoke(task);
+            didDelete = !task.$failed;
+        }
+        else {
+            didDelete = state.remove(path, isDirectory);
+        }
+
+        return state.toResult(didDelete);
+    }
+
+    private static class State {
+        private final LongAdder $files = new LongAdder();
+        private final LongAdder $directories = new LongAdder();
+        private final LongAdder $failureCount = new LongAdder();
+        private final ConcurrentLinkedQueue<FuseDeleteResult.Failure> $failures = new ConcurrentLinkedQueue<>();
+
+        public boolean remove(Path path, boolean isDirectory) {
+            try {
+                Files.delete(path);
+            }
+            catch (NoSuchFileException ex) {
+                // Already gone, which is what was asked for.
+                return true;
+            }
+            catch (IOException ex) {
+                fail(path, ex);
+                return false;
+            }
+
+            if (isDirectory) {
+                $directories.increment();
+            }
+            else {
+                $files.increment();
+            }
+
+            return true;
+        }
+
+        public void fail(Path path, IOException error) {
+            $failureCount.increment();
+            // The size check is racy, so a few more than the maximum may be kept. That is fine.
+            if ($failures.size() < MAX_REPORTED_FAILURES) {
+                $failures.add(new FuseDeleteResult.Failure(path, error));
+            }
+        }
+
+        public FuseDeleteResult toResult(boolean didDelete) {
+            return new FuseDeleteResult(didDelete, $files.sum(), $directories.sum(), $failureCount.sum(), new ArrayList<>($failures));
+        }
+    }
+
+    private static class DeleteTask extends CountedCompleter<Void> {
+        private final Path $dir;
+        private final State $state;
+        private volatile boolean $failed;
+
+        DeleteTask(DeleteTask parent, Path dir, State state) {
+            super(parent);
+            $dir = dir;
+            $state = state;
+        }
+
+        @Override
+        public void compute() {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream($dir)) {
+                for (Path child : stream) {
+                    boolean isDirectory;
+                    try {
+                        isDirectory = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory();
+                    }
+                    catch (NoSuchFileException ex) {
+                        continue;
+                    }
+                    catch (IOException ex) {
+                        $state.fail(child, ex);
+                        $failed = true;
+                        continue;
+                    }
+
+                    if (isDirectory) {
+                        addToPendingCount(1);
+                        new DeleteTask(this, child, $state).fork();
+                    }
+                    else if (!$state.remove(child, false)) {
+                        $failed = true;
+                    }
+                }
+            }
+            catch (IOException ex) {
+                $state.fail($dir, ex);
+                $failed = true;
+            }
+            catch (DirectoryIteratorException ex) {
+                $state.fail($dir, ex.getCause());
+                $failed = true;
+            }
+
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (!$failed && !$state.remove($dir, true)) {
+                $failed = true;
+            }
+
+            if ($failed && getCompleter() != null) {
+                ((DeleteTask) getCompleter()).$failed = true;
+            }
+        }
+    }
+}
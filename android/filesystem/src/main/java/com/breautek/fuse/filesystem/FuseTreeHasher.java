@@ -0,0 +1,153 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Hashes large files on all cores by splitting them into fixed size blocks, hashing the
+ * blocks in parallel, then hashing the concatenation of the block digests:
+ *
+ *     root = H(H(block 0) || H(block 1) || ... || H(block n))
+ *
+ * The root differs from the plain digest of the same content, and only matches a tree
+ * digest computed with the same algorithm and block size. Content that fits in a single
+ * block still goes through the root hash.
+ *
+ * Blocks are read through buffers leased from a FuseBufferPool, the caller's if given.
+ */
+public class FuseTreeHasher {
+    public static final int DEFAULT_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024; // 8mb
+    public static final int READ_BUFFER_SIZE = 256 * 1024; // 256kb
+
+    private static class DefaultHolder {
+        static final FuseTreeHasher INSTANCE = new FuseTreeHasher();
+    }
+
+    private final ForkJoinPool $pool;
+    private final FuseBufferPool $bufferPool;
+
+    public FuseTreeHasher() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public FuseTreeHasher(int parallelism) {
+        this(parallelism, new FuseBufferPool());
+    }
+
+    /**
+     * @param bufferPool The pool read buffers are leased from when hash is not given one
+     */
+    public FuseTreeHasher(int parallelism, FuseBufferPool bufferPool) {
+        $pool = new ForkJoinPool(parallelism);
+        $bufferPool = bufferPool;
+    }
+
+    /**
+     * Gets the shared hasher, created on first use.
+     */
+    public static FuseTreeHasher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public int getParallelism() {
+        return $pool.getParallelism();
+    }
+
+    /**
+     * Hashes length bytes of the channel from offset, blocking until done.
+     * The channel is read with positional reads only, so it may be shared.
+     * Content the file no longer has, if it shrinks while hashing, is left out.
+     */
+    public byte[] hash(FileChannel channel, FuseHashAlgorithm algorithm, long offset, long length, int blockSize) throws IOException {
+        return hash(channel, algorithm, offset, length, blockSize, $bufferPool);
+    }
+
+    /**
+     * Same as hash, leasing the read buffers from bufferPool.
+     */
+    public byte[] hash(FileChannel channel, FuseHashAlgorithm algorithm, long offset, long length, int blockSize, FuseBufferPool bufferPool) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+
+        List<Callable<byte[]>> blocks = new ArrayList<>();
+        for (long start = offset; start < offset + length; start += blockSize) {
+            long blockStart = start;
+            long blockLength = Math.min(blockSize, offset + length - start);
+            blocks.add(() -> $hashBlock(channel, algorithm, blockStart, blockLength, bufferPool));
+        }
+
+        MessageDigest root = algorithm.createDigest();
+        for (Future<byte[]> block : $pool.invokeAll(blocks)) {
+            try {
+                root.update(block.get());
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while hashing", ex);
+            }
+            catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+        }
+
+        return root.digest();
+    }
+
+    private byte[] $hashBlock(FileChannel channel, FuseHashAlgorithm algorithm, long start, long length, FuseBufferPool bufferPool) throws IOException {
+        MessageDigest digest = algorithm.createDigest();
+        int size = (int) Math.min(READ_BUFFER_SIZE, length);
+        byte[] array = bufferPool.acquire(size);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array, 0, size);
+
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(size, end - position));
+                int bytesRead = channel.read(buffer, position);
+                if (bytesRead == -1) {
+                    break;
+                }
+
+                digest.update(array, 0, bytesRead);
+                position += bytesRead;
+            }
+        }
+        finally {
+            bufferPool.release(array);
+        }
+
+        return digest.digest();
+    }
+}
@@ -0,0 +1,106 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+import android.net.Uri;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous counterpart of IFSAPI. Operations run on an I/O executor and
+ * complete their future with the result, or exceptionally with the FuseError
+ * the synchronous call would have thrown.
+ *
+ * Operations on the same path run in submission order, except that consecutive
+ * shared operations, the ones that only read, may run in parallel with each other.
+ * Operations on different paths may run in parallel, including a path and its
+ * parent directory.
+ * Callbacks and streams are used from the executor thread. Operations that
+ * read a stream are transfers, and run on a separate pool from the rest.
+ */
+public interface IAsyncFSAPI {
+    /**
+     * Runs any task in order with the other operations on the path.
+     */
+    <T> CompletableFuture<T> submit(Uri uri, Callable<T> task);
+
+    /**
+     * Same as submit, for tasks that read a stream which may block on the client,
+     * such as a request body.
+     */
+    <T> CompletableFuture<T> submitTransfer(Uri uri, Callable<T> task);
+
+    /**
+     * Same as submit, for tasks that only read the path and may run alongside other readers.
+     */
+    <T> CompletableFuture<T> submitShared(Uri uri, Callable<T> task);
+
+    /**
+     * Same as submitShared, for reads that stream a response and may block on the client.
+     */
+    <T> CompletableFuture<T> submitSharedTransfer(Uri uri, Callable<T> task);
+
+    CompletableFuture<Long> append(Uri uri, InputStream io, long contentLength, int chunkSize);
+
+    /**
+     * Completes once the appended bytes are written, not when they are buffered.
+     */
+    CompletableFuture<Long> appendBuffered(Uri uri, InputStream io, long contentLength);
+
+    CompletableFuture<Void> flush(Uri uri);
+
+    CompletableFuture<FuseDurability> sync(Uri uri, FuseDurability durability);
+
+    CompletableFuture<FuseDeleteResult> delete(Uri uri, boolean recursive);
+
+    CompletableFuture<FuseFileType> getType(Uri uri);
+
+    CompletableFuture<Boolean> exists(Uri uri);
+
+    CompletableFuture<Long> getSize(Uri uri);
+
+    CompletableFuture<Boolean> mkdir(Uri uri, boolean recursive);
+
+    CompletableFuture<FuseFileStat> stat(Uri uri);
+
+    /**
+     * Completes with the cursor of the next page, or null once no entries remain.
+     */
+    CompletableFuture<String> list(Uri uri, String filter, String cursor, long offset, int limit, boolean withStats, IFSAPI.IListCallback callback);
+
+    CompletableFuture<FuseCopyResult> copy(Uri source, Uri destination, FuseOverwritePolicy overwrite);
+
+    CompletableFuture<FuseCopyResult> move(Uri source, Uri destination, FuseOverwritePolicy overwrite);
+
+    CompletableFuture<Long> read(Uri uri, long length, long offset, int chunkSize, FuseReadMode mode, IFSAPI.IReadCallback callback);
+
+    CompletableFuture<Long> readv(Uri uri, List<FuseFileRange> ranges, boolean coalesce, int chunkSize, IFSAPI.IReadvCallback callback);
+
+    CompletableFuture<Long> write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength);
+
+    CompletableFuture<Boolean> allocate(Uri uri, long length);
+
+    CompletableFuture<long[]> writev(Uri uri, List<FuseFileRange> segments, InputStream io, long contentLength, int chunkSize);
+
+    CompletableFuture<Long> truncate(Uri uri, long contentLength, InputStream io, int chunkSize);
+
+    CompletableFuture<Long> replace(Uri uri, long contentLength, InputStream io, int chunkSize, boolean sync);
+}
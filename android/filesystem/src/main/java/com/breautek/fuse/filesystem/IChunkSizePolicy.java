@@ -0,0 +1,41 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * Decides the chunk size used for each transfer.
+ */
+public interface IChunkSizePolicy {
+    /**
+     * Gets the chunk size for a transfer.
+     *
+     * @param operation The operation about to be performed
+     * @param contentLength The number of bytes to transfer, or -1 if not known upfront
+     */
+    int getChunkSize(FuseFileOperation operation, long contentLength);
+
+    /**
+     * Called once a transfer has finished, so the policy can learn from it.
+     *
+     * @param operation The operation that was performed
+     * @param chunkSize The chunk size that was used
+     * @param bytes The number of bytes transferred
+     * @param durationNanos How long the transfer took
+     */
+    void onTransferComplete(FuseFileOperation operation, int chunkSize, long bytes, long durationNanos);
+}
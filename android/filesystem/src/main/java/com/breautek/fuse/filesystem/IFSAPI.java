@@ -2,14 +2,47 @@ package com.breautek.fuse.filesystem;
 
 import android.net.Uri;
 
+import androidx.annotation.Nullable;
+
 import com.breautek.fuse.FuseError;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IFSAPI {
+    /**
+     * A contentLength of -1 appends until io ends, as do write, truncate and replace.
+     */
     long append(Uri uri, InputStream io, long contentLength, int chunkSize) throws FuseError;
 
-    boolean delete(Uri uri, boolean recursive) throws FuseError;
+    /**
+     * Buffers the appended bytes in memory, to be written in a batch with other appends to the file.
+     * Any other operation on the file writes the buffered appends first.
+     *
+     * @return A future completing with the number of bytes appended once they are written to the file
+     */
+    CompletableFuture<Long> appendBuffered(Uri uri, InputStream io, long contentLength) throws FuseError;
+
+    /**
+     * Writes the buffered appends of the file, blocking until they are written.
+     */
+    void flush(Uri uri) throws FuseError;
+
+    /**
+     * Makes the writes made to the file so far durable, as far as the durability asks.
+     * OPERATION syncs before returning, GROUP_COMMIT returns a future completing once
+     * a shared sync covers the writes.
+     *
+     * @return A future completing with the durability achieved
+     */
+    CompletableFuture<FuseDurability> sync(Uri uri, FuseDurability durability) throws FuseError;
+
+    /**
+     * Deletes a file or directory. A failed delete is reported through the result, not thrown.
+     */
+    FuseDeleteResult delete(Uri uri, boolean recursive) throws FuseError;
 
     FuseFileType getType(Uri uri) throws FuseError;
 
@@ -19,13 +52,154 @@ public interface IFSAPI {
 
     boolean mkdir(Uri uri, boolean recursive) throws FuseError;
 
+    /**
+     * Reads the type, size, times and permissions of a file with a single call.
+     */
+    FuseFileStat stat(Uri uri) throws FuseError;
+
+    interface IListCallback {
+        /**
+         * Called for each entry as it is enumerated.
+         *
+         * @param stat The entry's metadata if stats were requested, null otherwise
+         *             or if the entry could not be read
+         */
+        void onEntry(String name, FuseFileStat stat);
+    }
+
+    /**
+     * Enumerates a directory, one entry at a time, without holding the listing in memory.
+     * A listing with entries left after limit is kept open, and the returned cursor resumes
+     * it where it stopped, so paging through a directory enumerates it once. See FuseListCursors.
+     *
+     * @param filter A glob matched against entry names, or null to list everything. The filter
+     *               of the listing is kept when resuming, and a different one is an error.
+     * @param cursor The cursor returned by the previous page, or null to start a listing
+     * @param offset The number of matching entries to skip when starting a listing
+     * @param limit The maximum number of entries to deliver, or -1 for no limit
+     * @param withStats If true, the type, size and times of each entry are read as well
+     * @return The cursor of the next page, or null if no entries remain
+     */
+    @Nullable String list(Uri uri, String filter, @Nullable String cursor, long offset, int limit, boolean withStats, IListCallback callback) throws FuseError;
+
+    /**
+     * Copies a file with FileChannel.transferTo. The copy is written next to the destination
+     * and renamed over it once complete, so a partial copy is never visible.
+     */
+    FuseCopyResult copy(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError;
+
+    /**
+     * Moves a file or directory with an atomic rename. Across filesystems, a file is copied
+     * then deleted, and a directory cannot be moved.
+     */
+    FuseCopyResult move(Uri source, Uri destination, FuseOverwritePolicy overwrite) throws FuseError;
+
     interface IReadCallback {
+        /**
+         * @param contentLength The number of bytes that will be delivered. Callbacks that
+         *                      transform the content report the length of what they deliver,
+         *                      see FuseEncodingReadCallback.
+         */
         void onReadStart(long contentLength);
         void onReadChunk(int bufferSize, byte[] buffer);
+
+        /**
+         * Receives a chunk as a slice of the reader's buffer, positioned over the bytes read.
+         * The slice is only valid for the duration of the call, as the buffer is reused for
+         * the next chunk.
+         *
+         * The default implementation hands the backing array to onReadChunk(int, byte[])
+         * without copying when the slice spans all of it, and copies otherwise.
+         */
+        default void onReadChunk(ByteBuffer chunk) {
+            int size = chunk.remaining();
+            if (chunk.hasArray() && chunk.arrayOffset() == 0 && chunk.position() == 0 && chunk.array().length == size) {
+                onReadChunk(size, chunk.array());
+                return;
+            }
+
+            byte[] buffer = new byte[size];
+            chunk.get(buffer);
+            onReadChunk(size, buffer);
+        }
+
         void onReadClose();
     }
 
+    interface IReadvCallback extends IReadCallback {
+        /**
+         * Called before onReadStart with the ranges that will be served, in the order
+         * they will be served, with their lengths clamped to the end of the file.
+         */
+        void onReadvRanges(List<FuseFileRange> ranges);
+
+        /**
+         * Called before the chunks of each range are delivered.
+         */
+        void onReadvRangeStart(FuseFileRange range);
+    }
+
     long read(Uri uri, long length, long offset, int chunkSize, IReadCallback callback) throws FuseError;
+    long read(Uri uri, long length, long offset, int chunkSize, FuseReadMode mode, IReadCallback callback) throws FuseError;
+
+    /**
+     * Reads several ranges of the same file with a single open.
+     * A range length of -1 reads to the end of the file.
+     *
+     * @param coalesce If true, ranges are served sorted by offset, with overlapping
+     *                 and adjacent ranges merged into one
+     * @return The total number of bytes read
+     */
+    long readv(Uri uri, List<FuseFileRange> ranges, boolean coalesce, int chunkSize, IReadvCallback callback) throws FuseError;
+
+    /**
+     * Digests length bytes of the file from offset, streamed through the read path.
+     * A length of -1 hashes to the end of the file.
+     */
+    byte[] hash(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int chunkSize) throws FuseError;
+
+    /**
+     * Like hash, but hashes blocks of blockSize bytes in parallel and returns the hash of
+     * their digests. See FuseTreeHasher for how the root digest is formed.
+     */
+    byte[] hashTree(Uri uri, FuseHashAlgorithm algorithm, long offset, long length, int blockSize) throws FuseError;
+
     long write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength) throws FuseError;
+
+    /**
+     * @param keepSize If true, the write fails instead of growing the file, e.g. to keep
+     *                 writes within the size reserved by allocate. Needs a known contentLength.
+     */
+    long write(Uri uri, long offset, int chunkSize, InputStream io, long contentLength, boolean keepSize) throws FuseError;
+
+    /**
+     * Reserves storage for the first length bytes of the file, growing it to length if it is
+     * smaller, so later writes at any offset within it neither fragment the file nor fail for
+     * lack of space. Never shrinks the file.
+     *
+     * @return true if the storage was reserved, false if the filesystem cannot reserve storage
+     *         and the file was only sized, leaving the new range sparse
+     */
+    boolean allocate(Uri uri, long length) throws FuseError;
+
+    /**
+     * Writes several segments to the same file with a single open.
+     * The content of each segment is read from io in order.
+     *
+     * @param contentLength The length of the content in io, which must equal the sum of the segment lengths
+     * @return The number of bytes written for each segment
+     * @throws FuseError if a segment is invalid or the lengths do not add up to contentLength, before anything is written
+     */
+    long[] writev(Uri uri, List<FuseFileRange> segments, InputStream io, long contentLength, int chunkSize) throws FuseError;
+
     long truncate(Uri uri, long contentLength, InputStream io, int chunkSize) throws FuseError;
+
+    /**
+     * Replaces the content of the file atomically. The content is written to a temp file
+     * next to it, which is then renamed over the file, so readers see either the old or
+     * the new content in full. A failed replace leaves the file untouched.
+     *
+     * @param sync If true, the content and the rename are synced to storage before returning
+     */
+    long replace(Uri uri, long contentLength, InputStream io, int chunkSize, boolean sync) throws FuseError;
 }
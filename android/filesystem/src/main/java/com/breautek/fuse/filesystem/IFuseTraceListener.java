@@ -0,0 +1,46 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem;
+
+/**
+ * Observes the operations of a FuseTracingFSAPI. Events are delivered on the thread running
+ * the operation, in the middle of it, so listeners should return quickly and avoid allocating.
+ *
+ * Times are System.nanoTime values.
+ */
+public interface IFuseTraceListener {
+    /**
+     * @param offset The offset the operation starts at, or -1 if it has none
+     * @param length The number of bytes the operation asks for, or -1 if not known upfront
+     */
+    void onOperationStart(FuseFileOperation operation, String path, long offset, long length, long startNanos);
+
+    /**
+     * @param bytes The number of bytes transferred, or -1 for operations that do not transfer content
+     * @param failed If true, the operation threw
+     */
+    void onOperationEnd(FuseFileOperation operation, String path, long offset, long bytes, long startNanos, long durationNanos, boolean failed);
+
+    /**
+     * Called for each chunk delivered by a read, timed from the previous chunk, or from the
+     * start of the read for the first one.
+     *
+     * @param offset The offset in the file of the chunk's first byte
+     */
+    void onChunk(FuseFileOperation operation, String path, long offset, int bytes, long startNanos, long durationNanos);
+}
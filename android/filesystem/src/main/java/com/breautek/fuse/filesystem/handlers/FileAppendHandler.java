@@ -21,43 +21,84 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
+import com.breautek.fuse.filesystem.FuseContentEncoding;
+import com.breautek.fuse.filesystem.FuseDurability;
+import com.breautek.fuse.filesystem.FuseFileAPIHeader;
 import com.breautek.fuse.filesystem.FuseFileAPIParams;
+import com.breautek.fuse.filesystem.FuseFileOperation;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 import com.breautek.fuse.filesystem.IFSAPI;
 
 import org.json.JSONException;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Appends the content to a file.
+ *
+ * The params are a FuseFileAPIHeader, in its binary form, as the path alone, or as a JSON
+ * object of {path, coalesce?, ack?, durability?, encoding?}.
+ * With coalesce, the content joins a per file buffer written in batches. ack then
+ * decides when the response is sent, "written" once the content is in the file,
+ * or "buffered" as soon as it is buffered, trading durability for latency.
+ * Buffered content can be forced out with /file/flush.
+ *
+ * With an encoding of "deflate" or "gzip", the content is decompressed as it is written.
+ * Its length is then unknown upfront, so it is never coalesced.
+ *
+ * When the params ask for a durability, the response is a JSON object of
+ * {bytesWritten, durability}, where durability is the level achieved.
+ * A "buffered" ack always achieves "none".
+ */
+public class FileAppendHandler extends FuseAsyncAPIHandler {
+    public static final String ACK_WRITTEN = "written";
+    public static final String ACK_BUFFERED = "buffered";
 
-public class FileAppendHandler extends APIHandler<FuseFilesystemPlugin> {
     public FileAppendHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         FuseFileAPIParams params = FuseFileAPIParams.parse(packet.getContentLength(), packet.getInputStream());
-        String path = new String(params.getParams());
-        Uri uri = Uri.parse(path);
-
+        FuseFileAPIHeader header = params.getHeader();
+        FuseContentEncoding encoding = header.getEncoding();
+        boolean coalesce = header.hasFlag(FuseFileAPIHeader.FLAG_COALESCE) && encoding == FuseContentEncoding.IDENTITY;
+        boolean ackWhenBuffered = header.hasFlag(FuseFileAPIHeader.FLAG_ACK_BUFFERED);
+        FuseDurability requestedDurability = resolveDurability(header);
+        boolean reportDurability = header.getDurability() != null;
+        Uri uri = Uri.parse(header.getPath());
         long contentLength = params.getContentLength();
 
         IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-        long bytesWritten = -1;
-        try {
-            bytesWritten = fsapi.append(uri, packet.getInputStream(), contentLength, this.plugin.getChunkSize());
-        }
-        catch (FuseError error) {
-            response.send(error);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        if (coalesce) {
+            CompletableFuture<CompletableFuture<Long>> buffered = async.submitTransfer(uri, () -> fsapi.appendBuffered(uri, packet.getInputStream(), contentLength));
+            if (ackWhenBuffered) {
+                // Nothing is written yet, so nothing can be durable.
+                respondDurable(response, buffered.thenApply((CompletableFuture<Long> written) -> new DurableResult<>(contentLength, FuseDurability.NONE)), reportDurability, (Long bytesWritten) -> Long.toString(bytesWritten));
+            }
+            else {
+                respondDurable(response, buffered
+                    .thenCompose((CompletableFuture<Long> written) -> written)
+                    .thenCompose((Long bytesWritten) -> async.sync(uri, requestedDurability).thenApply((FuseDurability achieved) -> new DurableResult<>(bytesWritten, achieved))),
+                    reportDurability, (Long bytesWritten) -> Long.toString(bytesWritten));
+            }
             return;
         }
 
-        response.send(Long.toString(bytesWritten));
+        long decodedLength = decodedLength(encoding, contentLength);
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.APPEND, decodedLength);
+
+        // Timed inside the task so time spent queued does not count against throughput.
+        respondDurable(response, async.submitTransfer(uri, () -> {
+            long start = System.nanoTime();
+            long bytesWritten = fsapi.append(uri, decode(encoding, packet.getInputStream(), contentLength), decodedLength, chunkSize);
+            this.plugin.reportTransfer(FuseFileOperation.APPEND, chunkSize, bytesWritten, System.nanoTime() - start);
+            return sync(fsapi, uri, requestedDurability, bytesWritten);
+        }).thenCompose((CompletableFuture<DurableResult<Long>> synced) -> synced), reportDurability, (Long bytesWritten) -> Long.toString(bytesWritten));
     }
 }
@@ -0,0 +1,113 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.filesystem.FuseBatch;
+import com.breautek.fuse.filesystem.FuseDeleteResult;
+import com.breautek.fuse.filesystem.FuseFileType;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs many metadata operations in a single request, sparing each its own bridge call.
+ *
+ * The params are a JSON object of {operations, maxInFlight?}, where each operation is
+ * {op, path, recursive?} and op is one of "exists", "type", "size", "mkdir" or "remove".
+ * Operations run on the plugin's I/O executor, at most maxInFlight at once. Like any
+ * other operations, those on different paths run in no particular order, so a mkdir
+ * should be recursive rather than rely on the mkdir of its parent.
+ *
+ * Responds with a JSON array holding the result of each operation, in order:
+ * a boolean for exists, mkdir and remove, the FuseFileType ordinal for type, or null for
+ * objects that are neither files nor directories, and the size for size. An operation that fails has {"error": message} as its result instead,
+ * without failing the others.
+ */
+public class FileBatchHandler extends FuseAsyncAPIHandler {
+    public static final int MAX_IN_FLIGHT_LIMIT = 64;
+
+    public FileBatchHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.readAsJSONObject();
+        JSONArray joperations = params.getJSONArray("operations");
+        int maxInFlight = Math.min(params.optInt("maxInFlight", FuseBatch.DEFAULT_MAX_IN_FLIGHT), MAX_IN_FLIGHT_LIMIT);
+
+        List<FuseBatch.IOperation<Object>> operations = new ArrayList<>(joperations.length());
+        for (int i = 0; i < joperations.length(); i++) {
+            JSONObject joperation = joperations.getJSONObject(i);
+            String op = joperation.optString("op");
+            Uri uri = Uri.parse(joperation.optString("path"));
+            boolean recursive = joperation.optBoolean("recursive", false);
+            operations.add(() -> $start(op, uri, recursive));
+        }
+
+        respond(response, FuseBatch.run(operations, maxInFlight), (List<FuseBatch.Result<Object>> results) -> {
+            JSONArray body = new JSONArray();
+            for (FuseBatch.Result<Object> result : results) {
+                if (result.isError()) {
+                    JSONObject error = new JSONObject();
+                    error.put("error", toFuseError(result.getError()).getMessage());
+                    body.put(error);
+                }
+                else {
+                    body.put(result.getValue());
+                }
+            }
+            return body.toString();
+        });
+    }
+
+    private CompletableFuture<Object> $start(String op, Uri uri, boolean recursive) throws FuseError {
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
+        if (fsapi == null) {
+            throw new FuseError("FuseFilesystem", 0, "Unsupported path \"" + uri + "\"");
+        }
+
+        switch (op) {
+            case "exists":
+                return fsapi.exists(uri).thenApply((Boolean exists) -> exists);
+            case "type":
+                return fsapi.getType(uri).thenApply((FuseFileType type) -> type == null ? JSONObject.NULL : type.ordinal());
+            case "size":
+                return fsapi.getSize(uri).thenApply((Long size) -> size);
+            case "mkdir":
+                return fsapi.mkdir(uri, recursive).thenApply((Boolean didCreate) -> didCreate);
+            case "remove":
+                return fsapi.delete(uri, recursive).thenApply((FuseDeleteResult result) -> result.didDelete());
+            default:
+                throw new FuseError("FuseFilesystem", 0, "Unknown batch operation \"" + op + "\"");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseCopyResult;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.FuseOverwritePolicy;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Copies a file natively, without its content crossing the bridge.
+ *
+ * The params are a JSON object of {source, destination, overwrite?}, where overwrite
+ * is "fail" (default), "replace" or "skip". Responds with {bytesCopied, renamed, skipped}.
+ */
+public class FileCopyHandler extends FuseAsyncAPIHandler {
+    public FileCopyHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.readAsJSONObject();
+        Uri source = Uri.parse(params.getString("source"));
+        Uri destination = Uri.parse(params.getString("destination"));
+        FuseOverwritePolicy overwrite = parseOverwrite(params);
+
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(source);
+        respond(response, fsapi.copy(source, destination, overwrite), (FuseCopyResult result) -> toJSON(result).toString());
+    }
+
+    static FuseOverwritePolicy parseOverwrite(JSONObject params) throws JSONException {
+        try {
+            return FuseOverwritePolicy.fromName(params.optString("overwrite", FuseOverwritePolicy.FAIL.getName()));
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+    }
+
+    static JSONObject toJSON(FuseCopyResult result) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("bytesCopied", result.getBytesCopied());
+        json.put("renamed", result.wasRenamed());
+        json.put("skipped", result.wasSkipped());
+        return json;
+    }
+}
@@ -21,43 +21,65 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
-import com.breautek.fuse.filesystem.FileUtils;
+import com.breautek.fuse.filesystem.FuseDeleteResult;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
-import com.breautek.fuse.filesystem.IFSAPI;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
 
-public class FileDeleteHandler extends APIHandler<FuseFilesystemPlugin> {
+/**
+ * Deletes a file, or a directory with recursive.
+ *
+ * The params are a JSON object of {path, recursive, report?}. Responds with "true" if the
+ * path was removed and "false" otherwise. With report, responds instead with
+ * {didDelete, files, directories, failureCount, failures}, where failures lists the first
+ * paths that could not be deleted as {path, message}.
+ */
+public class FileDeleteHandler extends FuseAsyncAPIHandler {
     public FileDeleteHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         JSONObject params = packet.readAsJSONObject();
 
         String path = params.getString("path");
         Uri uri = Uri.parse(path);
 
         boolean recursive = params.getBoolean("recursive");
+        boolean report = params.optBoolean("report", false);
 
-        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
 
-        boolean didDelete;
-        try {
-            didDelete = fsapi.delete(uri, recursive);
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
+        respond(response, fsapi.delete(uri, recursive), (FuseDeleteResult result) -> {
+            if (report) {
+                return toJSON(result).toString();
+            }
+            return result.didDelete() ? "true" : "false";
+        });
+    }
+
+    static JSONObject toJSON(FuseDeleteResult result) throws JSONException {
+        JSONArray failures = new JSONArray();
+        for (FuseDeleteResult.Failure failure : result.getFailures()) {
+            JSONObject jfailure = new JSONObject();
+            jfailure.put("path", failure.getPath().toString());
+            jfailure.put("message", failure.getError().toString());
+            failures.put(jfailure);
         }
 
-        response.send(didDelete ? "true" : "false");
+        JSONObject json = new JSONObject();
+        json.put("didDelete", result.didDelete());
+        json.put("files", result.getFileCount());
+        json.put("directories", result.getDirectoryCount());
+        json.put("failureCount", result.getFailureCount());
+        json.put("failures", failures);
+        return json;
     }
 }
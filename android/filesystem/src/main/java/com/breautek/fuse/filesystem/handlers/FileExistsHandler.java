@@ -21,36 +21,25 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
-import com.breautek.fuse.filesystem.IFSAPI;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 
 import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
-public class FileExistsHandler extends APIHandler<FuseFilesystemPlugin> {
+public class FileExistsHandler extends FuseAsyncAPIHandler {
     public FileExistsHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         String path = packet.readAsString();
         Uri uri = Uri.parse(path);
-        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-
-        boolean doesExist;
-        try {
-            doesExist = fsapi.exists(uri);
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
-        }
-
-        response.send(doesExist ? "true" : "false");
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        respond(response, fsapi.exists(uri), (Boolean doesExist) -> doesExist ? "true" : "false");
     }
 }
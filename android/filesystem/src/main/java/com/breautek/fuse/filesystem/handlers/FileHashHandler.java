@@ -0,0 +1,96 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseFileOperation;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.FuseHashAlgorithm;
+import com.breautek.fuse.filesystem.FuseTreeHasher;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Hashes a file natively, so verifying it costs no bridge traffic.
+ *
+ * The params are a JSON object of {path, algorithm, offset?, length?, tree?, blockSize?},
+ * where algorithm is "crc32", "md5", "sha1" or "sha256". With tree, blocks of the file are
+ * hashed in parallel and the digest is the hash of the block digests, see FuseTreeHasher.
+ *
+ * Responds with {algorithm, digest, tree, blockSize}, the digest as lower case hex.
+ */
+public class FileHashHandler extends FuseAsyncAPIHandler {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public FileHashHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.readAsJSONObject();
+        Uri uri = Uri.parse(params.getString("path"));
+        long offset = params.optLong("offset", 0);
+        long length = params.optLong("length", -1);
+        boolean tree = params.optBoolean("tree", false);
+        int blockSize = params.optInt("blockSize", FuseTreeHasher.DEFAULT_BLOCK_SIZE);
+
+        FuseHashAlgorithm algorithm;
+        try {
+            algorithm = FuseHashAlgorithm.fromName(params.getString("algorithm"));
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+
+        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.READ, length);
+
+        respond(response, async.submitSharedTransfer(uri, () -> {
+            if (tree) {
+                return fsapi.hashTree(uri, algorithm, offset, length, blockSize);
+            }
+            return fsapi.hash(uri, algorithm, offset, length, chunkSize);
+        }), (byte[] digest) -> {
+            JSONObject result = new JSONObject();
+            result.put("algorithm", algorithm.getName());
+            result.put("digest", toHex(digest));
+            result.put("tree", tree);
+            result.put("blockSize", tree ? blockSize : JSONObject.NULL);
+            return result.toString();
+        });
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,96 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseFileStat;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lists a directory one page at a time.
+ *
+ * Params are {path, filter?, cursor?, offset?, limit?, stats?}. The response is
+ * {entries, cursor}, where cursor resumes the listing and is null on the last page.
+ * Entries are names, or {name, type, size, mtime, ctime, mode} objects when stats are requested.
+ *
+ * Responses need their length up front, so a page is the unit of streaming. Entries are
+ * serialized into the response as they are enumerated, and the listing stays open between
+ * pages, see FuseListCursors.
+ */
+public class FileListHandler extends FuseAsyncAPIHandler {
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int MAX_PAGE_SIZE = 10000;
+
+    public FileListHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.readAsJSONObject();
+        Uri uri = Uri.parse(params.getString("path"));
+        String filter = params.isNull("filter") ? null : params.getString("filter");
+        int limit = params.optInt("limit", DEFAULT_PAGE_SIZE);
+        boolean withStats = params.optBoolean("stats", false);
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            limit = MAX_PAGE_SIZE;
+        }
+
+        String cursor = params.isNull("cursor") ? null : params.getString("cursor");
+        long offset = Math.max(0, params.optLong("offset", 0));
+
+        StringBuilder body = new StringBuilder("{\"entries\":[");
+        CompletableFuture<String> listing = fsapi.list(uri, filter, cursor, offset, limit, withStats, (String name, FuseFileStat stat) -> {
+            if (body.charAt(body.length() - 1) != '[') {
+                body.append(',');
+            }
+            $appendEntry(body, name, stat, withStats);
+        });
+
+        respond(response, listing, (String nextCursor) -> body.append("],\"cursor\":").append(nextCursor == null ? "null" : JSONObject.quote(nextCursor)).append('}').toString());
+    }
+
+    private void $appendEntry(StringBuilder body, String name, FuseFileStat stat, boolean withStats) {
+        if (!withStats) {
+            body.append(JSONObject.quote(name));
+            return;
+        }
+
+        body.append("{\"name\":").append(JSONObject.quote(name));
+        if (stat != null) {
+            body.append(",\"type\":").append(stat.getType() == null ? "null" : Integer.toString(stat.getType().ordinal()))
+                .append(",\"size\":").append(stat.getSize())
+                .append(",\"mtime\":").append(stat.getModifiedTime())
+                .append(",\"ctime\":").append(stat.getChangeTime())
+                .append(",\"mode\":").append(stat.getMode());
+        }
+        body.append('}');
+    }
+}
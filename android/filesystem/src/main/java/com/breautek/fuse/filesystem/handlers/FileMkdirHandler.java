@@ -21,10 +21,8 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
-import com.breautek.fuse.filesystem.IFSAPI;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -32,27 +30,18 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.IOException;
 
-public class FileMkdirHandler extends APIHandler<FuseFilesystemPlugin> {
+public class FileMkdirHandler extends FuseAsyncAPIHandler {
     public FileMkdirHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         JSONObject params = packet.readAsJSONObject();
         boolean recursive = params.getBoolean("recursive");
         Uri uri = Uri.parse(params.getString("path"));
-        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-
-        boolean didCreate;
-        try {
-            didCreate = fsapi.mkdir(uri, recursive);
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
-        }
-
-        response.send(didCreate ? "true" : "false");
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        respond(response, fsapi.mkdir(uri, recursive), (Boolean didCreate) -> didCreate ? "true" : "false");
     }
 }
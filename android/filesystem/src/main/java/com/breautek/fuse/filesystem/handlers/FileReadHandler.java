@@ -21,9 +21,11 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
+import com.breautek.fuse.filesystem.FuseContentEncoding;
+import com.breautek.fuse.filesystem.FuseEncodingReadCallback;
+import com.breautek.fuse.filesystem.FuseFileOperation;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 import com.breautek.fuse.filesystem.IFSAPI;
 
 import org.json.JSONException;
@@ -33,13 +35,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 
-public class FileReadHandler extends APIHandler<FuseFilesystemPlugin> {
+/**
+ * Reads a range of a file.
+ *
+ * The params are a JSON object of {path, length, offset, encoding?}. With an encoding of
+ * "deflate" or "gzip", the content is compressed as it is read and the response is the
+ * compressed content.
+ */
+public class FileReadHandler extends FuseAsyncAPIHandler {
     public FileReadHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         JSONObject params = packet.readAsJSONObject();
 
         long desiredLength = params.getLong("length");
@@ -49,27 +58,31 @@ public class FileReadHandler extends APIHandler<FuseFilesystemPlugin> {
         Uri uri = Uri.parse(path);
 
         IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-
-        try {
-            fsapi.read(uri, desiredLength, offset, this.plugin.getChunkSize(), new IFSAPI.IReadCallback() {
-                @Override
-                public void onReadStart(long contentLength) {
-                    response.sendHeaders(200, "application/octet-stream", contentLength);
-                }
-
-                @Override
-                public void onReadChunk(int bufferSize, byte[] buffer) {
-                    response.pushData(buffer);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.READ, desiredLength);
+        FuseContentEncoding encoding = parseEncoding(params);
+
+        if (encoding != FuseContentEncoding.IDENTITY) {
+            respondOnError(response, async.submitSharedTransfer(uri, () -> {
+                long start = System.nanoTime();
+                long bytesRead;
+                try (FuseEncodingReadCallback callback = new FuseEncodingReadCallback(encoding, new FuseResponseReadCallback(response, getMetrics()), chunkSize)) {
+                    bytesRead = fsapi.read(uri, desiredLength, offset, chunkSize, callback);
+                    callback.finish();
                 }
-
-                @Override
-                public void onReadClose() {
-                    response.didFinish();
-                }
-            });
-        }
-        catch (FuseError error) {
-            response.send(error);
+                this.plugin.reportTransfer(FuseFileOperation.READ, chunkSize, bytesRead, System.nanoTime() - start);
+                return bytesRead;
+            }));
+            return;
         }
+
+        // Timed inside the task so time spent queued does not count against throughput.
+        respondOnError(response, async.submitSharedTransfer(uri, () -> {
+            long start = System.nanoTime();
+            long bytesRead = fsapi.read(uri, desiredLength, offset, chunkSize, new FuseResponseReadCallback(response, getMetrics()));
+            this.plugin.reportTransfer(FuseFileOperation.READ, chunkSize, bytesRead, System.nanoTime() - start);
+            return bytesRead;
+        }));
     }
 }
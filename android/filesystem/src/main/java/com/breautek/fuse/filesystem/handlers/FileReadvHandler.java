@@ -0,0 +1,111 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseEndpointMetrics;
+import com.breautek.fuse.filesystem.FuseFileOperation;
+import com.breautek.fuse.filesystem.FuseFileRange;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads many ranges of one file in a single request.
+ *
+ * The params are a JSON object with the file path, a list of ranges,
+ * each with an offset and a length, and an optional coalesce flag.
+ *
+ * The response is a sequence of frames, one per served range. Each frame is
+ * a header of the range offset and length, both big endian int64,
+ * followed by the range content.
+ */
+public class FileReadvHandler extends FuseAsyncAPIHandler {
+    public static final int FRAME_HEADER_SIZE = 16;
+
+    public FileReadvHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.readAsJSONObject();
+
+        String path = params.getString("path");
+        Uri uri = Uri.parse(path);
+        boolean coalesce = params.optBoolean("coalesce", false);
+
+        JSONArray jranges = params.getJSONArray("ranges");
+        List<FuseFileRange> ranges = new ArrayList<>(jranges.length());
+        for (int i = 0; i < jranges.length(); i++) {
+            JSONObject jrange = jranges.getJSONObject(i);
+            ranges.add(new FuseFileRange(jrange.getLong("offset"), jrange.getLong("length")));
+        }
+
+        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.READ, -1);
+        respondOnError(response, async.submitSharedTransfer(uri, () -> {
+            long start = System.nanoTime();
+            long bytesRead = fsapi.readv(uri, ranges, coalesce, chunkSize, new FrameReadCallback(response, getMetrics()));
+            this.plugin.reportTransfer(FuseFileOperation.READ, chunkSize, bytesRead, System.nanoTime() - start);
+            return bytesRead;
+        }));
+    }
+
+    private static class FrameReadCallback extends FuseResponseReadCallback implements IFSAPI.IReadvCallback {
+        private int $rangeCount;
+
+        FrameReadCallback(FuseAPIResponse response, @Nullable FuseEndpointMetrics metrics) {
+            super(response, metrics);
+        }
+
+        @Override
+        public void onReadvRanges(List<FuseFileRange> ranges) {
+            $rangeCount = ranges.size();
+        }
+
+        @Override
+        public void onReadStart(long contentLength) {
+            sendHeaders(contentLength + (long) $rangeCount * FRAME_HEADER_SIZE);
+        }
+
+        @Override
+        public void onReadvRangeStart(FuseFileRange range) {
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+            header.putLong(range.getOffset());
+            header.putLong(range.getLength());
+            response.pushData(header.array());
+        }
+    }
+}
@@ -21,36 +21,25 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
-import com.breautek.fuse.filesystem.IFSAPI;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 
 import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
-public class FileSizeHandler extends APIHandler<FuseFilesystemPlugin> {
+public class FileSizeHandler extends FuseAsyncAPIHandler {
     public FileSizeHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         String path = packet.readAsString();
         Uri uri = Uri.parse(path);
-        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-
-        long size;
-        try {
-            size = fsapi.getSize(uri);
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
-        }
-
-        response.send(Long.toString(size));
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        respond(response, fsapi.getSize(uri), (Long size) -> Long.toString(size));
     }
 }
@@ -21,92 +21,63 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
+import com.breautek.fuse.filesystem.FuseContentEncoding;
+import com.breautek.fuse.filesystem.FuseDurability;
+import com.breautek.fuse.filesystem.FuseFileAPIHeader;
 import com.breautek.fuse.filesystem.FuseFileAPIParams;
+import com.breautek.fuse.filesystem.FuseFileOperation;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 import com.breautek.fuse.filesystem.IFSAPI;
 
-import java.io.File;
+import org.json.JSONException;
+
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
 
-public class FileTruncateHandler extends APIHandler<FuseFilesystemPlugin> {
+/**
+ * Replaces the content of a file.
+ *
+ * The params are a FuseFileAPIHeader, in its binary form, as the path alone, or as a JSON
+ * object of {path, durability?, atomic?, encoding?}. With atomic, the content is written
+ * to a temp file renamed over the file once complete.
+ */
+public class FileTruncateHandler extends FuseAsyncAPIHandler {
     public FileTruncateHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         FuseFileAPIParams params = FuseFileAPIParams.parse(packet.getContentLength(), packet.getInputStream());
-        String path = new String(params.getParams());
-        Uri uri = Uri.parse(path);
+        FuseFileAPIHeader header = params.getHeader();
+        FuseDurability requestedDurability = resolveDurability(header);
+        boolean reportDurability = header.getDurability() != null;
+        Uri uri = Uri.parse(header.getPath());
         IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
 
-        long bytesWritten = 0;
-        try {
-            bytesWritten = fsapi.truncate(uri, params.getContentLength(), packet.getInputStream(), this.plugin.getChunkSize());
-        }
-        catch (FuseError error) {
-            response.send(error);
+        long contentLength = params.getContentLength();
+        FuseContentEncoding encoding = header.getEncoding();
+        long decodedLength = decodedLength(encoding, contentLength);
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.TRUNCATE, decodedLength);
+        if (header.hasFlag(FuseFileAPIHeader.FLAG_ATOMIC)) {
+            // The replace syncs the new content before renaming it in, which is already per operation.
+            boolean sync = requestedDurability != FuseDurability.NONE;
+            respondDurable(response, async.submitTransfer(uri, () -> {
+                long start = System.nanoTime();
+                long bytesWritten = fsapi.replace(uri, decodedLength, decode(encoding, packet.getInputStream(), contentLength), chunkSize, sync);
+                this.plugin.reportTransfer(FuseFileOperation.TRUNCATE, chunkSize, bytesWritten, System.nanoTime() - start);
+                return new DurableResult<>(bytesWritten, sync ? FuseDurability.OPERATION : FuseDurability.NONE);
+            }), reportDurability, (Long bytesWritten) -> Long.toString(bytesWritten));
             return;
         }
 
-        response.send(Long.toString(bytesWritten));
-
-//        File file = new File(path);
-//
-//        if (!file.exists()) {
-//            response.send(new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\""));
-//            return;
-//        }
-//
-//        long contentLength = params.getContentLength();
-//
-//        RandomAccessFile io = new RandomAccessFile(file, "rw");
-//        int bytesWritten = 0;
-//        try {
-//            io.setLength(0);
-//            if (contentLength > 0) {
-//                InputStream readStream = packet.getInputStream();
-//                int chunkSize = this.plugin.getChunkSize();
-//                if (chunkSize > contentLength) {
-//                    chunkSize = (int) contentLength;
-//                }
-//                byte[] buffer = new byte[chunkSize];
-//                long totalBytesRead = 0;
-//                int bytesRead = 0;
-//                while (true) {
-//                    long bytesToRead = contentLength - totalBytesRead;
-//                    if (bytesToRead >= chunkSize) {
-//                        bytesRead = readStream.read(buffer);
-//                    } else {
-//                        buffer = new byte[bytesRead];
-//                        bytesRead = readStream.read(buffer);
-//                    }
-//
-//                    if (bytesRead == -1) {
-//                        break;
-//                    }
-//
-//                    totalBytesRead += bytesRead;
-//                    io.write(buffer);
-//                    bytesWritten += buffer.length;
-//
-//                    if (totalBytesRead == contentLength) {
-//                        break;
-//                    }
-//                }
-//            }
-//
-//            io.close();
-//        }
-//        catch (Exception e) {
-//            io.close();
-//            throw e;
-//        }
-//
-//        response.send(Integer.toString(bytesWritten));
+        respondDurable(response, async.submitTransfer(uri, () -> {
+            long start = System.nanoTime();
+            long bytesWritten = fsapi.truncate(uri, decodedLength, decode(encoding, packet.getInputStream(), contentLength), chunkSize);
+            this.plugin.reportTransfer(FuseFileOperation.TRUNCATE, chunkSize, bytesWritten, System.nanoTime() - start);
+            return sync(fsapi, uri, requestedDurability, bytesWritten);
+        }).thenCompose((CompletableFuture<DurableResult<Long>> synced) -> synced), reportDurability, (Long bytesWritten) -> Long.toString(bytesWritten));
     }
 }
@@ -22,39 +22,32 @@ import android.net.Uri;
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
 import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
 import com.breautek.fuse.filesystem.FuseFileType;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
-import com.breautek.fuse.filesystem.IFSAPI;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 
 import org.json.JSONException;
 
 import java.io.File;
 import java.io.IOException;
 
-public class FileTypeHandler extends APIHandler<FuseFilesystemPlugin> {
+public class FileTypeHandler extends FuseAsyncAPIHandler {
     public FileTypeHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         String path = packet.readAsString();
         Uri uri = Uri.parse(path);
-        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI fsapi = this.plugin.getFSAPIFactory().getAsync(uri);
 
-        FuseFileType type = null;
-        try {
-            type = fsapi.getType(uri);
+        respond(response, fsapi.getType(uri), (FuseFileType type) -> {
             if (type == null) {
                 throw new FuseError("FuseFilesystem", 0, "Unsupported file type.");
             }
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
-        }
 
-        response.send(Integer.toString(type.ordinal()));
+            return Integer.toString(type.ordinal());
+        });
     }
 }
@@ -21,100 +21,55 @@ import android.net.Uri;
 
 import com.breautek.fuse.FuseAPIPacket;
 import com.breautek.fuse.FuseAPIResponse;
-import com.breautek.fuse.FuseError;
-import com.breautek.fuse.FusePlugin.APIHandler;
+import com.breautek.fuse.filesystem.FuseContentEncoding;
+import com.breautek.fuse.filesystem.FuseDurability;
+import com.breautek.fuse.filesystem.FuseFileAPIHeader;
 import com.breautek.fuse.filesystem.FuseFileAPIParams;
+import com.breautek.fuse.filesystem.FuseFileOperation;
 import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
 import com.breautek.fuse.filesystem.IFSAPI;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
 
-public class FileWriteHandler extends APIHandler<FuseFilesystemPlugin> {
+/**
+ * Writes the content at an offset of a file.
+ *
+ * The params are a FuseFileAPIHeader, in its binary form or as a JSON object of
+ * {path, offset, keepSize?, durability?, encoding?}.
+ * With an encoding of "deflate" or "gzip", the content is decompressed as it is written,
+ * and the response reports the number of decompressed bytes written.
+ */
+public class FileWriteHandler extends FuseAsyncAPIHandler {
     public FileWriteHandler(FuseFilesystemPlugin plugin) {
         super(plugin);
     }
 
     @Override
-    public void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
         FuseFileAPIParams params = FuseFileAPIParams.parse(packet.getContentLength(), packet.getInputStream());
-        String jparamsStr = new String(params.getParams());
-        JSONObject jparams = new JSONObject(jparamsStr);
-        String path = jparams.getString("path");
-        long offset = jparams.getLong("offset");
+        FuseFileAPIHeader header = params.getHeader();
+        long offset = header.getOffset();
+        boolean keepSize = header.hasFlag(FuseFileAPIHeader.FLAG_KEEP_SIZE);
 
-        Uri uri = Uri.parse(path);
+        Uri uri = Uri.parse(header.getPath());
         IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
-        long bytesWritten = 0;
-        try {
-            bytesWritten = fsapi.write(uri, offset, this.plugin.getChunkSize(), packet.getInputStream(), params.getContentLength());
-        }
-        catch (FuseError error) {
-            response.send(error);
-            return;
-        }
-
-        response.send(Long.toString(bytesWritten));
-
-//        File file = new File(path);
-//
-//        if (!file.exists()) {
-//            response.send(new FuseError("FuseFilesystem", 0, "No such file found at \"" + path + "\""));
-//            return;
-//        }
-//
-//        long contentLength = params.getContentLength();
-//
-//        RandomAccessFile io = new RandomAccessFile(file, "rw");
-//        int bytesWritten = 0;
-//        try {
-//            if (offset > 0) {
-//                io.seek(offset);
-//            }
-//            if (contentLength > 0) {
-//                InputStream readStream = packet.getInputStream();
-//                int chunkSize = this.plugin.getChunkSize();
-//                if (chunkSize > contentLength) {
-//                    chunkSize = (int) contentLength;
-//                }
-//                byte[] buffer = new byte[chunkSize];
-//                long totalBytesRead = 0;
-//                int bytesRead = 0;
-//                while (true) {
-//                    long bytesToRead = contentLength - totalBytesRead;
-//                    if (bytesToRead >= chunkSize) {
-//                        bytesRead = readStream.read(buffer);
-//                    } else {
-//                        buffer = new byte[bytesRead];
-//                        bytesRead = readStream.read(buffer);
-//                    }
-//
-//                    if (bytesRead == -1) {
-//                        break;
-//                    }
-//
-//                    totalBytesRead += bytesRead;
-//                    io.write(buffer);
-//                    bytesWritten += buffer.length;
-//
-//                    if (totalBytesRead == contentLength) {
-//                        break;
-//                    }
-//                }
-//            }
-//
-//            io.close();
-//        }
-//        catch (Exception e) {
-//            io.close();
-//            throw e;
-//        }
-//
-//        response.send(Integer.toString(bytesWritten));
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+        long contentLength = params.getContentLength();
+        FuseContentEncoding encoding = header.getEncoding();
+        long decodedLength = decodedLength(encoding, contentLength);
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.WRITE, decodedLength);
+        FuseDurability durability = resolveDurability(header);
+        respondDurable(response, async.submitTransfer(uri, () -> {
+            long start = System.nanoTime();
+            InputStream input = decode(encoding, packet.getInputStream(), contentLength);
+            long bytesWritten = fsapi.write(uri, offset, chunkSize, input, decodedLength, keepSize);
+            this.plugin.reportTransfer(FuseFileOperation.WRITE, chunkSize, bytesWritten, System.nanoTime() - start);
+            return sync(fsapi, uri, durability, bytesWritten);
+        }).thenCompose((CompletableFuture<DurableResult<Long>> synced) -> synced), header.getDurability() != null, (Long bytesWritten) -> Long.toString(bytesWritten));
     }
 }
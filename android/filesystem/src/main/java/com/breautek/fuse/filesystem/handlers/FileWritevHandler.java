@@ -0,0 +1,108 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.filesystem.FuseDurability;
+import com.breautek.fuse.filesystem.FuseFileAPIParams;
+import com.breautek.fuse.filesystem.FuseFileOperation;
+import com.breautek.fuse.filesystem.FuseFileRange;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IAsyncFSAPI;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes many segments of one file in a single request.
+ *
+ * The params are a JSON object with the file path and a list of segments,
+ * each with an offset and a length. The content of every segment follows
+ * the params, in the same order as the segments are listed, and the segment
+ * lengths must add up to the length of the content.
+ *
+ * Responds with a JSON array of the bytes written for each segment.
+ * If the params ask for a durability, the array is reported as bytesWritten
+ * along with the durability achieved.
+ */
+public class FileWritevHandler extends FuseAsyncAPIHandler {
+    public FileWritevHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        FuseFileAPIParams params = FuseFileAPIParams.parse(packet.getContentLength(), packet.getInputStream());
+        String jparamsStr = new String(params.getParams());
+        JSONObject jparams = new JSONObject(jparamsStr);
+        String path = jparams.getString("path");
+
+        JSONArray jsegments = jparams.getJSONArray("segments");
+        List<FuseFileRange> segments = new ArrayList<>(jsegments.length());
+        for (int i = 0; i < jsegments.length(); i++) {
+            JSONObject jsegment = jsegments.getJSONObject(i);
+            segments.add(new FuseFileRange(jsegment.getLong("offset"), jsegment.getLong("length")));
+        }
+
+        Uri uri = Uri.parse(path);
+        IFSAPI fsapi = this.plugin.getFSAPIFactory().get(uri);
+        IAsyncFSAPI async = this.plugin.getFSAPIFactory().getAsync(uri);
+
+        long contentLength = params.getContentLength();
+        try {
+            // Checked before submitting, so a mismatched body is refused without queueing behind other writes.
+            FuseFileRange.checkSegments(segments, contentLength);
+        }
+        catch (FuseError ex) {
+            response.send(ex);
+            return;
+        }
+
+        int chunkSize = this.plugin.getChunkSize(FuseFileOperation.WRITE, contentLength);
+        FuseDurability durability = parseDurability(jparams);
+        respondDurable(response, async.submitTransfer(uri, () -> {
+            long start = System.nanoTime();
+            long[] bytesWritten = fsapi.writev(uri, segments, packet.getInputStream(), contentLength, chunkSize);
+
+            long totalBytesWritten = 0;
+            for (long segmentBytesWritten : bytesWritten) {
+                totalBytesWritten += segmentBytesWritten;
+            }
+            this.plugin.reportTransfer(FuseFileOperation.WRITE, chunkSize, totalBytesWritten, System.nanoTime() - start);
+            return sync(fsapi, uri, durability, bytesWritten);
+        }).thenCompose((CompletableFuture<DurableResult<long[]>> synced) -> synced), jparams.has("durability"), (long[] bytesWritten) -> {
+            JSONArray result = new JSONArray();
+            for (long segmentBytesWritten : bytesWritten) {
+                result.put(segmentBytesWritten);
+            }
+
+            return result.toString();
+        });
+    }
+}
@@ -0,0 +1,292 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.FuseError;
+import com.breautek.fuse.FusePlugin.APIHandler;
+import com.breautek.fuse.filesystem.FuseContentEncoding;
+import com.breautek.fuse.filesystem.FuseDurability;
+import com.breautek.fuse.filesystem.FuseEndpointMetrics;
+import com.breautek.fuse.filesystem.FuseFileAPIHeader;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Base for handlers whose operation runs on the plugin's I/O executor. execute only
+ * parses the request and returns, and the response is completed from the future,
+ * so a slow operation does not hold the thread the bridge dispatched on.
+ *
+ * Handlers implement _execute. When metrics are set, execute counts the request bytes
+ * and the respond methods time the operation from when it is submitted to when it completes.
+ *
+ * Handlers that take content parse their params in _execute, but leave the content in the
+ * packet's stream for the operation to read after execute has returned. This relies on the
+ * Fuse core keeping the request's stream open until a response is sent, which the instrumented
+ * canWriteBodyReadAfterExecuteReturns test guards. Such operations are submitted with
+ * submitTransfer, so a client that is slow to send cannot hold up other requests.
+ */
+public abstract class FuseAsyncAPIHandler extends APIHandler<FuseFilesystemPlugin> {
+    public interface IResultSerializer<T> {
+        String serialize(T result) throws FuseError, JSONException;
+    }
+
+    /**
+     * The result of a write, with the durability it achieved.
+     */
+    protected static class DurableResult<T> {
+        public final T result;
+        public final FuseDurability durability;
+
+        public DurableResult(T result, FuseDurability durability) {
+            this.result = result;
+            this.durability = durability;
+        }
+    }
+
+    private @Nullable FuseEndpointMetrics $metrics;
+
+    public FuseAsyncAPIHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    /**
+     * Sets the metrics the handler records into, or null to record nothing.
+     */
+    public void setMetrics(@Nullable FuseEndpointMetrics metrics) {
+        $metrics = metrics;
+    }
+
+    public @Nullable FuseEndpointMetrics getMetrics() {
+        return $metrics;
+    }
+
+    @Override
+    public final void execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        FuseEndpointMetrics metrics = $metrics;
+        if (metrics == null) {
+            _execute(packet, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        metrics.addBytesIn(packet.getContentLength());
+        try {
+            _execute(packet, response);
+        }
+        catch (IOException | RuntimeException ex) {
+            // Failed before an operation was submitted, so respond will not record it.
+            metrics.recordOperation(System.nanoTime() - start, true);
+            throw ex;
+        }
+    }
+
+    protected abstract void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException;
+
+    /**
+     * Sends the serialized result once the future completes, or the error it failed with.
+     */
+    protected <T> void respond(FuseAPIResponse response, CompletableFuture<T> future, IResultSerializer<T> serializer) {
+        long start = System.nanoTime();
+        future.whenComplete((T result, Throwable error) -> {
+            if (error != null) {
+                $recordOperation(start, true);
+                response.send(toFuseError(error));
+                return;
+            }
+
+            String body;
+            try {
+                body = serializer.serialize(result);
+            }
+            catch (FuseError ex) {
+                $recordOperation(start, true);
+                response.send(ex);
+                return;
+            }
+            catch (JSONException ex) {
+                $recordOperation(start, true);
+                response.send(new FuseError("FuseFilesystem", 0, "Could not serialize the response", ex));
+                return;
+            }
+
+            FuseEndpointMetrics metrics = $metrics;
+            if (metrics != null) {
+                metrics.recordOperation(System.nanoTime() - start, false);
+                metrics.addBytesOut($utf8Length(body));
+            }
+            response.send(body);
+        });
+    }
+
+    /**
+     * Reads the "durability" param, or the plugin's durability if the request does not ask for one.
+     */
+    protected FuseDurability parseDurability(JSONObject params) throws JSONException {
+        if (!params.has("durability")) {
+            return this.plugin.getDurability();
+        }
+
+        try {
+            return FuseDurability.fromName(params.getString("durability"));
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+    }
+
+    /**
+     * The durability the header asks for, or the plugin's durability if it does not ask for one.
+     */
+    protected FuseDurability resolveDurability(FuseFileAPIHeader header) {
+        FuseDurability durability = header.getDurability();
+        return durability == null ? this.plugin.getDurability() : durability;
+    }
+
+    /**
+     * Reads the "encoding" param, defaulting to IDENTITY.
+     */
+    protected FuseContentEncoding parseEncoding(JSONObject params) throws JSONException {
+        if (!params.has("encoding")) {
+            return FuseContentEncoding.IDENTITY;
+        }
+
+        try {
+            return FuseContentEncoding.fromName(params.getString("encoding"));
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JSONException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the contentLength bytes of content that follow the params. Decoding may read
+     * from io, so call from the task that writes.
+     */
+    protected static InputStream decode(FuseContentEncoding encoding, InputStream io, long contentLength) throws IOException {
+        if (encoding == FuseContentEncoding.IDENTITY) {
+            return io;
+        }
+        return encoding.decode(io, contentLength);
+    }
+
+    /**
+     * The length of the decoded content, or -1 as it is not known upfront once encoded.
+     */
+    protected static long decodedLength(FuseContentEncoding encoding, long contentLength) {
+        return encoding == FuseContentEncoding.IDENTITY ? contentLength : -1;
+    }
+
+    /**
+     * Syncs the file as far as the durability asks. Call from the task that wrote,
+     * so the sync stays ordered with the other operations on the file.
+     */
+    protected <T> CompletableFuture<DurableResult<T>> sync(IFSAPI fsapi, Uri uri, FuseDurability durability, T result) throws FuseError {
+        return fsapi.sync(uri, durability).thenApply((FuseDurability achieved) -> new DurableResult<>(result, achieved));
+    }
+
+    /**
+     * Like respond, for writes that may be synced. When report is set, the body is a JSON object
+     * of {bytesWritten, durability}, otherwise it is the serialized result alone, as older clients expect.
+     */
+    protected <T> void respondDurable(FuseAPIResponse response, CompletableFuture<DurableResult<T>> future, boolean report, IResultSerializer<T> serializer) {
+        respond(response, future, (DurableResult<T> durable) -> {
+            String result = serializer.serialize(durable.result);
+            if (!report) {
+                return result;
+            }
+
+            JSONObject body = new JSONObject();
+            body.put("bytesWritten", new JSONTokener(result).nextValue());
+            body.put("durability", durable.durability.getName());
+            return body.toString();
+        });
+    }
+
+    /**
+     * For operations that stream their own response, only a failure is sent.
+     * The streamed bytes are counted by FuseResponseReadCallback.
+     */
+    protected void respondOnError(FuseAPIResponse response, CompletableFuture<?> future) {
+        long start = System.nanoTime();
+        future.whenComplete((Object result, Throwable error) -> {
+            $recordOperation(start, error != null);
+            if (error != null) {
+                response.send(toFuseError(error));
+            }
+        });
+    }
+
+    /**
+     * The length of the string once encoded as UTF-8, without encoding it.
+     */
+    private static long $utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void $recordOperation(long start, boolean failed) {
+        FuseEndpointMetrics metrics = $metrics;
+        if (metrics != null) {
+            metrics.recordOperation(System.nanoTime() - start, failed);
+        }
+    }
+
+    protected static FuseError toFuseError(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof FuseError) {
+            return (FuseError) cause;
+        }
+
+        return new FuseError("FuseFilesystem", 0, cause.getMessage() == null ? cause.toString() : cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,86 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import androidx.annotation.Nullable;
+
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseEndpointMetrics;
+import com.breautek.fuse.filesystem.IFSAPI;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams read chunks into a FuseAPIResponse as binary content.
+ */
+class FuseResponseReadCallback implements IFSAPI.IReadCallback {
+    protected final FuseAPIResponse response;
+    private final @Nullable FuseEndpointMetrics $metrics;
+    private byte[] $directCopy;
+
+    /**
+     * @param metrics The metrics counting the bytes sent, or null
+     */
+    FuseResponseReadCallback(FuseAPIResponse response, @Nullable FuseEndpointMetrics metrics) {
+        this.response = response;
+        $metrics = metrics;
+    }
+
+    @Override
+    public void onReadStart(long contentLength) {
+        sendHeaders(contentLength);
+    }
+
+    /**
+     * Sends the headers of a response of contentLength bytes, counting them as sent.
+     */
+    protected void sendHeaders(long contentLength) {
+        if ($metrics != null) {
+            $metrics.addBytesOut(contentLength);
+        }
+        response.sendHeaders(200, "application/octet-stream", contentLength);
+    }
+
+    @Override
+    public void onReadChunk(int bufferSize, byte[] buffer) {
+        response.pushData(buffer);
+    }
+
+    @Override
+    public void onReadChunk(ByteBuffer chunk) {
+        int size = chunk.remaining();
+        if (chunk.hasArray() && chunk.arrayOffset() == 0 && chunk.position() == 0 && chunk.array().length == size) {
+            response.pushData(chunk.array());
+            return;
+        }
+
+        // pushData only accepts whole arrays, so chunks that are mapped or
+        // only span part of a pooled buffer are copied through one array
+        // per request rather than one per chunk.
+        if ($directCopy == null || $directCopy.length != size) {
+            $directCopy = new byte[size];
+        }
+        chunk.get($directCopy);
+        response.pushData($directCopy);
+    }
+
+    @Override
+    public void onReadClose() {
+        response.didFinish();
+    }
+}
@@ -0,0 +1,93 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.breautek.fuse.filesystem.handlers;
+
+import com.breautek.fuse.FuseAPIPacket;
+import com.breautek.fuse.FuseAPIResponse;
+import com.breautek.fuse.filesystem.FuseEndpointMetrics;
+import com.breautek.fuse.filesystem.FuseFilesystemPlugin;
+import com.breautek.fuse.filesystem.FuseMetrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Responds with a snapshot of the plugin's FuseMetrics.
+ *
+ * The params are an optional JSON object of {reset?}. When reset is set, the snapshot's
+ * values are removed, so each snapshot covers the time since the previous one.
+ *
+ * The response is a JSON object of {since, time, endpoints}, with since and time in
+ * milliseconds since the epoch. endpoints maps each endpoint to
+ * {ops, errors, bytesIn, bytesOut, totalNanos, latency}, where latency lists the
+ * non-empty buckets of a FuseLog2Histogram of durations in nanoseconds, flattened
+ * as bucket index then count.
+ */
+public class MetricsHandler extends FuseAsyncAPIHandler {
+    public MetricsHandler(FuseFilesystemPlugin plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void _execute(FuseAPIPacket packet, FuseAPIResponse response) throws IOException, JSONException {
+        JSONObject params = packet.getContentLength() > 0 ? packet.readAsJSONObject() : new JSONObject();
+        boolean reset = params.optBoolean("reset", false);
+
+        FuseMetrics metrics = this.plugin.getMetrics();
+        long since = metrics.getSince();
+        List<FuseEndpointMetrics.Snapshot> snapshots = metrics.snapshot(reset);
+        long time = System.currentTimeMillis();
+
+        respond(response, CompletableFuture.completedFuture(snapshots), (List<FuseEndpointMetrics.Snapshot> result) -> {
+            JSONObject endpoints = new JSONObject();
+            for (FuseEndpointMetrics.Snapshot snapshot : result) {
+                endpoints.put(snapshot.endpoint, toJSON(snapshot));
+            }
+
+            JSONObject body = new JSONObject();
+            body.put("since", since);
+            body.put("time", time);
+            body.put("endpoints", endpoints);
+            return body.toString();
+        });
+    }
+
+    static JSONObject toJSON(FuseEndpointMetrics.Snapshot snapshot) throws JSONException {
+        JSONArray latency = new JSONArray();
+        for (int i = 0; i < snapshot.latency.length; i++) {
+            if (snapshot.latency[i] != 0) {
+                latency.put(i);
+                latency.put(snapshot.latency[i]);
+            }
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("ops", snapshot.operations);
+        json.put("errors", snapshot.errors);
+        json.put("bytesIn", snapshot.bytesIn);
+        json.put("bytesOut", snapshot.bytesOut);
+        json.put("totalNanos", snapshot.totalNanos);
+        json.put("latency", latency);
+        return json;
+    }
+}
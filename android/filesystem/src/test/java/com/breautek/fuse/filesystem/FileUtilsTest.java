@@ -0,0 +1,77 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class FileUtilsTest {
+    private File $dir;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("fileutils").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    @Test
+    public void shouldCreateHiddenReplaceTempBesideTarget() throws IOException {
+        File target = new File($dir, "data.json");
+
+        File temp = FileUtils.createReplaceTemp(target);
+
+        assertTrue(temp.exists());
+        assertEquals($dir.getAbsoluteFile(), temp.getParentFile());
+        assertTrue(temp.getName().startsWith(".data.json."));
+        assertTrue(FileUtils.isReplaceTemp(temp.toPath()));
+        assertFalse(FileUtils.isReplaceTemp(target.toPath()));
+    }
+
+    @Test
+    public void shouldDeleteOnlyOrphanedReplaceTemps() throws IOException {
+        File nested = new File($dir, "nested");
+        assertTrue(nested.mkdir());
+        File keep = new File(nested, "keep.txt");
+        assertTrue(keep.createNewFile());
+        File orphan = FileUtils.createReplaceTemp(keep);
+        File other = FileUtils.createReplaceTemp(new File($dir, "other.txt"));
+
+        assertEquals(2, FileUtils.deleteReplaceTemps($dir, System.currentTimeMillis() + 1000));
+
+        assertTrue(keep.exists());
+        assertFalse(orphan.exists());
+        assertFalse(other.exists());
+    }
+
+    @Test
+    public void shouldKeepReplaceTempsNewerThanCutoff() throws IOException {
+        File temp = FileUtils.createReplaceTemp(new File($dir, "busy.txt"));
+
+        assertEquals(0, FileUtils.deleteReplaceTemps($dir, temp.lastModified()));
+        assertTrue(temp.exists());
+    }
+}
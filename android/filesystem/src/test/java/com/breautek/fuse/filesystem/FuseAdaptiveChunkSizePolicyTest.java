@@ -0,0 +1,74 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FuseAdaptiveChunkSizePolicyTest {
+    private static final int MAX_CHUNK_SIZE = 4194304;
+
+    @Test
+    public void smallTransfersShouldUseOneBlock() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+
+        assertEquals(4096, policy.getChunkSize(FuseFileOperation.WRITE, 10));
+    }
+
+    @Test
+    public void transfersShouldFitInOneAlignedChunk() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+
+        assertEquals(8192, policy.getChunkSize(FuseFileOperation.WRITE, 5000));
+        assertEquals(8192, policy.getChunkSize(FuseFileOperation.WRITE, 8192));
+    }
+
+    @Test
+    public void unknownLengthShouldUseMaxChunkSize() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+
+        assertEquals(MAX_CHUNK_SIZE, policy.getChunkSize(FuseFileOperation.READ, -1));
+    }
+
+    @Test
+    public void appendsShouldStartSmall() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+
+        assertEquals(FuseAdaptiveChunkSizePolicy.APPEND_CHUNK_SIZE, policy.getChunkSize(FuseFileOperation.APPEND, 100000000));
+    }
+
+    @Test
+    public void slowTransfersShouldShrinkChunks() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+        policy.setTargetChunkLatency(100);
+
+        // 1mb over 1 second, so 100ms moves ~100kb
+        policy.onTransferComplete(FuseFileOperation.READ, MAX_CHUNK_SIZE, 1048576, 1000000000L);
+
+        assertEquals(65536, policy.getChunkSize(FuseFileOperation.READ, -1));
+        assertEquals(MAX_CHUNK_SIZE, policy.getChunkSize(FuseFileOperation.WRITE, -1));
+    }
+
+    @Test
+    public void tinyTransfersShouldNotBeSampled() {
+        FuseAdaptiveChunkSizePolicy policy = new FuseAdaptiveChunkSizePolicy(MAX_CHUNK_SIZE);
+
+        policy.onTransferComplete(FuseFileOperation.READ, 4096, 10, 1000000000L);
+
+        assertEquals(0, policy.getThroughput(FuseFileOperation.READ), 0);
+    }
+}
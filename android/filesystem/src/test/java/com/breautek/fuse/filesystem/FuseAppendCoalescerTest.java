@@ -0,0 +1,177 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import com.breautek.fuse.FuseError;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class FuseAppendCoalescerTest {
+    private static class RecordingWriter implements FuseAppendCoalescer.IBatchWriter {
+        private final List<String> $batches = Collections.synchronizedList(new ArrayList<>());
+        private final ByteArrayOutputStream $written = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(File file, byte[] data, int length) throws FuseError {
+            $batches.add(new String(data, 0, length));
+            $written.write(data, 0, length);
+        }
+    }
+
+    private CompletableFuture<Long> $append(FuseAppendCoalescer coalescer, File file, String content) throws FuseError {
+        byte[] data = content.getBytes();
+        return coalescer.append(file, new ByteArrayInputStream(data), data.length);
+    }
+
+    @Test
+    public void shouldWriteOneBatchAtThreshold() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer);
+        coalescer.setFlushThreshold(8);
+        coalescer.setFlushDelay(60000);
+        File file = new File("/log");
+
+        CompletableFuture<Long> first = $append(coalescer, file, "abc");
+        CompletableFuture<Long> second = $append(coalescer, file, "def");
+        assertFalse(first.isDone());
+        assertTrue(coalescer.hasPending(file));
+
+        CompletableFuture<Long> third = $append(coalescer, file, "gh");
+
+        assertEquals(3L, (long) first.get(5, TimeUnit.SECONDS));
+        assertEquals(3L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(2L, (long) third.get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("abcdefgh"), writer.$batches);
+        assertFalse(coalescer.hasPending(file));
+        assertEquals(0, coalescer.getBufferedBytes());
+    }
+
+    @Test
+    public void shouldFlushAfterDelay() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer);
+        coalescer.setFlushDelay(10);
+
+        CompletableFuture<Long> ack = $append(coalescer, new File("/log"), "abc");
+
+        assertEquals(3L, (long) ack.get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("abc"), writer.$batches);
+    }
+
+    @Test
+    public void shouldKeepOrderAroundLargeAppends() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer);
+        coalescer.setFlushThreshold(4);
+        coalescer.setFlushDelay(60000);
+        File file = new File("/log");
+
+        $append(coalescer, file, "ab");
+        $append(coalescer, file, "LARGE");
+        $append(coalescer, file, "c");
+        coalescer.flush(file);
+
+        assertEquals("abLARGEc", writer.$written.toString());
+    }
+
+    @Test
+    public void shouldStreamLargeAppendsAfterBuffered() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        List<String> streamed = new ArrayList<>();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer, (File file, InputStream io, long contentLength) -> {
+            streamed.add(writer.$written.toString());
+            return contentLength;
+        });
+        coalescer.setFlushThreshold(4);
+        coalescer.setFlushDelay(60000);
+        File file = new File("/log");
+
+        $append(coalescer, file, "ab");
+        CompletableFuture<Long> large = $append(coalescer, file, "LARGE");
+
+        assertEquals(5L, (long) large.get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("ab"), streamed);
+        assertEquals(Collections.singletonList("ab"), writer.$batches);
+    }
+
+    @Test
+    public void shouldWriteLargeAppendsInPiecesWithoutStreamWriter() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer);
+        coalescer.setFlushThreshold(4);
+
+        assertEquals(10L, (long) $append(coalescer, new File("/log"), "0123456789").get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0123", "4567", "89"), writer.$batches);
+    }
+
+    @Test
+    public void shouldFlushTree() throws Exception {
+        RecordingWriter writer = new RecordingWriter();
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer(writer);
+        coalescer.setFlushDelay(60000);
+
+        $append(coalescer, new File("/dir/a.log"), "a");
+        $append(coalescer, new File("/dir/sub/b.log"), "b");
+        $append(coalescer, new File("/directory.log"), "c");
+        coalescer.flushTree(new File("/dir"));
+
+        assertFalse(coalescer.hasPending(new File("/dir/a.log")));
+        assertFalse(coalescer.hasPending(new File("/dir/sub/b.log")));
+        assertTrue(coalescer.hasPending(new File("/directory.log")));
+    }
+
+    @Test
+    public void shouldFailAcksOfFailedBatch() throws Exception {
+        FuseError error = new FuseError("FuseFilesystem", 0, "disk full");
+        FuseAppendCoalescer coalescer = new FuseAppendCoalescer((File file, byte[] data, int length) -> {
+            throw error;
+        });
+        coalescer.setFlushDelay(60000);
+        File file = new File("/log");
+
+        CompletableFuture<Long> ack = $append(coalescer, file, "abc");
+        try {
+            coalescer.flush(file);
+            fail("Expected the write error");
+        }
+        catch (FuseError ex) {
+            assertSame(error, ex);
+        }
+
+        try {
+            ack.get(5, TimeUnit.SECONDS);
+            fail("Expected the write error");
+        }
+        catch (ExecutionException ex) {
+            assertSame(error, ex.getCause());
+        }
+        assertFalse(coalescer.hasPending(file));
+    }
+}
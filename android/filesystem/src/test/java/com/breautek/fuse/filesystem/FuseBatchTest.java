@@ -0,0 +1,124 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FuseBatchTest {
+    @Test
+    public void shouldKeepResultsInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<FuseBatch.IOperation<Integer>> operations = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                operations.add(() -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Thread.sleep(value % 3);
+                    }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return value;
+                }, executor));
+            }
+
+            List<FuseBatch.Result<Integer>> results = FuseBatch.run(operations, 8).get(10, TimeUnit.SECONDS);
+            assertEquals(100, results.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(Integer.valueOf(i), results.get(i).getValue());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReportErrorsInline() throws Exception {
+        List<FuseBatch.IOperation<String>> operations = new ArrayList<>();
+        operations.add(() -> CompletableFuture.completedFuture("first"));
+        operations.add(() -> {
+            throw new IOException("thrown");
+        });
+        operations.add(() -> CompletableFuture.supplyAsync(() -> {
+            throw new IllegalStateException("failed");
+        }));
+        operations.add(() -> CompletableFuture.completedFuture("last"));
+
+        List<FuseBatch.Result<String>> results = FuseBatch.run(operations, 2).get(10, TimeUnit.SECONDS);
+        assertEquals("first", results.get(0).getValue());
+        assertTrue(results.get(1).getError() instanceof IOException);
+        assertTrue(results.get(2).getError() instanceof IllegalStateException);
+        assertEquals("last", results.get(3).getValue());
+    }
+
+    @Test
+    public void shouldBoundOperationsInFlight() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try {
+            List<FuseBatch.IOperation<Void>> operations = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                operations.add(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return CompletableFuture.runAsync(() -> {
+                        try {
+                            Thread.sleep(2);
+                        }
+                        catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        inFlight.decrementAndGet();
+                    }, executor);
+                });
+            }
+
+            FuseBatch.run(operations, 3).get(10, TimeUnit.SECONDS);
+            assertTrue(maxInFlight.get() <= 3);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldNotRecurseOnCompletedOperations() throws Exception {
+        List<FuseBatch.IOperation<Integer>> operations = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            operations.add(() -> CompletableFuture.completedFuture(1));
+        }
+
+        assertEquals(100000, FuseBatch.run(operations, 1).get(10, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    public void shouldCompleteEmptyBatch() throws Exception {
+        assertTrue(FuseBatch.run(new ArrayList<FuseBatch.IOperation<Integer>>(), 4).get(1, TimeUnit.SECONDS).isEmpty());
+    }
+}
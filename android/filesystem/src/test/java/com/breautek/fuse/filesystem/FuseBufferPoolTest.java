@@ -0,0 +1,92 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FuseBufferPoolTest {
+    @Test
+    public void shouldRoundUpToSizeClass() {
+        FuseBufferPool pool = new FuseBufferPool();
+
+        assertEquals(FuseBufferPool.MIN_BUFFER_SIZE, pool.acquire(1).length);
+        assertEquals(8192, pool.acquire(4097).length);
+        assertEquals(8192, pool.acquire(8192).length);
+    }
+
+    @Test
+    public void shouldReuseReleasedBuffers() {
+        FuseBufferPool pool = new FuseBufferPool();
+
+        byte[] buffer = pool.acquire(10000);
+        pool.release(buffer);
+
+        assertSame(buffer, pool.acquire(16384));
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void shouldNotRetainOversizedBuffers() {
+        FuseBufferPool pool = new FuseBufferPool();
+
+        byte[] buffer = pool.acquire(FuseBufferPool.MAX_BUFFER_SIZE + 1);
+        assertEquals(FuseBufferPool.MAX_BUFFER_SIZE + 1, buffer.length);
+        pool.release(buffer);
+
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void shouldBoundRetainedBytes() {
+        FuseBufferPool pool = new FuseBufferPool();
+        pool.setMaxRetainedBytes(8192);
+
+        byte[] a = pool.acquire(4096);
+        byte[] b = pool.acquire(4096);
+        byte[] c = pool.acquire(4096);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        assertEquals(8192, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void shouldTrackOutstandingBuffers() {
+        FuseBufferPool pool = new FuseBufferPool();
+        pool.setLeakDetection(true);
+
+        byte[] buffer = pool.acquire(4096);
+        assertEquals(1, pool.getOutstandingCount());
+        assertEquals(1, pool.getLeaks().size());
+
+        pool.release(buffer);
+        assertEquals(0, pool.getOutstandingCount());
+        assertTrue(pool.getLeaks().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectDoubleRelease() {
+        FuseBufferPool pool = new FuseBufferPool();
+        pool.setLeakDetection(true);
+
+        byte[] buffer = pool.acquire(4096);
+        pool.release(buffer);
+        pool.release(buffer);
+    }
+}
@@ -0,0 +1,99 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FuseChromeTraceRecorderTest {
+    private static List<JSONObject> $events(FuseChromeTraceRecorder recorder, String phase) throws Exception {
+        StringWriter writer = new StringWriter();
+        recorder.writeTo(writer);
+
+        JSONArray events = new JSONObject(writer.toString()).getJSONArray("traceEvents");
+        List<JSONObject> matching = new ArrayList<>();
+        for (int i = 0; i < events.length(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            if (event.getString("ph").equals(phase)) {
+                matching.add(event);
+            }
+        }
+        return matching;
+    }
+
+    @Test
+    public void shouldWriteOperationsAndChunks() throws Exception {
+        FuseChromeTraceRecorder recorder = new FuseChromeTraceRecorder(16);
+        long start = System.nanoTime();
+        recorder.onOperationStart(FuseFileOperation.READ, "/data/\"quoted\"", 0, 8192, start);
+        recorder.onChunk(FuseFileOperation.READ, "/data/\"quoted\"", 4096, 4096, start, 2000);
+        recorder.onOperationEnd(FuseFileOperation.READ, "/data/\"quoted\"", 0, 8192, start, 5000, false);
+
+        List<JSONObject> begins = $events(recorder, "B");
+        assertEquals(1, begins.size());
+        assertEquals("read", begins.get(0).getString("name"));
+        assertEquals("/data/\"quoted\"", begins.get(0).getJSONObject("args").getString("path"));
+        assertEquals(8192, begins.get(0).getJSONObject("args").getLong("length"));
+
+        List<JSONObject> chunks = $events(recorder, "X");
+        assertEquals(1, chunks.size());
+        assertEquals("read chunk", chunks.get(0).getString("name"));
+        assertEquals(2.0, chunks.get(0).getDouble("dur"), 0.0001);
+        assertEquals(4096, chunks.get(0).getJSONObject("args").getLong("offset"));
+
+        List<JSONObject> ends = $events(recorder, "E");
+        assertEquals(1, ends.size());
+        assertEquals(5.0, ends.get(0).getDouble("ts") - begins.get(0).getDouble("ts"), 0.0001);
+        assertFalse(ends.get(0).getJSONObject("args").getBoolean("failed"));
+
+        List<JSONObject> threads = $events(recorder, "M");
+        assertEquals(1, threads.size());
+        assertEquals(Thread.currentThread().getName(), threads.get(0).getJSONObject("args").getString("name"));
+    }
+
+    @Test
+    public void shouldKeepTheMostRecentEvents() throws Exception {
+        FuseChromeTraceRecorder recorder = new FuseChromeTraceRecorder(4);
+        for (int i = 0; i < 10; i++) {
+            recorder.onOperationStart(FuseFileOperation.WRITE, "/file", i, 1, System.nanoTime());
+        }
+
+        assertEquals(10, recorder.getRecordedCount());
+
+        List<JSONObject> begins = $events(recorder, "B");
+        assertEquals(4, begins.size());
+        for (int i = 0; i < begins.size(); i++) {
+            assertEquals(6 + i, begins.get(i).getJSONObject("args").getLong("offset"));
+        }
+    }
+
+    @Test
+    public void shouldWriteAnEmptyTrace() throws Exception {
+        assertTrue($events(new FuseChromeTraceRecorder(), "B").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNoCapacity() {
+        new FuseChromeTraceRecorder(0);
+    }
+}
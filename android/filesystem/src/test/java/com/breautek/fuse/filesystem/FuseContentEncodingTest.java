@@ -0,0 +1,93 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class FuseContentEncodingTest {
+    private byte[] $encode(FuseContentEncoding encoding, byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encoder = encoding.encode(out)) {
+            encoder.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] $readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void shouldRoundTrip() throws IOException {
+        byte[] content = new byte[100000];
+        Arrays.fill(content, (byte) 'a');
+
+        for (FuseContentEncoding encoding : FuseContentEncoding.values()) {
+            byte[] encoded = $encode(encoding, content);
+            if (encoding != FuseContentEncoding.IDENTITY) {
+                assertTrue(encoded.length < content.length / 10);
+            }
+
+            InputStream decoder = encoding.decode(new ByteArrayInputStream(encoded), encoded.length);
+            assertArrayEquals(content, $readAll(decoder));
+        }
+    }
+
+    @Test
+    public void shouldNotReadPastEncodedLength() throws IOException {
+        byte[] encoded = $encode(FuseContentEncoding.GZIP, "hello".getBytes());
+        byte[] trailing = "trailing".getBytes();
+        byte[] stream = Arrays.copyOf(encoded, encoded.length + trailing.length);
+        System.arraycopy(trailing, 0, stream, encoded.length, trailing.length);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(stream);
+        assertEquals("hello", new String($readAll(FuseContentEncoding.GZIP.decode(in, encoded.length))));
+        assertEquals("trailing", new String($readAll(in)));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnCorruptContent() throws IOException {
+        byte[] corrupt = "not deflated".getBytes();
+        $readAll(FuseContentEncoding.DEFLATE.decode(new ByteArrayInputStream(corrupt), corrupt.length));
+    }
+
+    @Test
+    public void shouldResolveNames() {
+        for (FuseContentEncoding encoding : FuseContentEncoding.values()) {
+            assertEquals(encoding, FuseContentEncoding.fromName(encoding.getName()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownNames() {
+        FuseContentEncoding.fromName("br");
+    }
+}
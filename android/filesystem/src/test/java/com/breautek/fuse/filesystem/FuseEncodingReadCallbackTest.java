@@ -0,0 +1,150 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.InflaterInputStream;
+
+public class FuseEncodingReadCallbackTest {
+    private static class RecordingCallback implements IFSAPI.IReadCallback {
+        long startLength = -1;
+        int starts;
+        int closes;
+        int chunks;
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        @Override
+        public void onReadStart(long contentLength) {
+            startLength = contentLength;
+            starts++;
+        }
+
+        @Override
+        public void onReadChunk(int bufferSize, byte[] buffer) {
+            content.write(buffer, 0, bufferSize);
+            chunks++;
+        }
+
+        @Override
+        public void onReadClose() {
+            closes++;
+        }
+    }
+
+    private byte[] $inflate(byte[] encoded) throws IOException {
+        InputStream in = new InflaterInputStream(new ByteArrayInputStream(encoded));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
+    }
+
+    private void $read(IFSAPI.IReadCallback callback, byte[] content, int chunkSize) {
+        callback.onReadStart(content.length);
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            callback.onReadChunk(ByteBuffer.wrap(content, offset, Math.min(chunkSize, content.length - offset)).slice());
+        }
+        callback.onReadClose();
+    }
+
+    @Test
+    public void shouldReportEncodedLength() throws IOException {
+        byte[] content = new byte[50000];
+        RecordingCallback recorder = new RecordingCallback();
+        try (FuseEncodingReadCallback callback = new FuseEncodingReadCallback(FuseContentEncoding.DEFLATE, recorder, 1024)) {
+            $read(callback, content, 4096);
+            callback.finish();
+        }
+
+        assertEquals(1, recorder.starts);
+        assertEquals(1, recorder.closes);
+        assertEquals(recorder.content.size(), recorder.startLength);
+        assertArrayEquals(content, $inflate(recorder.content.toByteArray()));
+    }
+
+    @Test
+    public void shouldSpillPastMemoryLimit() throws IOException {
+        // Random content barely compresses, so the spool has to leave memory.
+        byte[] content = new byte[FuseEncodingReadCallback.SPOOL_MEMORY_LIMIT * 2];
+        new Random(42).nextBytes(content);
+
+        RecordingCallback recorder = new RecordingCallback();
+        try (FuseEncodingReadCallback callback = new FuseEncodingReadCallback(FuseContentEncoding.DEFLATE, recorder, 65536)) {
+            $read(callback, content, 65536);
+        }
+
+        assertTrue(recorder.startLength > FuseEncodingReadCallback.SPOOL_MEMORY_LIMIT);
+        assertEquals(recorder.content.size(), recorder.startLength);
+        assertArrayEquals(content, $inflate(recorder.content.toByteArray()));
+    }
+
+    @Test
+    public void shouldEncodeEmptyReads() throws IOException {
+        RecordingCallback recorder = new RecordingCallback();
+        try (FuseEncodingReadCallback callback = new FuseEncodingReadCallback(FuseContentEncoding.GZIP, recorder, 1024)) {
+            callback.finish();
+        }
+
+        assertEquals(1, recorder.starts);
+        assertEquals(1, recorder.closes);
+        assertTrue(recorder.startLength > 0);
+        assertEquals(recorder.content.size(), recorder.startLength);
+    }
+
+    @Test
+    public void shouldNotDeliverBeforeClose() {
+        RecordingCallback recorder = new RecordingCallback();
+        try (FuseEncodingReadCallback callback = new FuseEncodingReadCallback(FuseContentEncoding.DEFLATE, recorder, 1024)) {
+            callback.onReadStart(3);
+            callback.onReadChunk(3, "abc".getBytes());
+        }
+
+        assertEquals(0, recorder.starts);
+        assertEquals(0, recorder.chunks);
+    }
+
+    @Test
+    public void shouldDeleteLeftoverSpools() throws IOException {
+        File dir = Files.createTempDirectory("spools").toFile();
+        try {
+            File leftover = new File(dir, FuseEncodingReadCallback.SPOOL_PREFIX + "123" + FuseEncodingReadCallback.SPOOL_SUFFIX);
+            File other = new File(dir, "other.tmp");
+            assertTrue(leftover.createNewFile());
+            assertTrue(other.createNewFile());
+
+            assertEquals(1, FuseEncodingReadCallback.deleteLeftoverSpools(dir, System.currentTimeMillis() + 1000));
+            assertFalse(leftover.exists());
+            assertTrue(other.exists());
+        }
+        finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.json.JSONException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class FuseFileAPIHeaderTest {
+    @Test
+    public void shouldRoundTripBinaryHeader() throws Exception {
+        int flags = FuseFileAPIHeader.FLAG_KEEP_SIZE | FuseFileAPIHeader.FLAG_ACK_BUFFERED;
+        FuseFileAPIHeader original = new FuseFileAPIHeader("/data/files/\u00e9.txt", 1L << 40, flags, FuseDurability.GROUP_COMMIT, FuseContentEncoding.GZIP);
+
+        FuseFileAPIHeader parsed = FuseFileAPIHeader.parse(original.toBytes());
+        assertEquals("/data/files/\u00e9.txt", parsed.getPath());
+        assertEquals(1L << 40, parsed.getOffset());
+        assertTrue(parsed.hasFlag(FuseFileAPIHeader.FLAG_KEEP_SIZE));
+        assertTrue(parsed.hasFlag(FuseFileAPIHeader.FLAG_ACK_BUFFERED));
+        assertFalse(parsed.hasFlag(FuseFileAPIHeader.FLAG_ATOMIC));
+        assertEquals(FuseDurability.GROUP_COMMIT, parsed.getDurability());
+        assertEquals(FuseContentEncoding.GZIP, parsed.getEncoding());
+    }
+
+    @Test
+    public void shouldMatchDocumentedLayout() throws Exception {
+        byte[] path = "/a".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(FuseFileAPIHeader.FIXED_SIZE + path.length);
+        buffer.put((byte) 0xF5).put((byte) 1).putShort((short) FuseFileAPIHeader.FLAG_ATOMIC);
+        buffer.put((byte) 0).put((byte) 1).putLong(7).putShort((short) path.length).put(path);
+
+        FuseFileAPIHeader parsed = FuseFileAPIHeader.parse(buffer.array());
+        assertEquals("/a", parsed.getPath());
+        assertEquals(7, parsed.getOffset());
+        assertTrue(parsed.hasFlag(FuseFileAPIHeader.FLAG_ATOMIC));
+        assertNull(parsed.getDurability());
+        assertEquals(FuseContentEncoding.DEFLATE, parsed.getEncoding());
+    }
+
+    @Test
+    public void shouldIgnoreFieldsOfLaterVersions() throws Exception {
+        byte[] header = new FuseFileAPIHeader("/a", 0, 0, null, FuseContentEncoding.IDENTITY).toBytes();
+        byte[] later = Arrays.copyOf(header, header.length + 8);
+        later[1] = 2;
+
+        assertEquals("/a", FuseFileAPIHeader.parse(later).getPath());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedHeader() throws Exception {
+        byte[] header = new FuseFileAPIHeader("/some/path", 0, 0, null, FuseContentEncoding.IDENTITY).toBytes();
+        FuseFileAPIHeader.parse(Arrays.copyOf(header, header.length - 1));
+    }
+
+    @Test
+    public void shouldParseJSON() throws Exception {
+        String json = "{\"path\":\"/a\",\"offset\":3,\"coalesce\":true,\"ack\":\"buffered\",\"durability\":\"operation\",\"encoding\":\"deflate\"}";
+        FuseFileAPIHeader parsed = FuseFileAPIHeader.parse(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("/a", parsed.getPath());
+        assertEquals(3, parsed.getOffset());
+        assertTrue(parsed.hasFlag(FuseFileAPIHeader.FLAG_COALESCE));
+        assertTrue(parsed.hasFlag(FuseFileAPIHeader.FLAG_ACK_BUFFERED));
+        assertEquals(FuseDurability.OPERATION, parsed.getDurability());
+        assertEquals(FuseContentEncoding.DEFLATE, parsed.getEncoding());
+    }
+
+    @Test(expected = JSONException.class)
+    public void shouldRejectUnknownJSONDurability() throws Exception {
+        FuseFileAPIHeader.parse("{\"path\":\"/a\",\"durability\":\"always\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldParsePlainPath() throws Exception {
+        FuseFileAPIHeader parsed = FuseFileAPIHeader.parse("file:///data/a".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("file:///data/a", parsed.getPath());
+        assertEquals(0, parsed.getOffset());
+        assertNull(parsed.getDurability());
+        assertEquals(FuseContentEncoding.IDENTITY, parsed.getEncoding());
+    }
+}
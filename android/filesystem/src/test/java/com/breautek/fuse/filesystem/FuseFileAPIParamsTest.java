@@ -0,0 +1,101 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class FuseFileAPIParamsTest {
+    /**
+     * Returns at most one byte per read, like a socket receiving a packet in many segments.
+     */
+    private static class TricklingInputStream extends ByteArrayInputStream {
+        TricklingInputStream(byte[] buffer) {
+            super(buffer);
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+
+    private byte[] $packet(String params, String content) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + params.length() + content.length());
+        buffer.putInt(params.length()).put(params.getBytes()).put(content.getBytes());
+        return buffer.array();
+    }
+
+    @Test
+    public void shouldSurviveShortReads() throws IOException {
+        byte[] packet = $packet("/some/path", "content");
+        InputStream io = new TricklingInputStream(packet);
+
+        FuseFileAPIParams params = FuseFileAPIParams.parse(packet.length, io);
+        assertEquals("/some/path", new String(params.getParams()));
+        assertEquals(7, params.getContentLength());
+        assertEquals('c', io.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnTruncatedParams() throws IOException {
+        byte[] packet = $packet("/some/path", "");
+        FuseFileAPIParams.parse(packet.length, new ByteArrayInputStream(packet, 0, packet.length - 1));
+    }
+
+    @Test
+    public void shouldParseBinaryHeaderAcrossReuses() throws Exception {
+        byte[] first = new FuseFileAPIHeader("/first", 7, FuseFileAPIHeader.FLAG_KEEP_SIZE, null, FuseContentEncoding.IDENTITY).toBytes();
+        byte[] second = new FuseFileAPIHeader("/second", 9, 0, FuseDurability.OPERATION, FuseContentEncoding.GZIP).toBytes();
+
+        FuseFileAPIParams a = FuseFileAPIParams.parse(4 + first.length + 3, new ByteArrayInputStream($binaryPacket(first, "abc")));
+        FuseFileAPIParams b = FuseFileAPIParams.parse(4 + second.length, new ByteArrayInputStream($binaryPacket(second, "")));
+
+        assertEquals("/first", a.getHeader().getPath());
+        assertEquals(7, a.getHeader().getOffset());
+        assertTrue(a.getHeader().hasFlag(FuseFileAPIHeader.FLAG_KEEP_SIZE));
+        assertEquals(3, a.getContentLength());
+        assertArrayEquals(first, a.getParams());
+        assertEquals("/second", b.getHeader().getPath());
+        assertEquals(FuseContentEncoding.GZIP, b.getHeader().getEncoding());
+    }
+
+    @Test
+    public void shouldParseParamsLargerThanScratch() throws Exception {
+        StringBuilder path = new StringBuilder("/");
+        while (path.length() < FuseFileAPIParams.MAX_SCRATCH_SIZE * 2) {
+            path.append("long/");
+        }
+        byte[] packet = $packet(path.toString(), "x");
+
+        FuseFileAPIParams params = FuseFileAPIParams.parse(packet.length, new ByteArrayInputStream(packet));
+
+        assertEquals(path.toString(), params.getHeader().getPath());
+        assertEquals(1, params.getContentLength());
+    }
+
+    private byte[] $binaryPacket(byte[] header, String content) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + header.length + content.length());
+        buffer.putInt(header.length).put(header).put(content.getBytes());
+        return buffer.array();
+    }
+}
@@ -0,0 +1,186 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class FuseFileChannelCacheTest {
+    private File $dir;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("channelcache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    @Test
+    public void shouldReuseReleasedHandles() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File file = new File($dir, "a");
+
+        FuseFileChannelCache.Handle first = cache.acquire(file, true);
+        first.close();
+        FuseFileChannelCache.Handle second = cache.acquire(new File($dir, "./a"), true);
+        second.close();
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldUpgradeReadOnlyHandles() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File file = new File($dir, "a");
+        assertTrue(file.createNewFile());
+
+        FuseFileChannelCache.Handle reader = cache.acquire(file, false);
+        reader.close();
+        FuseFileChannelCache.Handle writer = cache.acquire(file, true);
+        writer.close();
+
+        assertNotSame(reader, writer);
+        assertFalse(reader.getChannel().isOpen());
+        assertTrue(writer.isWritable());
+        assertSame(writer, cache.acquire(file, false));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        cache.setMaxEntries(2);
+
+        FuseFileChannelCache.Handle a = cache.acquire(new File($dir, "a"), true);
+        a.close();
+        cache.acquire(new File($dir, "b"), true).close();
+        cache.acquire(new File($dir, "a"), true).close();
+        cache.acquire(new File($dir, "c"), true).close();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(a.getChannel().isOpen());
+    }
+
+    @Test
+    public void shouldKeepInvalidatedHandlesOpenUntilReleased() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File file = new File($dir, "a");
+
+        FuseFileChannelCache.Handle handle = cache.acquire(file, true);
+        cache.invalidate(file);
+
+        assertEquals(0, cache.size());
+        assertTrue(handle.getChannel().isOpen());
+
+        handle.close();
+        assertFalse(handle.getChannel().isOpen());
+    }
+
+    @Test
+    public void shouldInvalidateTree() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File sub = new File($dir, "sub");
+        assertTrue(sub.mkdir());
+
+        cache.acquire(new File(sub, "a"), true).close();
+        cache.acquire(new File($dir, "subling"), true).close();
+        cache.invalidateTree(sub);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldCloseIdleHandles() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        cache.setIdleTimeout(-1);
+
+        FuseFileChannelCache.Handle handle = cache.acquire(new File($dir, "a"), true);
+        handle.close();
+        cache.acquire(new File($dir, "b"), true).close();
+
+        assertFalse(handle.getChannel().isOpen());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldSweepIdleHandles() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        cache.setIdleTimeout(-1);
+
+        FuseFileChannelCache.Handle handle = cache.acquire(new File($dir, "a"), true);
+        handle.close();
+        cache.evictIdle();
+
+        assertEquals(0, cache.size());
+        assertFalse(handle.getChannel().isOpen());
+    }
+
+    @Test
+    public void shouldReopenReplacedFiles() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File file = new File($dir, "a");
+        File replacement = new File($dir, "b");
+
+        FuseFileChannelCache.Handle first = cache.acquire(file, true);
+        first.close();
+        assertTrue(replacement.createNewFile());
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        FuseFileChannelCache.Handle second = cache.acquire(file, true);
+        second.close();
+
+        assertNotSame(first, second);
+        assertFalse(first.getChannel().isOpen());
+    }
+
+    @Test
+    public void shouldInvalidateOnDeleteRecursively() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        File sub = new File($dir, "sub");
+        assertTrue(sub.mkdir());
+
+        FuseFileChannelCache.Handle handle = cache.acquire(new File(sub, "a"), true);
+        handle.close();
+        FileUtils.deleteRecursively(sub);
+
+        assertEquals(0, cache.size());
+        assertFalse(handle.getChannel().isOpen());
+    }
+
+    @Test
+    public void shouldNotRetainWhenDisabled() throws IOException {
+        FuseFileChannelCache cache = new FuseFileChannelCache();
+        cache.setMaxEntries(0);
+
+        FuseFileChannelCache.Handle handle = cache.acquire(new File($dir, "a"), true);
+        handle.close();
+
+        assertEquals(0, cache.size());
+        assertFalse(handle.getChannel().isOpen());
+    }
+}
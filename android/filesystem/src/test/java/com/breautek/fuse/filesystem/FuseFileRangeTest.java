@@ -0,0 +1,93 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import com.breautek.fuse.FuseError;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class FuseFileRangeTest {
+    @Test
+    public void shouldSortDisjointRanges() {
+        List<FuseFileRange> ranges = FuseFileRange.coalesce(Arrays.asList(
+            new FuseFileRange(10, 2),
+            new FuseFileRange(0, 2)
+        ));
+
+        assertEquals(2, ranges.size());
+        assertEquals(0, ranges.get(0).getOffset());
+        assertEquals(10, ranges.get(1).getOffset());
+    }
+
+    @Test
+    public void shouldMergeAdjacentRanges() {
+        List<FuseFileRange> ranges = FuseFileRange.coalesce(Arrays.asList(
+            new FuseFileRange(2, 2),
+            new FuseFileRange(0, 2)
+        ));
+
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).getOffset());
+        assertEquals(4, ranges.get(0).getLength());
+    }
+
+    @Test
+    public void shouldMergeOverlappingRanges() {
+        List<FuseFileRange> ranges = FuseFileRange.coalesce(Arrays.asList(
+            new FuseFileRange(0, 10),
+            new FuseFileRange(2, 3),
+            new FuseFileRange(8, 4)
+        ));
+
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).getOffset());
+        assertEquals(12, ranges.get(0).getLength());
+    }
+
+    @Test
+    public void shouldAcceptSegmentsMatchingTheContent() throws FuseError {
+        FuseFileRange.checkSegments(Arrays.asList(
+            new FuseFileRange(0, 4),
+            new FuseFileRange(100, 6)
+        ), 10);
+    }
+
+    @Test(expected = FuseError.class)
+    public void shouldRejectSegmentsLongerThanTheContent() throws FuseError {
+        FuseFileRange.checkSegments(Arrays.asList(
+            new FuseFileRange(0, 4),
+            new FuseFileRange(100, 6)
+        ), 9);
+    }
+
+    @Test(expected = FuseError.class)
+    public void shouldRejectSegmentsShorterThanTheContent() throws FuseError {
+        FuseFileRange.checkSegments(Arrays.asList(
+            new FuseFileRange(0, 4),
+            new FuseFileRange(100, 6)
+        ), 11);
+    }
+
+    @Test(expected = FuseError.class)
+    public void shouldRejectNegativeSegments() throws FuseError {
+        FuseFileRange.checkSegments(Arrays.asList(new FuseFileRange(0, -1)), -1);
+    }
+}
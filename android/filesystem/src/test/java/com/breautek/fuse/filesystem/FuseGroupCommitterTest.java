@@ -0,0 +1,111 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import com.breautek.fuse.FuseError;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class FuseGroupCommitterTest {
+    @Test
+    public void shouldShareOneSyncAcrossCommits() throws Exception {
+        List<String> synced = Collections.synchronizedList(new ArrayList<>());
+        FuseGroupCommitter committer = new FuseGroupCommitter((File file) -> synced.add(file.getPath()));
+        committer.setCommitInterval(200);
+
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            acks.add(committer.commit(new File("/data/a")));
+        }
+        acks.add(committer.commit(new File("/data/b")));
+
+        CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, synced.size());
+        assertTrue(synced.contains("/data/a"));
+        assertTrue(synced.contains("/data/b"));
+        assertEquals(2, committer.getSyncCount());
+    }
+
+    @Test
+    public void shouldSyncWhenBatchIsFull() throws Exception {
+        FuseGroupCommitter committer = new FuseGroupCommitter((File file) -> {});
+        committer.setCommitInterval(60000);
+        committer.setMaxBatchSize(3);
+
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            acks.add(committer.commit(new File("/data/a")));
+        }
+
+        CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(1, committer.getSyncCount());
+    }
+
+    @Test
+    public void shouldNotCoverCommitsRequestedDuringSync() throws Exception {
+        CountDownLatch syncing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FuseGroupCommitter committer = new FuseGroupCommitter((File file) -> {
+            syncing.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+        });
+        committer.setCommitInterval(0);
+
+        CompletableFuture<Void> first = committer.commit(new File("/data/a"));
+        assertTrue(syncing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = committer.commit(new File("/data/a"));
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, committer.getSyncCount());
+    }
+
+    @Test
+    public void shouldFailCommitsOfFailedSync() throws Exception {
+        FuseGroupCommitter committer = new FuseGroupCommitter((File file) -> {
+            throw new IOException("EIO");
+        });
+        committer.setCommitInterval(0);
+
+        try {
+            committer.commit(new File("/data/a")).get(5, TimeUnit.SECONDS);
+            fail("Expected the sync error");
+        }
+        catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof FuseError);
+            assertTrue(ex.getCause().getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+public class FuseHashAlgorithmTest {
+    private String $hash(FuseHashAlgorithm algorithm, String content) {
+        MessageDigest digest = algorithm.createDigest();
+        digest.update(content.getBytes());
+        byte[] bytes = digest.digest();
+        return String.format("%0" + (bytes.length * 2) + "x", new BigInteger(1, bytes));
+    }
+
+    @Test
+    public void shouldMatchKnownDigests() {
+        assertEquals("352441c2", $hash(FuseHashAlgorithm.CRC32, "abc"));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", $hash(FuseHashAlgorithm.MD5, "abc"));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", $hash(FuseHashAlgorithm.SHA1, "abc"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", $hash(FuseHashAlgorithm.SHA256, "abc"));
+    }
+
+    @Test
+    public void shouldDigestByteBuffersLikeArrays() {
+        MessageDigest digest = FuseHashAlgorithm.CRC32.createDigest();
+        ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put("abc".getBytes()).flip();
+        digest.update(direct);
+
+        assertEquals(4, digest.getDigestLength());
+        assertArrayEquals(new byte[] {0x35, 0x24, 0x41, (byte) 0xc2}, digest.digest());
+    }
+
+    @Test
+    public void shouldResolveNames() {
+        for (FuseHashAlgorithm algorithm : FuseHashAlgorithm.values()) {
+            assertEquals(algorithm, FuseHashAlgorithm.fromName(algorithm.getName()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownNames() {
+        FuseHashAlgorithm.fromName("sha512");
+    }
+}
@@ -0,0 +1,102 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+public class FuseListCursorsTest {
+    private File $dir;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("listcursors").toFile();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(new File($dir, "f" + i).createNewFile());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    private FuseListCursors.Listing $open() throws IOException {
+        return new FuseListCursors.Listing($dir.getPath(), null, Files.newDirectoryStream($dir.toPath()));
+    }
+
+    @Test
+    public void shouldResumeWhereThePageStopped() throws IOException {
+        FuseListCursors cursors = new FuseListCursors();
+        Set<String> names = new HashSet<>();
+
+        FuseListCursors.Listing listing = $open();
+        Iterator<Path> it = listing.getIterator();
+        for (int i = 0; i < 4; i++) {
+            names.add(it.next().getFileName().toString());
+        }
+        String cursor = cursors.park(listing);
+
+        FuseListCursors.Listing resumed = cursors.take(cursor);
+        assertSame(listing, resumed);
+        assertNull(cursors.take(cursor));
+
+        it = resumed.getIterator();
+        while (it.hasNext()) {
+            assertTrue(names.add(it.next().getFileName().toString()));
+        }
+        resumed.close();
+
+        assertEquals(10, names.size());
+    }
+
+    @Test
+    public void shouldExpireIdleListings() throws IOException {
+        FuseListCursors cursors = new FuseListCursors();
+        cursors.setIdleTimeout(-1);
+
+        String cursor = cursors.park($open());
+        cursors.evictIdle();
+
+        assertEquals(0, cursors.size());
+        assertNull(cursors.take(cursor));
+    }
+
+    @Test
+    public void shouldBoundOpenListings() throws IOException {
+        FuseListCursors cursors = new FuseListCursors();
+        cursors.setMaxOpen(2);
+
+        String first = cursors.park($open());
+        cursors.park($open());
+        cursors.park($open());
+
+        assertEquals(2, cursors.size());
+        assertNull(cursors.take(first));
+        cursors.clear();
+    }
+}
@@ -0,0 +1,114 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+
+public class FuseLockStripesTest {
+    @Test
+    public void shouldRoundStripeCountToPowerOfTwo() {
+        assertEquals(64, new FuseLockStripes().getStripeCount());
+        assertEquals(8, new FuseLockStripes(5).getStripeCount());
+        assertEquals(8, new FuseLockStripes(8).getStripeCount());
+        assertEquals(1, new FuseLockStripes(1).getStripeCount());
+    }
+
+    @Test
+    public void shouldShareBetweenReaders() throws Exception {
+        FuseLockStripes locks = new FuseLockStripes(1);
+        Lock held = locks.lockShared(new File("/a"));
+
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> locks.lockShared(new File("/b")).unlock());
+        reader.get(5, TimeUnit.SECONDS);
+
+        held.unlock();
+    }
+
+    @Test
+    public void shouldExcludeWritersOfTheSamePath() throws Exception {
+        FuseLockStripes locks = new FuseLockStripes();
+        Lock held = locks.lockShared(new File("/a/b"));
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> locks.lockExclusive(new File("/a/./c/../b")).unlock());
+        try {
+            writer.get(100, TimeUnit.MILLISECONDS);
+            fail("The writer should wait for the reader");
+        }
+        catch (TimeoutException ex) {
+            // Expected
+        }
+
+        held.unlock();
+        writer.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldLockPairOnOneStripe() throws Exception {
+        FuseLockStripes locks = new FuseLockStripes(1);
+
+        Lock pair = locks.lockPair(new File("/a"), false, new File("/b"));
+        pair.unlock();
+
+        locks.lockExclusive(new File("/a")).unlock();
+    }
+
+    @Test
+    public void shouldNotDeadlockOnOpposingPairs() throws Exception {
+        FuseLockStripes locks = new FuseLockStripes(1024);
+        File a = new File("/pair/a");
+        File b = new File("/pair/b");
+
+        CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10000; i++) {
+                locks.lockPair(a, true, b).unlock();
+            }
+        });
+        CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10000; i++) {
+                locks.lockPair(b, true, a).unlock();
+            }
+        });
+
+        forward.get(10, TimeUnit.SECONDS);
+        backward.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldHoldDestinationOfPairExclusively() throws Exception {
+        FuseLockStripes locks = new FuseLockStripes(1024);
+        Lock pair = locks.lockPair(new File("/pair/src"), false, new File("/pair/dst"));
+
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> locks.lockShared(new File("/pair/dst")).unlock());
+        try {
+            reader.get(100, TimeUnit.MILLISECONDS);
+            fail("The reader should wait for the pair");
+        }
+        catch (TimeoutException ex) {
+            // Expected
+        }
+
+        pair.unlock();
+        reader.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,69 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FuseLog2HistogramTest {
+    @Test
+    public void shouldBucketByPowerOfTwo() {
+        assertEquals(0, FuseLog2Histogram.getBucket(-5));
+        assertEquals(0, FuseLog2Histogram.getBucket(0));
+        assertEquals(1, FuseLog2Histogram.getBucket(1));
+        assertEquals(2, FuseLog2Histogram.getBucket(2));
+        assertEquals(2, FuseLog2Histogram.getBucket(3));
+        assertEquals(11, FuseLog2Histogram.getBucket(1024));
+        assertEquals(63, FuseLog2Histogram.getBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldBoundEveryValueByItsBucket() {
+        long[] values = {1, 2, 3, 7, 8, 1000, 1048576, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = FuseLog2Histogram.getBucket(value);
+            assertTrue(value <= FuseLog2Histogram.getUpperBound(bucket));
+            assertTrue(value > FuseLog2Histogram.getUpperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void shouldResetOnSnapshot() {
+        FuseLog2Histogram histogram = new FuseLog2Histogram();
+        histogram.record(5);
+        histogram.record(6);
+
+        assertEquals(2, histogram.snapshot(false)[3]);
+        assertEquals(2, histogram.snapshot(true)[3]);
+        assertEquals(0, histogram.snapshot(false)[3]);
+    }
+
+    @Test
+    public void shouldEstimatePercentiles() {
+        FuseLog2Histogram histogram = new FuseLog2Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(100000);
+
+        long[] counts = histogram.snapshot(false);
+        assertEquals(127, FuseLog2Histogram.getPercentile(counts, 50));
+        assertEquals(127, FuseLog2Histogram.getPercentile(counts, 99));
+        assertEquals(131071, FuseLog2Histogram.getPercentile(counts, 100));
+        assertEquals(0, FuseLog2Histogram.getPercentile(new long[FuseLog2Histogram.BUCKET_COUNT], 50));
+    }
+}
@@ -0,0 +1,48 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FuseMappedReadPolicyTest {
+    @Test
+    public void autoShouldMapFromThreshold() {
+        FuseMappedReadPolicy policy = new FuseMappedReadPolicy();
+        policy.setThreshold(1024);
+
+        assertFalse(policy.shouldMap(FuseReadMode.AUTO, 1023));
+        assertTrue(policy.shouldMap(FuseReadMode.AUTO, 1024));
+    }
+
+    @Test
+    public void explicitModesShouldIgnoreThreshold() {
+        FuseMappedReadPolicy policy = new FuseMappedReadPolicy();
+
+        assertTrue(policy.shouldMap(FuseReadMode.MAPPED, 1));
+        assertFalse(policy.shouldMap(FuseReadMode.STREAM, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void windowShouldBeAMultipleOfChunkSize() {
+        FuseMappedReadPolicy policy = new FuseMappedReadPolicy();
+        policy.setWindowSize(10000);
+
+        assertEquals(8192, policy.getEffectiveWindowSize(4096));
+        assertEquals(16384, policy.getEffectiveWindowSize(16384));
+    }
+}
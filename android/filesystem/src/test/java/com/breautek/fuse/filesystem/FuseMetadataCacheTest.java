@@ -0,0 +1,151 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class FuseMetadataCacheTest {
+    private File $dir;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("metadatacache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    private void $write(File file, int length) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+    }
+
+    @Test
+    public void shouldDescribeFilesAndDirectories() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        File file = new File($dir, "a");
+        $write(file, 5);
+
+        FuseMetadataCache.Entry entry = cache.get(file);
+        assertTrue(entry.exists());
+        assertEquals(FuseFileType.FILE, entry.getType());
+        assertEquals(5, entry.getSize());
+
+        assertEquals(FuseFileType.DIRECTORY, cache.get($dir).getType());
+    }
+
+    @Test
+    public void shouldCacheMissingFiles() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        File file = new File($dir, "a");
+
+        assertFalse(cache.get(file).exists());
+        $write(file, 1);
+        assertFalse(cache.get(new File($dir, "./a")).exists());
+        assertEquals(1, cache.getHitCount());
+
+        cache.invalidate(file);
+        assertTrue(cache.get(file).exists());
+    }
+
+    @Test
+    public void shouldInvalidateTree() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        File sub = new File($dir, "sub");
+        assertTrue(sub.mkdir());
+
+        cache.get(sub);
+        cache.get(new File(sub, "a"));
+        cache.get(new File($dir, "subling"));
+        cache.invalidateTree(sub);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldShareEntriesAcrossLinkedDirectories() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        File real = new File($dir, "real");
+        assertTrue(real.mkdir());
+        File link = Files.createSymbolicLink(new File($dir, "link").toPath(), real.toPath()).toFile();
+
+        assertFalse(cache.get(new File(link, "a")).exists());
+        assertTrue(new File(real, "a").createNewFile());
+        cache.invalidate(new File(real, "a"));
+
+        assertTrue(cache.get(new File(link, "a")).exists());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldInvalidateTreeThroughLink() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        File real = new File($dir, "real");
+        assertTrue(real.mkdir());
+        File link = Files.createSymbolicLink(new File($dir, "link").toPath(), real.toPath()).toFile();
+
+        cache.get(new File(real, "a"));
+        cache.invalidateTree(link);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldExpireAfterTTL() throws IOException {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        cache.setTTL(1);
+        File file = new File($dir, "a");
+
+        assertFalse(cache.get(file).exists());
+        $write(file, 1);
+        try {
+            Thread.sleep(5);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        assertTrue(cache.get(file).exists());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void shouldBoundEntries() {
+        FuseMetadataCache cache = new FuseMetadataCache();
+        cache.setMaxEntries(2);
+
+        cache.get(new File($dir, "a"));
+        cache.get(new File($dir, "b"));
+        cache.get(new File($dir, "a"));
+        cache.get(new File($dir, "c"));
+
+        assertEquals(2, cache.size());
+        cache.get(new File($dir, "a"));
+        assertEquals(2, cache.getHitCount());
+    }
+}
@@ -0,0 +1,91 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class FuseMetricsTest {
+    @Test
+    public void shouldRecordOperations() {
+        FuseEndpointMetrics metrics = new FuseEndpointMetrics("/file/read");
+        metrics.recordOperation(1000, false);
+        metrics.recordOperation(3000, true);
+        metrics.addBytesIn(10);
+        metrics.addBytesOut(4096);
+        metrics.addBytesOut(-1);
+
+        FuseEndpointMetrics.Snapshot snapshot = metrics.snapshot(false);
+        assertEquals("/file/read", snapshot.endpoint);
+        assertEquals(2, snapshot.operations);
+        assertEquals(1, snapshot.errors);
+        assertEquals(10, snapshot.bytesIn);
+        assertEquals(4096, snapshot.bytesOut);
+        assertEquals(4000, snapshot.totalNanos);
+        assertEquals(4095, snapshot.getLatencyPercentile(100));
+    }
+
+    @Test
+    public void shouldShareEndpointMetrics() {
+        FuseMetrics metrics = new FuseMetrics();
+        assertSame(metrics.getEndpoint("/file/write"), metrics.getEndpoint("/file/write"));
+    }
+
+    @Test
+    public void shouldSnapshotSortedAndReset() {
+        FuseMetrics metrics = new FuseMetrics();
+        metrics.getEndpoint("/file/write").recordOperation(10, false);
+        metrics.getEndpoint("/file/append").recordOperation(10, false);
+
+        List<FuseEndpointMetrics.Snapshot> snapshots = metrics.snapshot(true);
+        assertEquals(2, snapshots.size());
+        assertEquals("/file/append", snapshots.get(0).endpoint);
+        assertEquals("/file/write", snapshots.get(1).endpoint);
+
+        for (FuseEndpointMetrics.Snapshot snapshot : metrics.snapshot(false)) {
+            assertEquals(0, snapshot.operations);
+        }
+    }
+
+    @Test
+    public void shouldCountConcurrentOperations() throws Exception {
+        FuseEndpointMetrics metrics = new FuseEndpointMetrics("/file/read");
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[4];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    metrics.recordOperation(j, false);
+                    metrics.addBytesOut(1);
+                }
+            });
+        }
+        CompletableFuture.allOf(workers).get();
+
+        FuseEndpointMetrics.Snapshot snapshot = metrics.snapshot(false);
+        assertEquals(40000, snapshot.operations);
+        assertEquals(40000, snapshot.bytesOut);
+
+        long total = 0;
+        for (long count : snapshot.latency) {
+            total += count;
+        }
+        assertEquals(40000, total);
+    }
+}
@@ -0,0 +1,190 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class FuseOrderedExecutorTest {
+    @Test
+    public void shouldRunSameKeyInSubmissionOrder() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int value = i;
+            futures.add(executor.submit("a", () -> {
+                order.add(value);
+                return value;
+            }));
+        }
+        futures.get(futures.size() - 1).get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldRunDifferentKeysInParallel() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(2);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> slow = executor.submit("a", () -> blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> fast = executor.submit("b", () -> "done");
+
+        assertEquals("done", fast.get(5, TimeUnit.SECONDS));
+        assertFalse(slow.isDone());
+
+        blocked.countDown();
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldNotQueueBehindBlockedTransfers() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        List<CompletableFuture<Boolean>> transfers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            transfers.add(executor.submitTransfer("upload" + i, () -> blocked.await(5, TimeUnit.SECONDS)));
+        }
+        CompletableFuture<String> metadata = executor.submit("b", () -> "done");
+
+        assertEquals("done", metadata.get(5, TimeUnit.SECONDS));
+
+        blocked.countDown();
+        for (CompletableFuture<Boolean> transfer : transfers) {
+            assertTrue(transfer.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldOrderTransfersWithOtherTasksOfTheKey() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(2);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            if (i % 2 == 0) {
+                last = executor.submitTransfer("a", () -> {
+                    order.add(value);
+                    return value;
+                });
+            }
+            else {
+                last = executor.submit("a", () -> {
+                    order.add(value);
+                    return value;
+                });
+            }
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldRunSharedTasksOfAKeyConcurrently() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(1);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+
+        CompletableFuture<Boolean> first = executor.submitSharedTransfer("a", () -> {
+            bothRunning.countDown();
+            return bothRunning.await(5, TimeUnit.SECONDS);
+        });
+        CompletableFuture<Boolean> second = executor.submitSharedTransfer("a", () -> {
+            bothRunning.countDown();
+            return bothRunning.await(5, TimeUnit.SECONDS);
+        });
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldOrderSharedTasksAroundExclusiveOnes() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(4);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Boolean> reader = executor.submitShared("a", () -> {
+            boolean released = blocked.await(5, TimeUnit.SECONDS);
+            order.add("read");
+            return released;
+        });
+        CompletableFuture<String> writer = executor.submit("a", () -> {
+            order.add("write");
+            return "write";
+        });
+        CompletableFuture<String> lateReader = executor.submitShared("a", () -> {
+            order.add("late read");
+            return "late read";
+        });
+
+        Thread.sleep(100);
+        assertFalse(writer.isDone());
+        assertFalse(lateReader.isDone());
+
+        blocked.countDown();
+        assertTrue(reader.get(5, TimeUnit.SECONDS));
+        lateReader.get(5, TimeUnit.SECONDS);
+        assertEquals(3, order.size());
+        assertEquals("read", order.get(0));
+        assertEquals("write", order.get(1));
+        assertEquals("late read", order.get(2));
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldCompleteWithThrownError() throws Exception {
+        FuseOrderedExecutor executor = new FuseOrderedExecutor(1);
+        IllegalStateException error = new IllegalStateException("failed");
+
+        CompletableFuture<Object> failed = executor.submit("a", () -> {
+            throw error;
+        });
+        CompletableFuture<String> next = executor.submit("a", () -> "next");
+
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("Expected the task error");
+        }
+        catch (ExecutionException ex) {
+            assertSame(error, ex.getCause());
+        }
+        assertEquals("next", next.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,85 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class FuseReplaceJournalTest {
+    private File $dir;
+    private File $journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("replacejournal").toFile();
+        $journalFile = new File($dir, "journal");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    @Test
+    public void shouldDeleteTempsLeftInFlight() throws IOException {
+        FuseReplaceJournal crashed = new FuseReplaceJournal();
+        crashed.open($journalFile);
+        File orphan = crashed.createTemp(new File($dir, "a.txt"));
+        File completed = crashed.createTemp(new File($dir, "b.txt"));
+        assertTrue(completed.delete());
+        crashed.release(completed);
+
+        FuseReplaceJournal restarted = new FuseReplaceJournal();
+        assertEquals(1, restarted.open($journalFile));
+
+        assertFalse(orphan.exists());
+        assertEquals(0, $journalFile.length());
+    }
+
+    @Test
+    public void shouldTruncateOnceNothingIsInFlight() throws IOException {
+        FuseReplaceJournal journal = new FuseReplaceJournal();
+        journal.open($journalFile);
+
+        File temp = journal.createTemp(new File($dir, "a.txt"));
+        assertTrue(FileUtils.isReplaceTemp(temp.toPath()));
+        assertTrue($journalFile.length() > 0);
+
+        journal.release(temp);
+        assertEquals(0, $journalFile.length());
+        assertTrue(journal.getInFlight().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void shouldRecordTempsCreatedBeforeOpen() throws IOException {
+        FuseReplaceJournal journal = new FuseReplaceJournal();
+        File temp = journal.createTemp(new File($dir, "a.txt"));
+        journal.open($journalFile);
+        journal.close();
+
+        assertTrue(temp.exists());
+        assertEquals(1, new FuseReplaceJournal().open($journalFile));
+        assertFalse(temp.exists());
+    }
+}
@@ -0,0 +1,104 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class FuseTreeDeleterTest {
+    private File $dir;
+
+    @Before
+    public void setUp() throws IOException {
+        $dir = Files.createTempDirectory("treedeleter").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively($dir);
+    }
+
+    @Test
+    public void shouldDeleteTree() throws IOException {
+        File root = new File($dir, "root");
+        File deep = root;
+        for (int depth = 0; depth < 200; depth++) {
+            deep = new File(deep, "d");
+        }
+        assertTrue(deep.mkdirs());
+        assertTrue(new File(deep, "leaf").createNewFile());
+        for (int i = 0; i < 50; i++) {
+            File sub = new File(root, "s" + i);
+            assertTrue(sub.mkdir());
+            assertTrue(new File(sub, "a").createNewFile());
+            assertTrue(new File(sub, "b").createNewFile());
+        }
+
+        FuseDeleteResult result = new FuseTreeDeleter(2).delete(root);
+
+        assertTrue(result.didDelete());
+        assertFalse(root.exists());
+        assertEquals(101, result.getFileCount());
+        assertEquals(251, result.getDirectoryCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    @Test
+    public void shouldNotFollowSymbolicLinks() throws IOException {
+        File outside = new File($dir, "outside");
+        assertTrue(outside.mkdir());
+        assertTrue(new File(outside, "keep").createNewFile());
+
+        File root = new File($dir, "root");
+        assertTrue(root.mkdir());
+        Files.createSymbolicLink(new File(root, "link").toPath(), outside.toPath());
+
+        FuseDeleteResult result = FuseTreeDeleter.getDefault().delete(root);
+
+        assertTrue(result.didDelete());
+        assertEquals(1, result.getFileCount());
+        assertTrue(new File(outside, "keep").exists());
+    }
+
+    @Test
+    public void shouldReportMissingTarget() {
+        FuseDeleteResult result = FuseTreeDeleter.getDefault().delete(new File($dir, "missing"));
+
+        assertFalse(result.didDelete());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    @Test
+    public void shouldFailNonRecursiveDeleteOfNonEmptyDirectory() throws IOException {
+        File root = new File($dir, "root");
+        assertTrue(root.mkdir());
+        assertTrue(new File(root, "a").createNewFile());
+
+        FuseDeleteResult result = FuseTreeDeleter.getDefault().delete(root, false);
+
+        assertFalse(result.didDelete());
+        assertEquals(1, result.getFailureCount());
+        assertEquals(root.toPath(), result.getFailures().get(0).getPath());
+        assertTrue(root.exists());
+    }
+}
@@ -0,0 +1,106 @@
+
+/*
+Copyright 2023 Breautek
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.breautek.fuse.filesystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+public class FuseTreeHasherTest {
+    private File $file;
+    private byte[] $content;
+
+    @Before
+    public void setUp() throws IOException {
+        $file = File.createTempFile("treehasher", ".bin");
+        $content = new byte[10000];
+        for (int i = 0; i < $content.length; i++) {
+            $content[i] = (byte) (i * 31);
+        }
+        Files.write($file.toPath(), $content);
+    }
+
+    @After
+    public void tearDown() {
+        boolean _unused = $file.delete();
+    }
+
+    private byte[] $expectedRoot(FuseHashAlgorithm algorithm, int from, int to, int blockSize) {
+        MessageDigest root = algorithm.createDigest();
+        for (int start = from; start < to; start += blockSize) {
+            MessageDigest block = algorithm.createDigest();
+            block.update(Arrays.copyOfRange($content, start, Math.min(to, start + blockSize)));
+            root.update(block.digest());
+        }
+        return root.digest();
+    }
+
+    @Test
+    public void shouldHashDigestsOfBlocks() throws IOException {
+        FuseTreeHasher hasher = new FuseTreeHasher(4);
+        try (FileChannel channel = FileChannel.open($file.toPath(), StandardOpenOption.READ)) {
+            byte[] root = hasher.hash(channel, FuseHashAlgorithm.SHA256, 0, $content.length, 3000);
+            assertArrayEquals($expectedRoot(FuseHashAlgorithm.SHA256, 0, $content.length, 3000), root);
+        }
+    }
+
+    @Test
+    public void shouldNotDependOnParallelism() throws IOException {
+        try (FileChannel channel = FileChannel.open($file.toPath(), StandardOpenOption.READ)) {
+            byte[] serial = new FuseTreeHasher(1).hash(channel, FuseHashAlgorithm.CRC32, 0, $content.length, 1024);
+            byte[] parallel = new FuseTreeHasher(8).hash(channel, FuseHashAlgorithm.CRC32, 0, $content.length, 1024);
+            assertArrayEquals(serial, parallel);
+        }
+    }
+
+    @Test
+    public void shouldHashRange() throws IOException {
+        try (FileChannel channel = FileChannel.open($file.toPath(), StandardOpenOption.READ)) {
+            byte[] root = new FuseTreeHasher(2).hash(channel, FuseHashAlgorithm.MD5, 100, 5000, 2048);
+            assertArrayEquals($expectedRoot(FuseHashAlgorithm.MD5, 100, 5100, 2048), root);
+        }
+    }
+
+    @Test
+    public void shouldHashEmptyRange() throws IOException {
+        try (FileChannel channel = FileChannel.open($file.toPath(), StandardOpenOption.READ)) {
+            byte[] root = new FuseTreeHasher(2).hash(channel, FuseHashAlgorithm.SHA1, 0, 0, 2048);
+            assertArrayEquals(FuseHashAlgorithm.SHA1.createDigest().digest(), root);
+        }
+    }
+
+    @Test
+    public void shouldReturnLeasedBuffersToPool() throws IOException {
+        FuseBufferPool pool = new FuseBufferPool();
+        try (FileChannel channel = FileChannel.open($file.toPath(), StandardOpenOption.READ)) {
+            byte[] root = new FuseTreeHasher(4).hash(channel, FuseHashAlgorithm.SHA256, 0, $content.length, 1000, pool);
+            assertArrayEquals($expectedRoot(FuseHashAlgorithm.SHA256, 0, $content.length, 1000), root);
+        }
+
+        assertEquals(0, pool.getOutstandingCount());
+        assertTrue(pool.getRetainedBytes() > 0);
+    }
+}
@@ -19,3 +19,4 @@ dependencyResolutionManagement {
 rootProject.name = "FuseFilesystem"
 include(":testapp")
 include(":filesystem")
+include(":benchmark")
@@ -0,0 +1,45 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * The metadata operations FuseFilesystem.batch can run.
+ */
+export enum FuseBatchOperationType {
+    /**
+     * Resolves a boolean
+     */
+    EXISTS = 'exists',
+
+    /**
+     * Resolves a FuseFileType, or null for objects that are neither files nor directories
+     */
+    TYPE = 'type',
+
+    /**
+     * Resolves the size in bytes
+     */
+    SIZE = 'size',
+
+    /**
+     * Resolves true if the directory was created
+     */
+    MKDIR = 'mkdir',
+
+    /**
+     * Resolves true if the object was removed
+     */
+    REMOVE = 'remove'
+}
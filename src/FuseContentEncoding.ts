@@ -0,0 +1,26 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * How content is compressed while it crosses the bridge. Data is compressed and
+ * decompressed on the fly on both sides, so it is read and written as usual.
+ * Worth it for text, where transfer rather than disk is the bottleneck.
+ */
+export enum FuseContentEncoding {
+    IDENTITY = 'identity',
+    DEFLATE = 'deflate',
+    GZIP = 'gzip'
+}
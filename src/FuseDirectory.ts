@@ -19,9 +19,16 @@ limitations under the License.
 import { FuseFileObject } from "./FuseFileObject";
 import { FuseFileType } from "./FuseFileType";
 import { IFuseFileObject } from "./IFuseFileObject";
+import { IFuseFileStat } from "./IFuseFileStat";
+import { IFuseAppendOptions } from "./IFuseAppendOptions";
+import {
+    IFuseDirectoryEntry,
+    IFuseDirectoryPage,
+    IFuseListOptions
+} from "./IFuseDirectoryListing";
 import {
     FuseError,
-    FuseResponseReader, TSerializable
+    TSerializable
 } from '@btfuse/core';
 
 /**
@@ -68,25 +75,58 @@ export class FuseDirectory implements IFuseFileObject<string[]> {
         return this.$fileObj.getSize();
     }
 
+    public async stat(): Promise<IFuseFileStat> {
+        return this.$fileObj.stat();
+    }
+
     public async mkdir(recursive?: boolean | undefined): Promise<boolean> {
         return await this.$fileObj.mkdir(recursive);
     }
     
+    /**
+     * Lists a page of entries. Pass the returned cursor back in to get the next page.
+     */
+    public async list(options?: IFuseListOptions): Promise<IFuseDirectoryPage> {
+        return await this.$fileObj.list(options);
+    }
+
+    /**
+     * Reads the names of every entry, a page at a time.
+     * Use list to process large directories without holding every name.
+     */
     public async read(): Promise<string[]> {
-        let buffer: ArrayBuffer = await this.$fileObj.read();
-        return await FuseResponseReader.readAsJSON(buffer);
+        let names: string[] = [];
+        let cursor: string | null = null;
+
+        do {
+            let page: IFuseDirectoryPage = await this.list({ cursor: cursor });
+            for (let i: number = 0; i < page.entries.length; i++) {
+                names.push(page.entries[i].name);
+            }
+            cursor = page.cursor;
+        } while (cursor !== null);
+
+        return names;
     }
 
     public async readChunk(length: number, offset?: number | undefined): Promise<string[]> {
-        let buffer: ArrayBuffer = await this.$fileObj.readChunk(length, offset);
-        return await FuseResponseReader.readAsJSON(buffer);
+        let page: IFuseDirectoryPage = await this.list({
+            offset: offset || 0,
+            limit: length
+        });
+
+        return page.entries.map((entry: IFuseDirectoryEntry): string => entry.name);
     }
 
     public truncate(data?: TSerializable | undefined): Promise<number> {
         throw new FuseError('FuseDirectory', 'Directory is not writable. Use get API to get a FuseFileObject instead.');
     }
     
-    public append(data: TSerializable): Promise<number> {
+    public append(data: TSerializable, options?: IFuseAppendOptions): Promise<number> {
+        throw new FuseError('FuseDirectory', 'Directory is not writable. Use get API to get a FuseFileObject instead.');
+    }
+
+    public flush(): Promise<void> {
         throw new FuseError('FuseDirectory', 'Directory is not writable. Use get API to get a FuseFileObject instead.');
     }
     
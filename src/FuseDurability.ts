@@ -0,0 +1,36 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * How far a write is persisted before it is acknowledged.
+ */
+export enum FuseDurability {
+    /**
+     * Acknowledged once handed to the OS. A crash may lose it.
+     */
+    NONE = 'none',
+
+    /**
+     * The file is synced to storage after the write, before it is acknowledged.
+     */
+    OPERATION = 'operation',
+
+    /**
+     * Syncs of concurrent writes are batched natively. Each write is
+     * acknowledged once the shared sync covering it completes.
+     */
+    GROUP_COMMIT = 'group'
+}
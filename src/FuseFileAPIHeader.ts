@@ -0,0 +1,91 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { FuseDurability } from './FuseDurability';
+import { FuseContentEncoding } from './FuseContentEncoding';
+
+/**
+ * The params of a write, append or truncate. Sent as JSON by default,
+ * or in the compact binary form below when binary params are enabled.
+ */
+export interface IFuseFileAPIHeader {
+    path: string;
+    offset?: number;
+    keepSize?: boolean;
+    atomic?: boolean;
+    coalesce?: boolean;
+    ack?: 'written' | 'buffered';
+    durability?: FuseDurability;
+    encoding?: FuseContentEncoding;
+}
+
+const MAGIC: number = 0xF5;
+const VERSION: number = 1;
+const FIXED_SIZE: number = 16;
+
+const FLAG_KEEP_SIZE: number = 1;
+const FLAG_ATOMIC: number = 1 << 1;
+const FLAG_COALESCE: number = 1 << 2;
+const FLAG_ACK_BUFFERED: number = 1 << 3;
+
+const DURABILITY_CODES: FuseDurability[] = [
+    FuseDurability.NONE,
+    FuseDurability.OPERATION,
+    FuseDurability.GROUP_COMMIT
+];
+
+const ENCODING_CODES: FuseContentEncoding[] = [
+    FuseContentEncoding.IDENTITY,
+    FuseContentEncoding.DEFLATE,
+    FuseContentEncoding.GZIP
+];
+
+/**
+ * Encodes the binary form of the params, see FuseFileAPIHeader.java for the layout.
+ */
+export function encodeFileAPIHeader(header: IFuseFileAPIHeader): Uint8Array {
+    let path: Uint8Array = new TextEncoder().encode(header.path);
+    let buffer: ArrayBuffer = new ArrayBuffer(FIXED_SIZE + path.byteLength);
+    let view: DataView = new DataView(buffer);
+
+    let flags: number = 0;
+    if (header.keepSize) {
+        flags |= FLAG_KEEP_SIZE;
+    }
+    if (header.atomic) {
+        flags |= FLAG_ATOMIC;
+    }
+    if (header.coalesce) {
+        flags |= FLAG_COALESCE;
+    }
+    if (header.ack === 'buffered') {
+        flags |= FLAG_ACK_BUFFERED;
+    }
+
+    let offset: number = header.offset || 0;
+
+    view.setUint8(0, MAGIC);
+    view.setUint8(1, VERSION);
+    view.setUint16(2, flags);
+    view.setUint8(4, header.durability === undefined ? 0 : 1 + DURABILITY_CODES.indexOf(header.durability));
+    view.setUint8(5, ENCODING_CODES.indexOf(header.encoding || FuseContentEncoding.IDENTITY));
+    view.setUint32(6, Math.floor(offset / 0x100000000));
+    view.setUint32(10, offset % 0x100000000);
+    view.setUint16(14, path.byteLength);
+    new Uint8Array(buffer, FIXED_SIZE).set(path);
+
+    return new Uint8Array(buffer);
+}
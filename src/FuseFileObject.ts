@@ -19,6 +19,22 @@ import {FusePath} from './FusePath';
 import {FuseFilesystem} from './FuseFilesystem';
 import {FuseFileType} from './FuseFileType';
 import {IFuseFileObject} from './IFuseFileObject';
+import { IFuseFileStat } from './IFuseFileStat';
+import { IFuseAppendOptions } from './IFuseAppendOptions';
+import { FuseDurability } from './FuseDurability';
+import { FuseContentEncoding } from './FuseContentEncoding';
+import { IFuseDurableResult } from './IFuseDurableResult';
+import { FuseOverwritePolicy } from './FuseOverwritePolicy';
+import { IFuseCopyResult } from './IFuseCopyResult';
+import { FuseHashAlgorithm } from './FuseHashAlgorithm';
+import {
+    IFuseHashOptions,
+    IFuseHashResult
+} from './IFuseHashResult';
+import {
+    IFuseDirectoryPage,
+    IFuseListOptions
+} from './IFuseDirectoryListing';
 import { FuseDirectory } from './FuseDirectory';
 import { TSerializable } from '@btfuse/core';
 
@@ -82,29 +98,79 @@ export class FuseFileObject implements IFuseFileObject<ArrayBuffer> {
         return await this.$fs.getSize(this);
     }
 
+    public async stat(): Promise<IFuseFileStat> {
+        return await this.$fs.stat(this);
+    }
+
+    /**
+     * Lists a page of this directory's entries
+     */
+    public async list(options?: IFuseListOptions): Promise<IFuseDirectoryPage> {
+        return await this.$fs.list(this, options);
+    }
+
     public async mkdir(recursive?: boolean | undefined): Promise<boolean> {
         return await this.$fs.mkdir(this, recursive);
     }
 
-    public async read(): Promise<ArrayBuffer> {
-        return await this.$fs.read(this, -1, 0);
+    public async read(encoding?: FuseContentEncoding): Promise<ArrayBuffer> {
+        return await this.$fs.read(this, -1, 0, encoding);
     }
 
-    public async readChunk(length: number, offset?: number): Promise<ArrayBuffer> {
-        return await this.$fs.read(this, length, offset || 0);
+    public async readChunk(length: number, offset?: number, encoding?: FuseContentEncoding): Promise<ArrayBuffer> {
+        return await this.$fs.read(this, length, offset || 0, encoding);
     }
 
-    public async truncate(data?: TSerializable | undefined): Promise<number> {
-        return await this.$fs.truncate(this, data === undefined || data === null ? new ArrayBuffer(0) : data);
+    public async truncate(data?: TSerializable | undefined, encoding?: FuseContentEncoding): Promise<number> {
+        return await this.$fs.truncate(this, data === undefined || data === null ? new ArrayBuffer(0) : data, encoding);
     }
     
-    public async append(data: TSerializable): Promise<number> {
-        return await this.$fs.append(this, data === undefined || data === null ? new ArrayBuffer(0) : data);
+    public async append(data: TSerializable, options?: IFuseAppendOptions): Promise<number> {
+        return await this.$fs.append(this, data === undefined || data === null ? new ArrayBuffer(0) : data, options);
+    }
+
+    public async flush(): Promise<void> {
+        return await this.$fs.flush(this);
+    }
+
+    public async truncateDurable(data: TSerializable, durability: FuseDurability): Promise<IFuseDurableResult> {
+        return await this.$fs.truncateDurable(this, data === undefined || data === null ? new ArrayBuffer(0) : data, durability);
+    }
+
+    public async replace(data: TSerializable, durability?: FuseDurability): Promise<IFuseDurableResult> {
+        return await this.$fs.replace(this, data === undefined || data === null ? new ArrayBuffer(0) : data, durability);
+    }
+
+    public async appendDurable(data: TSerializable, durability: FuseDurability, options?: IFuseAppendOptions): Promise<IFuseDurableResult> {
+        return await this.$fs.appendDurable(this, data === undefined || data === null ? new ArrayBuffer(0) : data, durability, options);
+    }
+
+    public async writeDurable(data: TSerializable, offset: number, durability: FuseDurability): Promise<IFuseDurableResult> {
+        return await this.$fs.writeDurable(this, data === undefined || data === null ? new ArrayBuffer(0) : data, offset, durability);
     }
     
-    public async write(data: TSerializable, offset?: number | undefined): Promise<number> {
+    public async write(data: TSerializable, offset?: number | undefined, keepSize?: boolean, encoding?: FuseContentEncoding): Promise<number> {
         data = data === undefined || data === null ? new ArrayBuffer(0) : data;
-        return await this.$fs.write(this, data, offset);
+        return await this.$fs.write(this, data, offset, keepSize, encoding);
+    }
+
+    public async allocate(length: number): Promise<boolean> {
+        return await this.$fs.allocate(this, length);
+    }
+
+    public async hash(algorithm: FuseHashAlgorithm, options?: IFuseHashOptions): Promise<IFuseHashResult> {
+        return await this.$fs.hash(this, algorithm, options);
+    }
+
+    public async copyTo(destination: FuseFileObject, overwrite?: FuseOverwritePolicy): Promise<IFuseCopyResult> {
+        return await this.$fs.copy(this, destination, overwrite);
+    }
+
+    /**
+     * Moves this object. It keeps its path, which no longer exists afterwards.
+     */
+    public async moveTo(destination: FuseFileObject, overwrite?: FuseOverwritePolicy): Promise<IFuseCopyResult> {
+        return await this.$fs.move(this, destination, overwrite);
     }
 
     public async remove(recursive?: boolean): Promise<void> {
@@ -25,10 +25,58 @@ import {
 import {FuseFileObject} from './FuseFileObject';
 import { FuseFileType } from './FuseFileType';
 import { FuseDirectory } from './FuseDirectory';
+import { IFuseWriteSegment } from './IFuseWriteSegment';
+import { IFuseFileStat } from './IFuseFileStat';
+import { IFuseAppendOptions } from './IFuseAppendOptions';
+import { FuseDurability } from './FuseDurability';
+import { FuseContentEncoding } from './FuseContentEncoding';
+import {
+    IFuseFileAPIHeader,
+    encodeFileAPIHeader
+} from './FuseFileAPIHeader';
+import { IFuseDurableResult } from './IFuseDurableResult';
+import { FuseOverwritePolicy } from './FuseOverwritePolicy';
+import { IFuseCopyResult } from './IFuseCopyResult';
+import { IFuseDeleteReport } from './IFuseDeleteReport';
+import { FuseHashAlgorithm } from './FuseHashAlgorithm';
+import {
+    IFuseBatchOperation,
+    TFuseBatchResult
+} from './IFuseBatch';
+import { IFuseMetrics } from './IFuseMetrics';
+import {
+    IFuseHashOptions,
+    IFuseHashResult
+} from './IFuseHashResult';
+import {
+    IFuseDirectoryEntry,
+    IFuseDirectoryPage,
+    IFuseListOptions
+} from './IFuseDirectoryListing';
+import {
+    IFuseFileRange,
+    IFuseFileRangeData
+} from './IFuseFileRange';
+
+const READV_FRAME_HEADER_SIZE: number = 16;
 
 const TAG: string = 'FuseFilesystem';
 
+/**
+ * A listing entry as sent by the native side. Entries are plain names unless stats were requested.
+ */
+interface IFuseListEntryData {
+    name: string;
+    type?: FuseFileType | null;
+    size?: number;
+    mtime?: number;
+    ctime?: number;
+    mode?: number;
+}
+
 export class FuseFilesystem extends FusePlugin {
+    private $binaryParams: boolean = false;
+
     protected override _getID(): string {
         return TAG;
     }
@@ -74,6 +122,57 @@ export class FuseFilesystem extends FusePlugin {
         return size;
     }
 
+    public async stat(file: FuseFileObject): Promise<IFuseFileStat> {
+        let response: FuseAPIResponse = await this._exec('file/stat', ContentType.TEXT, file.getPath());
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    public async list(file: FuseFileObject, options: IFuseListOptions = {}): Promise<IFuseDirectoryPage> {
+        let response: FuseAPIResponse = await this._exec('file/list', ContentType.JSON, {
+            path: file.getPath(),
+            filter: options.filter,
+            cursor: options.cursor,
+            offset: options.offset,
+            limit: options.limit,
+            stats: !!options.stats
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        let page: { entries: Array<string | IFuseListEntryData>, cursor: string | null } = JSON.parse(await response.readAsText());
+
+        return {
+            entries: page.entries.map((entry: string | IFuseListEntryData): IFuseDirectoryEntry => {
+                if (typeof entry === 'string') {
+                    return { name: entry };
+                }
+
+                if (entry.size === undefined) {
+                    return { name: entry.name };
+                }
+
+                return {
+                    name: entry.name,
+                    stat: <IFuseFileStat> {
+                        type: entry.type,
+                        size: entry.size,
+                        mtime: entry.mtime,
+                        ctime: entry.ctime,
+                        mode: entry.mode
+                    }
+                };
+            }),
+            cursor: page.cursor
+        };
+    }
+
     public async mkdir(file: FuseFileObject, recursive?: boolean): Promise<boolean> {
         let response: FuseAPIResponse = await this._exec('file/mkdir', ContentType.JSON, {
             path: file.getPath(),
@@ -88,33 +187,116 @@ export class FuseFilesystem extends FusePlugin {
         return result === 'true';
     }
 
-    public async read(file: FuseFileObject, length: number, offset: number): Promise<ArrayBuffer> {
+    public async read(file: FuseFileObject, length: number, offset: number, encoding: FuseContentEncoding = FuseContentEncoding.IDENTITY): Promise<ArrayBuffer> {
         let response: FuseAPIResponse = await this._exec('file/read', ContentType.JSON, {
             path: file.getPath(),
             length: length,
-            offset: offset
+            offset: offset,
+            encoding: encoding
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        if (encoding === FuseContentEncoding.IDENTITY) {
+            return response.readAsArrayBuffer();
+        }
+
+        let encoded: Blob = new Blob([await response.readAsArrayBuffer()]);
+        return await new Response(encoded.stream().pipeThrough(new DecompressionStream(encoding))).arrayBuffer();
+    }
+
+    private async $encode(data: Blob, encoding: FuseContentEncoding): Promise<Blob> {
+        if (encoding === FuseContentEncoding.IDENTITY) {
+            return data;
+        }
+
+        return await new Response(data.stream().pipeThrough(new CompressionStream(encoding))).blob();
+    }
+
+    /**
+     * Reads many ranges of the file in a single request.
+     * 
+     * Range lengths are clamped to the end of the file. If coalesce is true,
+     * the ranges are returned sorted by offset, with overlapping and adjacent ranges
+     * merged into one. Otherwise one result is returned per range, in the given order.
+     */
+    public async readv(file: FuseFileObject, ranges: IFuseFileRange[], coalesce: boolean = false): Promise<IFuseFileRangeData[]> {
+        let response: FuseAPIResponse = await this._exec('file/readv', ContentType.JSON, {
+            path: file.getPath(),
+            ranges: ranges,
+            coalesce: coalesce
         });
 
         if (response.isError()) {
             throw await response.readAsError();
         }
 
-        return response.readAsArrayBuffer();
+        let buffer: ArrayBuffer = await response.readAsArrayBuffer();
+        let view: DataView = new DataView(buffer);
+        let results: IFuseFileRangeData[] = [];
+        let position: number = 0;
+        while (position < buffer.byteLength) {
+            let offset: number = view.getUint32(position) * 0x100000000 + view.getUint32(position + 4);
+            let length: number = view.getUint32(position + 8) * 0x100000000 + view.getUint32(position + 12);
+            position += READV_FRAME_HEADER_SIZE;
+
+            results.push({
+                offset: offset,
+                data: buffer.slice(position, position + length)
+            });
+            position += length;
+        }
+
+        return results;
+    }
+
+    /**
+     * Sends the params of writes, appends and truncates in a compact binary form instead of JSON,
+     * which is cheaper to parse natively for many small writes. Off by default, as only the
+     * Android side understands it.
+     */
+    public setBinaryParams(enabled: boolean): void {
+        this.$binaryParams = enabled;
     }
 
     private $createDataPacket(headerData: string, data: Blob): Blob {
         let encoder: TextEncoder = new TextEncoder();
-        let serializedHeaderData: Uint8Array = encoder.encode(headerData);
+        return this.$createPacket(encoder.encode(headerData), data);
+    }
+
+    /**
+     * @param legacyParams The params older native sides expect, used unless binary params are enabled
+     */
+    private $createFilePacket(header: IFuseFileAPIHeader, data: Blob, legacyParams: string = JSON.stringify(header)): Blob {
+        if (this.$binaryParams) {
+            return this.$createPacket(encodeFileAPIHeader(header), data);
+        }
+
+        return this.$createDataPacket(legacyParams, data);
+    }
+
+    private $createPacket(params: Uint8Array, data: Blob): Blob {
+        // The params length is read as big endian, which Uint32Array does not guarantee.
+        let length: DataView = new DataView(new ArrayBuffer(4));
+        length.setUint32(0, params.byteLength);
 
         return new Blob([
-            new Uint32Array([serializedHeaderData.byteLength]),
-            serializedHeaderData,
+            length,
+            params,
             data
         ]);
     }
 
-    public async truncate(file: FuseFileObject, data: TSerializable): Promise<number> {
-        let payload: Blob = this.$createDataPacket(file.getPath(), this._getAPI().getSerializer().serialize(data));
+    public async truncate(file: FuseFileObject, data: TSerializable, encoding: FuseContentEncoding = FuseContentEncoding.IDENTITY): Promise<number> {
+        let header: IFuseFileAPIHeader = {
+            path: file.getPath(),
+            encoding: encoding
+        };
+
+        let payload: Blob = this.$createFilePacket(header, await this.$encode(this._getAPI().getSerializer().serialize(data), encoding),
+            encoding === FuseContentEncoding.IDENTITY ? file.getPath() : JSON.stringify(header));
 
         let response: FuseAPIResponse = await this._exec('file/truncate', ContentType.BINARY, payload);
 
@@ -125,8 +307,56 @@ export class FuseFilesystem extends FusePlugin {
         return parseInt(await response.readAsText());
     }
 
-    public async append(file: FuseFileObject, data: TSerializable): Promise<number> {
-        let payload: Blob = this.$createDataPacket(file.getPath(), this._getAPI().getSerializer().serialize(data));
+    /**
+     * Truncates the file to the given data, syncing it as far as the durability asks.
+     */
+    public async truncateDurable(file: FuseFileObject, data: TSerializable, durability: FuseDurability): Promise<IFuseDurableResult> {
+        let payload: Blob = this.$createFilePacket({
+            path: file.getPath(),
+            durability: durability
+        }, this._getAPI().getSerializer().serialize(data));
+
+        return await this.$execDurable<number>('file/truncate', payload);
+    }
+
+    /**
+     * Replaces the content of the file atomically. The data is written to a temp file
+     * which is then renamed over the file, so readers see either the old or the new
+     * content in full, and a failure leaves the file untouched.
+     *
+     * Any durability other than NONE syncs the new content before it is renamed in.
+     */
+    public async replace(file: FuseFileObject, data: TSerializable, durability: FuseDurability = FuseDurability.NONE): Promise<IFuseDurableResult> {
+        let payload: Blob = this.$createFilePacket({
+            path: file.getPath(),
+            atomic: true,
+            durability: durability
+        }, this._getAPI().getSerializer().serialize(data));
+
+        return await this.$execDurable<number>('file/truncate', payload);
+    }
+
+    private async $execDurable<T>(endpoint: string, payload: Blob): Promise<IFuseDurableResult<T>> {
+        let response: FuseAPIResponse = await this._exec(endpoint, ContentType.BINARY, payload);
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    public async append(file: FuseFileObject, data: TSerializable, options: IFuseAppendOptions = {}): Promise<number> {
+        let encoding: FuseContentEncoding = options.encoding || FuseContentEncoding.IDENTITY;
+        let header: IFuseFileAPIHeader = {
+            path: file.getPath(),
+            coalesce: !!options.coalesce,
+            ack: options.ack || 'written',
+            encoding: encoding
+        };
+
+        let payload: Blob = this.$createFilePacket(header, await this.$encode(this._getAPI().getSerializer().serialize(data), encoding),
+            options.coalesce || encoding !== FuseContentEncoding.IDENTITY ? JSON.stringify(header) : file.getPath());
 
         let response: FuseAPIResponse = await this._exec('file/append', ContentType.BINARY, payload);
 
@@ -137,11 +367,47 @@ export class FuseFilesystem extends FusePlugin {
         return parseInt(await response.readAsText());
     }
 
-    public async write(file: FuseFileObject, data: TSerializable, offset: number = 0): Promise<number> {
-        let payload: Blob = this.$createDataPacket(JSON.stringify({
+    /**
+     * Appends data to the file, syncing it as far as the durability asks.
+     * Coalesced appends acknowledged while buffered achieve FuseDurability.NONE.
+     */
+    public async appendDurable(file: FuseFileObject, data: TSerializable, durability: FuseDurability, options: IFuseAppendOptions = {}): Promise<IFuseDurableResult> {
+        let encoding: FuseContentEncoding = options.encoding || FuseContentEncoding.IDENTITY;
+        let payload: Blob = this.$createFilePacket({
+            path: file.getPath(),
+            coalesce: !!options.coalesce,
+            ack: options.ack || 'written',
+            durability: durability,
+            encoding: encoding
+        }, await this.$encode(this._getAPI().getSerializer().serialize(data), encoding));
+
+        return await this.$execDurable<number>('file/append', payload);
+    }
+
+    /**
+     * Writes any appends of the file still buffered from coalesced appends.
+     */
+    public async flush(file: FuseFileObject): Promise<void> {
+        let response: FuseAPIResponse = await this._exec('file/flush', ContentType.TEXT, file.getPath());
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+    }
+
+    /**
+     * Writes data at the offset.
+     *
+     * @param keepSize If true, a write that would grow the file fails instead,
+     * e.g. to keep writes within the size reserved by allocate. Cannot be combined with an encoding.
+     */
+    public async write(file: FuseFileObject, data: TSerializable, offset: number = 0, keepSize: boolean = false, encoding: FuseContentEncoding = FuseContentEncoding.IDENTITY): Promise<number> {
+        let payload: Blob = this.$createFilePacket({
             path: file.getPath(),
-            offset: offset
-        }), this._getAPI().getSerializer().serialize(data));
+            offset: offset,
+            keepSize: keepSize,
+            encoding: encoding
+        }, await this.$encode(this._getAPI().getSerializer().serialize(data), encoding));
 
         let response: FuseAPIResponse = await this._exec('file/write', ContentType.BINARY, payload);
 
@@ -152,6 +418,67 @@ export class FuseFilesystem extends FusePlugin {
         return parseInt(await response.readAsText());
     }
 
+    /**
+     * Reserves storage for the first length bytes of the file, growing it if needed,
+     * before writing it piece by piece at arbitrary offsets. Never shrinks the file.
+     *
+     * Resolves true if storage was reserved, false if the filesystem
+     * could only size the file.
+     */
+    public async allocate(file: FuseFileObject, length: number): Promise<boolean> {
+        let response: FuseAPIResponse = await this._exec('file/allocate', ContentType.JSON, {
+            path: file.getPath(),
+            length: length
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return (await response.readAsText()) === 'true';
+    }
+
+    /**
+     * Writes data at the offset, syncing the file as far as the durability asks.
+     */
+    public async writeDurable(file: FuseFileObject, data: TSerializable, offset: number, durability: FuseDurability): Promise<IFuseDurableResult> {
+        let payload: Blob = this.$createFilePacket({
+            path: file.getPath(),
+            offset: offset,
+            durability: durability
+        }, this._getAPI().getSerializer().serialize(data));
+
+        return await this.$execDurable<number>('file/write', payload);
+    }
+
+    /**
+     * Writes many segments of the file in a single request.
+     * Returns the number of bytes written for each segment.
+     */
+    public async writev(file: FuseFileObject, segments: IFuseWriteSegment[]): Promise<number[]> {
+        let blobs: Blob[] = segments.map((segment: IFuseWriteSegment): Blob => {
+            return this._getAPI().getSerializer().serialize(segment.data);
+        });
+
+        let payload: Blob = this.$createDataPacket(JSON.stringify({
+            path: file.getPath(),
+            segments: segments.map((segment: IFuseWriteSegment, i: number) => {
+                return {
+                    offset: segment.offset,
+                    length: blobs[i].size
+                };
+            })
+        }), new Blob(blobs));
+
+        let response: FuseAPIResponse = await this._exec('file/writev', ContentType.BINARY, payload);
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
     public async remove(file: FuseFileObject, recursive: boolean = false): Promise<void> {
         let response: FuseAPIResponse = await this._exec('file/remove', ContentType.JSON, {
             path: file.getPath(),
@@ -162,6 +489,120 @@ export class FuseFilesystem extends FusePlugin {
         }
     }
 
+    /**
+     * Same as remove, but resolves with what was deleted and what could not be,
+     * instead of only failing when the target itself could not be removed.
+     */
+    public async removeWithReport(file: FuseFileObject, recursive: boolean = false): Promise<IFuseDeleteReport> {
+        let response: FuseAPIResponse = await this._exec('file/remove', ContentType.JSON, {
+            path: file.getPath(),
+            recursive: recursive,
+            report: true
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    /**
+     * Copies a file natively, without its content passing through the webview.
+     */
+    public async copy(source: FuseFileObject, destination: FuseFileObject, overwrite: FuseOverwritePolicy = FuseOverwritePolicy.FAIL): Promise<IFuseCopyResult> {
+        return await this.$transfer('file/copy', source, destination, overwrite);
+    }
+
+    /**
+     * Moves a file or directory, by renaming it when source and destination share a filesystem.
+     * Otherwise a file is copied then deleted, and a directory cannot be moved.
+     */
+    public async move(source: FuseFileObject, destination: FuseFileObject, overwrite: FuseOverwritePolicy = FuseOverwritePolicy.FAIL): Promise<IFuseCopyResult> {
+        return await this.$transfer('file/move', source, destination, overwrite);
+    }
+
+    private async $transfer(endpoint: string, source: FuseFileObject, destination: FuseFileObject, overwrite: FuseOverwritePolicy): Promise<IFuseCopyResult> {
+        let response: FuseAPIResponse = await this._exec(endpoint, ContentType.JSON, {
+            source: source.getPath(),
+            destination: destination.getPath(),
+            overwrite: overwrite
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    /**
+     * Hashes the file natively, without its content passing through the webview.
+     */
+    public async hash(file: FuseFileObject, algorithm: FuseHashAlgorithm, options: IFuseHashOptions = {}): Promise<IFuseHashResult> {
+        let response: FuseAPIResponse = await this._exec('file/hash', ContentType.JSON, {
+            path: file.getPath(),
+            algorithm: algorithm,
+            offset: options.offset,
+            length: options.length,
+            tree: options.tree,
+            blockSize: options.blockSize
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    /**
+     * Runs many metadata operations in a single request, resolving one result per
+     * operation in the same order. A failed operation resolves an IFuseBatchError
+     * rather than rejecting the batch.
+     *
+     * Operations on different paths run in no particular order,
+     * so create nested directories with a recursive MKDIR.
+     *
+     * @param maxInFlight The maximum number of operations running at once natively
+     */
+    public async batch(operations: IFuseBatchOperation[], maxInFlight?: number): Promise<TFuseBatchResult[]> {
+        let response: FuseAPIResponse = await this._exec('file/batch', ContentType.JSON, {
+            operations: operations.map((operation: IFuseBatchOperation) => {
+                return {
+                    op: operation.type,
+                    path: operation.file.getPath(),
+                    recursive: !!operation.recursive
+                };
+            }),
+            maxInFlight: maxInFlight
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
+    /**
+     * Gets the per endpoint metrics recorded by the native side.
+     *
+     * @param reset If true, the returned values are cleared, so the next
+     *              snapshot only covers what happens after this one
+     */
+    public async getMetrics(reset: boolean = false): Promise<IFuseMetrics> {
+        let response: FuseAPIResponse = await this._exec('metrics', ContentType.JSON, {
+            reset: reset
+        });
+
+        if (response.isError()) {
+            throw await response.readAsError();
+        }
+
+        return JSON.parse(await response.readAsText());
+    }
+
     public async exists(file: FuseFileObject): Promise<boolean> {
         let response: FuseAPIResponse = await this._exec('file/exists', ContentType.TEXT, file.getPath());
         if (response.isError()) {
@@ -0,0 +1,35 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * What a copy or move does when its destination already exists.
+ */
+export enum FuseOverwritePolicy {
+    /**
+     * Fails with an error, leaving both files untouched.
+     */
+    FAIL = 'fail',
+
+    /**
+     * Replaces the destination.
+     */
+    REPLACE = 'replace',
+
+    /**
+     * Does nothing and reports the operation as skipped.
+     */
+    SKIP = 'skip'
+}
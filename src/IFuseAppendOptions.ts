@@ -0,0 +1,43 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { FuseContentEncoding } from './FuseContentEncoding';
+
+/**
+ * Options for FuseFilesystem.append
+ */
+export interface IFuseAppendOptions {
+    /**
+     * If true, the appended data may be buffered natively and written
+     * in a batch with other appends to the same file. Defaults to false.
+     */
+    coalesce?: boolean;
+
+    /**
+     * When coalescing, whether the call resolves once the data is written to
+     * the file ('written'), or as soon as it is buffered ('buffered').
+     * Buffered data is written on flush, or by any other operation on the file.
+     * Defaults to 'written'.
+     */
+    ack?: 'written' | 'buffered';
+
+    /**
+     * Compresses the data while it crosses the bridge. Encoded appends are never
+     * coalesced, as their length is only known once decompressed.
+     * Defaults to FuseContentEncoding.IDENTITY.
+     */
+    encoding?: FuseContentEncoding;
+}
@@ -0,0 +1,37 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { FuseBatchOperationType } from './FuseBatchOperationType';
+import { FuseFileObject } from './FuseFileObject';
+
+export interface IFuseBatchOperation {
+    type: FuseBatchOperationType;
+    file: FuseFileObject;
+
+    /**
+     * For MKDIR and REMOVE. Defaults to false.
+     */
+    recursive?: boolean;
+}
+
+/**
+ * The result of an operation that failed. Other operations of the batch are unaffected.
+ */
+export interface IFuseBatchError {
+    error: string;
+}
+
+export type TFuseBatchResult = boolean | number | null | IFuseBatchError;
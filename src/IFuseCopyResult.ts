@@ -0,0 +1,36 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * The outcome of FuseFilesystem.copy and FuseFilesystem.move
+ */
+export interface IFuseCopyResult {
+    /**
+     * The number of bytes written to the destination,
+     * 0 if the file was renamed or skipped.
+     */
+    bytesCopied: number;
+
+    /**
+     * True if a move was done by renaming, without copying any content.
+     */
+    renamed: boolean;
+
+    /**
+     * True if the destination exists and the policy is FuseOverwritePolicy.SKIP
+     */
+    skipped: boolean;
+}
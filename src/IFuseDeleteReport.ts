@@ -0,0 +1,50 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * A path that FuseFilesystem.removeWithReport could not delete
+ */
+export interface IFuseDeleteFailure {
+    path: string;
+    message: string;
+}
+
+/**
+ * The outcome of FuseFilesystem.removeWithReport
+ */
+export interface IFuseDeleteReport {
+    /**
+     * True if the target itself was removed.
+     */
+    didDelete: boolean;
+
+    /**
+     * The number of files, symbolic links and other non directory entries removed.
+     */
+    files: number;
+
+    directories: number;
+
+    /**
+     * The number of paths that could not be deleted, which may exceed failures.length
+     */
+    failureCount: number;
+
+    /**
+     * The first failures encountered.
+     */
+    failures: IFuseDeleteFailure[];
+}
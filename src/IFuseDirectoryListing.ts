@@ -0,0 +1,69 @@
+
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { IFuseFileStat } from './IFuseFileStat';
+
+/**
+ * Options for listing a directory one page at a time
+ */
+export interface IFuseListOptions {
+    /**
+     * A glob matched against entry names, e.g. "*.json"
+     */
+    filter?: string;
+
+    /**
+     * The cursor of the previous page, to continue where it left off.
+     * Cursors are opaque and keep the filter of the first page, passing a different filter
+     * with a cursor is an error. The listing is held open
+     * between pages, so a cursor left unused for a minute expires and the listing has to be restarted.
+     */
+    cursor?: string | null;
+
+    /**
+     * The number of matching entries to skip. Ignored when a cursor is given.
+     */
+    offset?: number;
+
+    /**
+     * The maximum number of entries in the page. The native side may cap it.
+     */
+    limit?: number;
+
+    /**
+     * If true, each entry carries its stat, saving a stat call per entry.
+     */
+    stats?: boolean;
+}
+
+export interface IFuseDirectoryEntry {
+    name: string;
+
+    /**
+     * Only present if stats were requested and the entry could be read.
+     */
+    stat?: IFuseFileStat;
+}
+
+export interface IFuseDirectoryPage {
+    entries: IFuseDirectoryEntry[];
+
+    /**
+     * Pass to the next list call to get the next page. Null on the last page.
+     */
+    cursor: string | null;
+}
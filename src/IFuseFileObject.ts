@@ -19,6 +19,8 @@ import { TSerializable } from "@btfuse/core";
 import { FuseDirectory } from "./FuseDirectory";
 import { FuseFileObject } from "./FuseFileObject";
 import { FuseFileType } from "./FuseFileType";
+import { IFuseFileStat } from "./IFuseFileStat";
+import { IFuseAppendOptions } from "./IFuseAppendOptions";
 
 export interface IFuseFileObject<TReadType> {
     
@@ -71,6 +73,15 @@ export interface IFuseFileObject<TReadType> {
      */
     getSize(): Promise<number>;
 
+    /**
+     * Returns the type, size, times and permissions of the file object
+     * in a single call.
+     * 
+     * Prefer this over separate getType and getSize calls when
+     * more than one of them is needed.
+     */
+    stat(): Promise<IFuseFileStat>;
+
     /**
      * Creates a directory at this file object path.
      * If the path already exists, an error will occur.
@@ -142,8 +153,16 @@ export interface IFuseFileObject<TReadType> {
      * Returns the number of bytes written.
      * 
      * If this file obejct is a directory, an error will be thrown.
+     *
+     * With options.coalesce, the data may be buffered and written in a batch
+     * with other appends to the file. See IFuseAppendOptions.
+     */
+    append(data: TSerializable, options?: IFuseAppendOptions): Promise<number>;
+
+    /**
+     * Writes any buffered coalesced appends of the file.
      */
-    append(data: TSerializable): Promise<number>;
+    flush(): Promise<void>;
 
     /**
      * Writes data at the given offset. If offset is not given,
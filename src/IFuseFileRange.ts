@@ -0,0 +1,36 @@
+
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+/**
+ * A contiguous span of bytes within a file.
+ */
+export interface IFuseFileRange {
+    offset: number;
+
+    /**
+     * The number of bytes in the range. -1 means until the end of the file.
+     */
+    length: number;
+}
+
+/**
+ * The content of a range, as returned by FuseFilesystem.readv
+ */
+export interface IFuseFileRangeData {
+    offset: number;
+    data: ArrayBuffer;
+}
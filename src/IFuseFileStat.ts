@@ -0,0 +1,46 @@
+
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { FuseFileType } from './FuseFileType';
+
+/**
+ * The metadata of a filesystem object, as returned by FuseFilesystem.stat
+ */
+export interface IFuseFileStat {
+    /**
+     * The file type, or null if the object is neither a file nor a directory.
+     */
+    type: FuseFileType | null;
+
+    size: number;
+
+    /**
+     * Last modification time, in milliseconds since the epoch.
+     */
+    mtime: number;
+
+    /**
+     * Last status change time, in milliseconds since the epoch.
+     * Platforms that do not expose it report the modification time instead.
+     */
+    ctime: number;
+
+    /**
+     * Permission bits, e.g. 0o644
+     */
+    mode: number;
+}
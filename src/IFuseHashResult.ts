@@ -0,0 +1,61 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+import { FuseHashAlgorithm } from './FuseHashAlgorithm';
+
+export interface IFuseHashOptions {
+    /**
+     * The position to start hashing from. Defaults to 0.
+     */
+    offset?: number;
+
+    /**
+     * The number of bytes to hash. Defaults to the rest of the file.
+     */
+    length?: number;
+
+    /**
+     * If true, blocks of the file are hashed in parallel and the digest is the hash
+     * of the block digests. This is faster on large files, but the digest is not
+     * comparable to a plain digest of the content, only to another tree digest
+     * made with the same block size.
+     */
+    tree?: boolean;
+
+    /**
+     * The block size of a tree digest. Defaults to 8mb.
+     */
+    blockSize?: number;
+}
+
+/**
+ * The outcome of FuseFilesystem.hash
+ */
+export interface IFuseHashResult {
+    algorithm: FuseHashAlgorithm;
+
+    /**
+     * The digest as lower case hex
+     */
+    digest: string;
+
+    tree: boolean;
+
+    /**
+     * The block size of a tree digest, null otherwise
+     */
+    blockSize: number | null;
+}
@@ -0,0 +1,51 @@
+/*
+Copyright 2023 Breautek 
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+export interface IFuseEndpointMetrics {
+    ops: number;
+    errors: number;
+    bytesIn: number;
+    bytesOut: number;
+
+    /**
+     * The summed duration of every operation, in nanoseconds.
+     */
+    totalNanos: number;
+
+    /**
+     * The non-empty buckets of a histogram of operation durations in nanoseconds,
+     * flattened as bucket index then count. Bucket i counts durations from 2^(i-1)
+     * up to 2^i - 1 nanoseconds, and bucket 0 counts durations of 0.
+     */
+    latency: number[];
+}
+
+export interface IFuseMetrics {
+    /**
+     * When recording started, in milliseconds since the epoch.
+     */
+    since: number;
+
+    /**
+     * When the snapshot was taken, in milliseconds since the epoch.
+     */
+    time: number;
+
+    /**
+     * Metrics keyed by endpoint, e.g. "/file/read".
+     */
+    endpoints: Record<string, IFuseEndpointMetrics>;
+}
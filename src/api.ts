@@ -18,6 +18,43 @@ limitations under the License.
 export {FuseDirectory} from './FuseDirectory';
 export {FuseFileObject} from './FuseFileObject';
 export {FuseFileType} from './FuseFileType';
+export {FuseDurability} from './FuseDurability';
+export {FuseContentEncoding} from './FuseContentEncoding';
+export {FuseOverwritePolicy} from './FuseOverwritePolicy';
+export {FuseHashAlgorithm} from './FuseHashAlgorithm';
+export {FuseBatchOperationType} from './FuseBatchOperationType';
 export {FusePath} from './FusePath';
 export {FuseFilesystem} from './FuseFilesystem';
 export {IFuseFileObject} from './IFuseFileObject';
+export {IFuseAppendOptions} from './IFuseAppendOptions';
+export {IFuseDurableResult} from './IFuseDurableResult';
+export {IFuseCopyResult} from './IFuseCopyResult';
+export {
+    IFuseDeleteFailure,
+    IFuseDeleteReport
+} from './IFuseDeleteReport';
+export {IFuseFileAPIHeader} from './FuseFileAPIHeader';
+export {
+    IFuseBatchOperation,
+    IFuseBatchError,
+    TFuseBatchResult
+} from './IFuseBatch';
+export {
+    IFuseEndpointMetrics,
+    IFuseMetrics
+} from './IFuseMetrics';
+export {
+    IFuseHashOptions,
+    IFuseHashResult
+} from './IFuseHashResult';
+export {
+    IFuseDirectoryEntry,
+    IFuseDirectoryPage,
+    IFuseListOptions
+} from './IFuseDirectoryListing';
+export {
+    IFuseFileRange,
+    IFuseFileRangeData
+} from './IFuseFileRange';
+export {IFuseFileStat} from './IFuseFileStat';
+export {IFuseWriteSegment} from './IFuseWriteSegment';